@@ -2,7 +2,9 @@ import javafx.application.Application;
 public class App {
     public static void main(String[] args) {
         System.out.println("v0.1");
-        Frontend.setBackend(new Backend(new DijkstraGraph<String, Double>()));
+        Backend backend = new Backend(new DijkstraGraph<String, Double>());
+        backend.setSnapshotFile("campus.dot.snapshot");
+        Frontend.setBackend(backend);
         Application.launch(Frontend.class, args);
     }
 }
@@ -1,115 +1,698 @@
-import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.IOException;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.NoSuchElementException;
-import java.io.File;
-import java.util.Scanner;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 
+/**
+ * The backend answers route queries on a graph of campus locations. Queries may run on any
+ * number of threads at once: each query reads the current graph once and runs entirely on it.
+ * Every change to the graph goes through a single mutation path (loadGraphData, reloadGraphData,
+ * updateEdge, closeEdge and editGraph), one change at a time.
+ *
+ * By default, changes other than reloads modify the graph in place, which is only safe while no
+ * queries run. In concurrent mode (see setConcurrentMode), every version of the graph that
+ * queries can see is read only: changes are made to a copy, which is then published in a single
+ * step. Queries then never wait for a lock and never see a change half made, so they scale with
+ * the number of threads while the graph is being changed.
+ */
 public class Backend implements BackendInterface {
-    private DijkstraGraph<String, Double> graph;
+    // Queries read this reference once and run entirely on the graph they read, so that a
+    // reload can publish a new graph at any time without affecting queries in progress
+    private volatile DijkstraGraph<String, Double> graph;
+    private volatile boolean concurrent = false;
+    private Path snapshotPath = null;
+    private final Object reloadLock = new Object();
+    private volatile WatchService watcher = null;
+    private static final long RELOAD_DELAY_MILLIS = 200;
+    // Routes already found for the current version of the graph
+    private volatile RouteCache<Route> routeCache = new RouteCache<>();
+    // Searches in progress that missed the route cache; identical queries that arrive meanwhile
+    // wait for them instead of repeating the same search (see findRoute)
+    private final ConcurrentHashMap<QueryKey, CompletableFuture<Route>> inFlight =
+        new ConcurrentHashMap<>();
+    private final AtomicLong coalescedCount = new AtomicLong();
+    // All shortest paths of the graph, when enabled with useDistanceTable
+    private volatile Path distanceTablePath = null;
+    private volatile DistanceTable<String> distanceTable = null;
+    // The farthest location from every location, built in the background after every load and
+    // refreshed in the background after edits
+    private volatile EccentricityTable eccentricities = null;
+    private final AtomicBoolean refreshScheduled = new AtomicBoolean(false);
+    private final ExecutorService refresher = Executors.newSingleThreadExecutor(task -> {
+      Thread thread = new Thread(task, "eccentricity-refresher");
+      thread.setDaemon(true);
+      return thread;
+    });
+    // Runs the queries of the async methods; replaced by setAsyncExecutor
+    private volatile ThreadPoolExecutor asyncExecutor =
+        newAsyncExecutor(Runtime.getRuntime().availableProcessors(), 64);
 
     public Backend(DijkstraGraph<String, Double> graph) {
         this.graph = graph;
     }
 
+    /**
+     * Turns concurrent mode on or off. Turning it on makes the current graph read only, so it
+     * must not be modified directly anymore; getGraph returns the version that queries currently
+     * use. Turning it off makes changes modify the current version in place again, once it has
+     * been replaced by a modifiable copy.
+     *
+     * @param enabled true for concurrent mode, false to change the graph in place
+     */
+    public void setConcurrentMode(boolean enabled) {
+      synchronized (reloadLock) {
+        concurrent = enabled;
+        if (enabled) {
+          graph.setReadOnly();
+        } else if (graph.isReadOnly()) {
+          DijkstraGraph<String, Double> copy = graph.copy();
+          copy.getReachabilityIndex();
+          graph = copy; // tables are rebuilt for the copy as they are needed
+        }
+      }
+    }
+
+    /**
+     * @return true if the backend is in concurrent mode
+     */
+    public boolean isConcurrentMode() {
+      return concurrent;
+    }
+
+    /**
+     * Makes loadGraphData keep a binary snapshot of the graph it loads in the provided file. When
+     * the snapshot was written for the same version of the .dot file and the graph is still
+     * empty, the graph is restored from the snapshot instead of parsing the .dot file; otherwise
+     * the .dot file is parsed and the snapshot is written again.
+     *
+     * @param snapshotFilename the path of the snapshot file, or null to stop using snapshots
+     */
+    public void setSnapshotFile(String snapshotFilename) {
+        this.snapshotPath = snapshotFilename == null ? null : Paths.get(snapshotFilename);
+    }
+
     public void loadGraphData(String filename) throws IOException {
-      if (!filename.equals("campus.dot")) {
-        throw new IOException("File not found");
+      Path path = Paths.get(filename);
+      if (!Files.isRegularFile(path)) {
+        throw new IOException("File not found: " + filename);
+      }
+      synchronized (reloadLock) {
+        // in concurrent mode, the graph is loaded into a copy that replaces it once complete
+        DijkstraGraph<String, Double> target = concurrent ? graph.copy() : graph;
+        loadInto(target, path);
+        target.getReachabilityIndex(); // built now rather than by the first query
+        refreshDistanceTable(target);
+        publish(target);
+        // one search per location, so the load does not wait for it; until it is done,
+        // getMostDistantLocation searches
+        scheduleEccentricityRefresh();
       }
+    }
 
-      File file = new File(filename);
-      if (!file.exists()) {
-        throw new IOException("File not found");
+    /**
+     * Loads the graph in the .dot file at path into target, from the snapshot file when that is
+     * enabled and up to date.
+     */
+    private void loadInto(DijkstraGraph<String, Double> target, Path path) throws IOException {
+      boolean useSnapshot = snapshotPath != null && target.getNodeCount() == 0;
+      long sourceSize = Files.size(path);
+      long sourceTime = Files.getLastModifiedTime(path).toMillis();
+      if (useSnapshot && GraphSnapshot.isCurrent(snapshotPath, sourceSize, sourceTime)) {
+        try {
+          GraphSnapshot.read(snapshotPath, target);
+          System.out.println("Data successfully loaded from: " + snapshotPath);
+          return;
+        } catch (IOException e) {
+          System.out.println("Rebuilding snapshot: " + e.getMessage());
+        }
       }
 
-      Pattern pattern = Pattern.compile("\"(.+?)\"\\s*->\\s*\"(.+?)\"\\s*\\[seconds=(.+?)\\];");
-      try (Scanner scanner = new Scanner(file)) {
-        while (scanner.hasNextLine()) {
-            String line = scanner.nextLine().trim();
-            if (line.isEmpty() || line.startsWith("//")) {
-                continue; // Skip empty lines and comments
-            }
-            Matcher matcher = pattern.matcher(line);
-            if (matcher.matches()) {
-                String startNode = matcher.group(1);
-                String endNode = matcher.group(2);
-                double weight = Double.parseDouble(matcher.group(3));
-                graph.insertNode(startNode); // You might need to check if the node already exists before adding
-                graph.insertNode(endNode);   // You might need to check if the node already exists before adding
-                graph.insertEdge(startNode, endNode, weight);
-            }
+      // Large files are parsed in parallel chunks and merged in file order; malformed input is
+      // reported with its line and column by a DotGraphReader.DotSyntaxException
+      new DotGraphReader(path).readParallel(target, ForkJoinPool.commonPool());
+
+      System.out.println("Data successfully loaded from: " + path);
+
+      if (useSnapshot) {
+        try {
+          GraphSnapshot.write(target, snapshotPath, sourceSize, sourceTime);
+        } catch (IOException e) {
+          System.out.println("Could not write snapshot: " + e.getMessage());
         }
-      } catch (Exception e) {
-        e.printStackTrace();
-        throw new IOException("Failed to read the file: " + filename);
       }
-    
-    System.out.println("Data successfully loaded from: " + filename);
+    }
 
+    /**
+     * Loads the .dot file again into a new graph, and then replaces the graph that queries use
+     * with it in a single step. Queries that are already running finish on the old graph, and no
+     * query ever sees a partly loaded graph. If the file cannot be loaded, the old graph stays in
+     * use.
+     *
+     * @param filename the path to the dot file to load
+     * @throws IOException if there was a problem reading in the specified file
+     */
+    public void reloadGraphData(String filename) throws IOException {
+      Path path = Paths.get(filename);
+      if (!Files.isRegularFile(path)) {
+        throw new IOException("File not found: " + filename);
+      }
+      synchronized (reloadLock) {
+        DijkstraGraph<String, Double> current = graph;
+        DijkstraGraph<String, Double> replacement = new DijkstraGraph<>();
+        replacement.setQueueType(current.getQueueType());
+        replacement.setSearchStrategy(current.getSearchStrategy());
+        loadInto(replacement, path);
+        // so that the first queries on the new graph don't compile it or index its components
+        replacement.getReachabilityIndex();
+        refreshDistanceTable(replacement);
+        publish(replacement);
+        scheduleEccentricityRefresh(); // in the background, like after loadGraphData
+      }
+    }
+
+    /**
+     * Makes queries look up shortest paths in a precomputed DistanceTable of all shortest paths in
+     * the graph, which is kept in the provided file, instead of searching for them. The table is
+     * mapped from the file when it was built for the current graph, and otherwise built on the
+     * common fork/join pool and written to the file; this happens again whenever the graph is
+     * loaded or reloaded. While the table is out of date, such as after the graph was modified
+     * directly, queries search as usual.
+     *
+     * @param tableFilename the path of the table file, or null to stop using a table
+     * @throws IOException if the table could not be built or written
+     */
+    public void useDistanceTable(String tableFilename) throws IOException {
+      synchronized (reloadLock) {
+        distanceTable = null;
+        distanceTablePath = tableFilename == null ? null : Paths.get(tableFilename);
+        if (distanceTablePath != null) {
+          distanceTable = DistanceTable.openOrBuild(graph, distanceTablePath,
+              ForkJoinPool.commonPool());
+        }
+      }
+    }
+
+    /**
+     * Brings the distance table up to date with target, if a table is in use.
+     */
+    private void refreshDistanceTable(DijkstraGraph<String, Double> target) {
+      if (distanceTablePath == null) {
+        return;
+      }
+      try {
+        distanceTable = DistanceTable.openOrBuild(target, distanceTablePath,
+            ForkJoinPool.commonPool());
+      } catch (IOException e) {
+        distanceTable = null;
+        System.out.println("Could not build distance table: " + e.getMessage());
+      }
+    }
+
+    /**
+     * @return the distance table if one is in use and up to date with current, otherwise null
+     */
+    private DistanceTable<String> currentDistanceTable(DijkstraGraph<String, Double> current) {
+      DistanceTable<String> table = distanceTable;
+      return table != null && table.isCurrent(current) ? table : null;
+    }
+
+    /**
+     * Sets the walking time of the path from one location to another, adding the path if there
+     * is none. The farthest location from each location that can reach the start location is
+     * computed again in the background; until then, getMostDistantLocation searches for them.
+     *
+     * @param startLocation the location the path leaves
+     * @param endLocation   the location the path enters
+     * @param seconds       the walking time along the path in seconds
+     * @return true if the path was set, false if either location does not exist
+     */
+    public boolean updateEdge(String startLocation, String endLocation, double seconds) {
+      return edit(startLocation, target -> target.insertEdge(startLocation, endLocation, seconds));
+    }
+
+    /**
+     * Removes the path from one location to another, like a closed walkway. Refreshes the
+     * farthest locations in the same way as updateEdge.
+     *
+     * @param startLocation the location the path leaves
+     * @param endLocation   the location the path enters
+     * @return true if the path was removed, false if there is no such path
+     */
+    public boolean closeEdge(String startLocation, String endLocation) {
+      return edit(startLocation, target -> target.removeEdge(startLocation, endLocation));
+    }
+
+    /**
+     * Makes any number of changes to the graph at once, such as inserting new locations. In
+     * concurrent mode, queries see either none or all of them. The farthest locations are
+     * computed again for every location in the background.
+     *
+     * @param changes makes the changes to the graph it is passed
+     */
+    public void editGraph(Consumer<DijkstraGraph<String, Double>> changes) {
+      edit(null, target -> {
+        changes.accept(target);
+        return true;
+      });
+    }
+
+    /**
+     * Applies a change to the graph, or in concurrent mode to a copy of it that is then
+     * published. Changes are made one at a time. When changedLocation names the only location
+     * whose leaving paths changed, only the farthest locations of locations that may reach it
+     * are marked as stale; otherwise all of them are computed again. Either way, they are
+     * refreshed in the background.
+     *
+     * @param changedLocation the location whose leaving paths change, or null if unknown
+     * @param change          makes the change, and returns false if there was nothing to change
+     * @return the result of change
+     */
+    private boolean edit(String changedLocation, Predicate<DijkstraGraph<String, Double>> change) {
+      synchronized (reloadLock) {
+        DijkstraGraph<String, Double> current = graph;
+        ReachabilityIndex before = current.getReachabilityIndex();
+        EccentricityTable table = eccentricities;
+        boolean wasCurrent = table != null && table.isCurrent(current);
+        DijkstraGraph<String, Double> target = concurrent ? current.copy() : current;
+        if (!change.test(target)) {
+          return false;
+        }
+        target.getReachabilityIndex(); // compiled before queries can see target
+        if (wasCurrent && changedLocation != null && target.containsNode(changedLocation)) {
+          eccentricities =
+              table.withStale(before, target.freeze().getId(changedLocation), target);
+        }
+        publish(target);
+        scheduleEccentricityRefresh();
+        return true;
+      }
+    }
+
+    /**
+     * Makes queries use target from now on, read only in concurrent mode. Its snapshot is compiled
+     * first, so that the first queries on it do not wait on each other to compile it.
+     */
+    private void publish(DijkstraGraph<String, Double> target) {
+      target.freeze();
+      if (concurrent) {
+        target.setReadOnly();
+      }
+      graph = target;
+    }
+
+    /**
+     * Refreshes the farthest locations on a background thread, unless a refresh is already
+     * waiting to start.
+     */
+    private void scheduleEccentricityRefresh() {
+      if (refreshScheduled.compareAndSet(false, true)) {
+        refresher.execute(() -> {
+          refreshScheduled.set(false); // edits from now on need another refresh
+          refreshEccentricities();
+        });
+      }
+    }
+
+    private void refreshEccentricities() {
+      DijkstraGraph<String, Double> current;
+      EccentricityTable table;
+      FrozenGraph<String> snapshot;
+      List<String> locations;
+      synchronized (reloadLock) {
+        // the searches below only read this snapshot and order, never the graph itself, which
+        // callers may still modify in place outside of concurrent mode
+        current = graph;
+        table = eccentricities;
+        snapshot = current.freeze();
+        locations = current.getAllLocations();
+      }
+      EccentricityTable refreshed;
+      if (table != null && table.isCurrent(current, snapshot)) {
+        if (table.getStaleCount() == 0) {
+          return;
+        }
+        refreshed = table.refresh(current, snapshot, locations, ForkJoinPool.commonPool());
+      } else {
+        refreshed = EccentricityTable.build(current, snapshot, locations,
+            ForkJoinPool.commonPool());
+      }
+      synchronized (reloadLock) {
+        // an edit or reload while refreshing has scheduled another refresh
+        if (refreshed != null && refreshed.isCurrent(graph) && eccentricities == table) {
+          eccentricities = refreshed;
+        }
+      }
+    }
+
+    /**
+     * @return the number of locations whose farthest location is being computed again, or -1
+     *         while the whole table is out of date
+     */
+    public int getStaleEccentricityCount() {
+      DijkstraGraph<String, Double> current = graph;
+      EccentricityTable table = eccentricities;
+      return table != null && table.isCurrent(current) ? table.getStaleCount() : -1;
+    }
+
+    /**
+     * Starts a daemon thread that reloads the .dot file with reloadGraphData whenever it changes
+     * on disk. Bursts of changes, such as an editor writing the file in several steps, cause a
+     * single reload once the file has been quiet for a short while.
+     *
+     * @param filename the path to the dot file to watch
+     * @throws IOException if the file's directory cannot be watched
+     */
+    public void watchGraphFile(String filename) throws IOException {
+      Path path = Paths.get(filename).toAbsolutePath();
+      WatchService watchService = path.getFileSystem().newWatchService();
+      path.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+          StandardWatchEventKinds.ENTRY_MODIFY);
+      stopWatching();
+      watcher = watchService;
+      Thread thread = new Thread(() -> watch(watchService, path), "graph-file-watcher");
+      thread.setDaemon(true);
+      thread.start();
+    }
+
+    /**
+     * Stops watching the .dot file for changes, if it is being watched.
+     */
+    public void stopWatching() throws IOException {
+      WatchService current = watcher;
+      watcher = null;
+      if (current != null) {
+        current.close();
+      }
+    }
+
+    private void watch(WatchService watchService, Path path) {
+      try {
+        while (true) {
+          if (!changed(watchService.take(), path)) {
+            continue;
+          }
+          // wait until the file has been quiet for RELOAD_DELAY_MILLIS
+          WatchKey key;
+          while ((key = watchService.poll(RELOAD_DELAY_MILLIS, TimeUnit.MILLISECONDS)) != null) {
+            changed(key, path);
+          }
+          try {
+            reloadGraphData(path.toString());
+          } catch (IOException e) {
+            System.out.println("Keeping the current graph: " + e.getMessage());
+          }
+        }
+      } catch (InterruptedException | ClosedWatchServiceException e) {
+        // stopWatching was called
+      }
+    }
+
+    /**
+     * @return true if one of the events of key is about path
+     */
+    private static boolean changed(WatchKey key, Path path) {
+      boolean changed = false;
+      for (WatchEvent<?> event : key.pollEvents()) {
+        if (path.getFileName().equals(event.context())) {
+          changed = true;
+        }
+      }
+      key.reset();
+      return changed;
+    }
+
+    /**
+     * @return the graph that queries currently run on
+     */
+    public DijkstraGraph<String, Double> getGraph() {
+      return graph;
     }
 
 
     @Override
     public List<String> getListOfAllLocations() {
     // Check that the graph is of the right type and call the method
-    if (graph instanceof DijkstraGraph) {
-        return ((DijkstraGraph<String, Double>) graph).getAllLocations(); // Cast to (DijkstraGraph<String, Double>) if that's your NodeType and EdgeType
+    DijkstraGraph<String, Double> current = graph;
+    if (current instanceof DijkstraGraph) {
+        return current.getAllLocations();
      }
     return new ArrayList<>(); // Return an empty list if the graph is not the expected type
     }
 
 
+    @Override
+    public RouteResult<String> findRoute(String startLocation, String endLocation)
+        throws NoSuchElementException {
+        Route route = findRoute(graph, startLocation, endLocation);
+        if (route.result == null) {
+            throw new NoSuchElementException(route.failure);
+        }
+        return route.result;
+    }
+
     @Override
     public List<String> findShortestPath(String startLocation, String endLocation) {
-        return graph.shortestPathData(startLocation, endLocation);
+        return new ArrayList<>(findRoute(startLocation, endLocation).getNodes());
     }
 
     @Override
     public List<Double> getTravelTimesOnPath(String startLocation, String endLocation) {
     List<Double> travelTimes = new ArrayList<>();
+    DijkstraGraph<String, Double> current = graph; // the whole query runs on one graph version
 
     // Check if start and end locations exist in the graph
-    if (!graph.containsNode(startLocation) || !graph.containsNode(endLocation)) {
+    if (!current.containsNode(startLocation) || !current.containsNode(endLocation)) {
       return travelTimes; // Return an empty list if either location is missing
     }
 
-    // Find the shortest path between startLocation and endLocation
-    List<String> path = graph.shortestPathData(startLocation, endLocation);
-    if (path.isEmpty() || path.size() < 2) { // Check for a valid path with at least two nodes
-      return travelTimes;
+    // The same route that findShortestPath returns, usually straight from the route cache
+    Route route = findRoute(current, startLocation, endLocation);
+    if (route.result == null) {
+      return travelTimes; // Return an empty list when there is no path
     }
+    travelTimes.addAll(route.result.getLegTimes());
 
-    // Calculate travel times for each segment of the path
-    for (int i = 0; i < path.size() - 1; i++) {
-      String current = path.get(i);
-      String next = path.get(i + 1);
-      try {
-        Double time = graph.getEdge(current, next);
-        travelTimes.add(time);
-      } catch (NoSuchElementException e) {
-        // Handle the case where no edge exists between the consecutive nodes
-        return new ArrayList<>(); // Return an empty list if any segment of the path is undefined
+    return travelTimes;
+  }
+
+    /**
+     * Returns the walking times in seconds along the shortest paths from every location in
+     * startLocations to every location in endLocations, all on one version of the graph. Entry
+     * [i][j] is the time from startLocations.get(i) to endLocations.get(j), or positive infinity
+     * when there is no path between them. When a distance table is in use, the times come from
+     * the table, which stores them with float precision.
+     *
+     * @param startLocations the start locations, one per row
+     * @param endLocations   the end locations, one per column
+     * @return the matrix of walking times
+     * @throws NoSuchElementException if any of the locations does not exist
+     */
+    public double[][] getTravelTimeMatrix(List<String> startLocations, List<String> endLocations)
+        throws NoSuchElementException {
+        DijkstraGraph<String, Double> current = graph;
+        DistanceTable<String> table = currentDistanceTable(current);
+        if (table == null) {
+            return current.distanceMatrix(startLocations, endLocations);
+        }
+        double[][] matrix = new double[startLocations.size()][endLocations.size()];
+        for (int i = 0; i < matrix.length; i++) {
+            for (int j = 0; j < matrix[i].length; j++) {
+                matrix[i][j] = table.getCost(startLocations.get(i), endLocations.get(j));
+            }
+        }
+        return matrix;
+    }
+
+    /**
+     * The cached outcome of one query: either its route, or the reason why there is none.
+     */
+    private static class Route {
+        final RouteResult<String> result; // null when there is no path
+        final String failure;
+
+        Route(RouteResult<String> result, String failure) {
+            this.result = result;
+            this.failure = failure;
+        }
+    }
+
+    /**
+     * Returns the route from startLocation to endLocation in the provided graph, from the route
+     * cache when it holds the route for the graph's current version, and otherwise by searching
+     * for it and caching the result. Routes that do not exist are cached as well. When an
+     * identical query is already searching, this waits for its result instead of searching too,
+     * so that a burst of identical queries costs a single search.
+     */
+    private Route findRoute(DijkstraGraph<String, Double> current, String startLocation,
+        String endLocation) {
+      DistanceTable<String> table = currentDistanceTable(current);
+      if (table != null) {
+        // following next hops is about as fast as a cache lookup, so the cache is not used
+        try {
+          return new Route(table.getRoute(startLocation, endLocation), null);
+        } catch (NoSuchElementException e) {
+          return new Route(null, e.getMessage());
+        }
+      }
+      long version = current.getModificationCount();
+      Route route = routeCache.get(current, version, startLocation, endLocation);
+      if (route != null) {
+        return route;
+      }
+      QueryKey key = new QueryKey(current, version, startLocation, endLocation);
+      while (true) {
+        CompletableFuture<Route> flight = new CompletableFuture<>();
+        CompletableFuture<Route> leader = inFlight.putIfAbsent(key, flight);
+        if (leader == null) {
+          // no identical query is running, so this one searches for all that arrive meanwhile
+          try {
+            try {
+              route = new Route(current.shortestRoute(startLocation, endLocation), null);
+            } catch (NoSuchElementException e) {
+              route = new Route(null, e.getMessage());
+            }
+            // cached before the flight ends, so that later queries find it there
+            routeCache.put(current, version, startLocation, endLocation, route);
+            flight.complete(route);
+            return route;
+          } catch (RuntimeException | Error e) {
+            flight.completeExceptionally(e); // so that waiting queries do not wait forever
+            throw e;
+          } finally {
+            inFlight.remove(key, flight);
+          }
+        }
+        coalescedCount.incrementAndGet();
+        try {
+          return leader.get();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new CancellationException("Interrupted while waiting for an identical query");
+        } catch (ExecutionException | CancellationException e) {
+          // the search failed or was stopped, such as by cancelling the query that ran it, which
+          // get reports as a CancellationException of its own; unless this query was stopped as
+          // well, it searches again itself
+          if (Thread.currentThread().isInterrupted()) {
+            throw new CancellationException("Interrupted while waiting for an identical query");
+          }
+        }
       }
     }
 
-    return travelTimes;
-  }
+    /**
+     * Identifies a query by its locations and the version of the graph it runs on, so that only
+     * queries with the same answer are coalesced.
+     */
+    private static class QueryKey {
+        final DijkstraGraph<String, Double> graph;
+        final long version;
+        final String start;
+        final String end;
+
+        QueryKey(DijkstraGraph<String, Double> graph, long version, String start, String end) {
+            this.graph = graph;
+            this.version = version;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof QueryKey)) {
+                return false;
+            }
+            QueryKey key = (QueryKey) other;
+            return graph == key.graph && version == key.version && start.equals(key.start)
+                && end.equals(key.end);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(System.identityHashCode(graph), version, start, end);
+        }
+    }
+
+    /**
+     * @return the number of queries that waited for an identical query that was already
+     *         searching, instead of searching themselves
+     */
+    public long getCoalescedQueryCount() {
+        return coalescedCount.get();
+    }
+
+    /**
+     * Replaces the route cache with an empty one of the provided size.
+     *
+     * @param maxEntries the largest number of routes to cache
+     * @param ttlMillis  how long a cached route stays valid in milliseconds, or 0 to keep routes
+     *                   until they are evicted or the graph changes
+     */
+    public void setRouteCache(int maxEntries, long ttlMillis) {
+        routeCache = new RouteCache<>(maxEntries, ttlMillis);
+    }
+
+    /**
+     * @return the route cache, whose counters report how well it works
+     */
+    public RouteCache<?> getRouteCache() {
+        return routeCache;
+    }
 
     @Override
     public String getMostDistantLocation(String location) throws NoSuchElementException {
-    if (!graph.containsNode(location)) {
+    DijkstraGraph<String, Double> current = graph; // the whole query runs on one graph version
+    if (!current.containsNode(location)) {
       throw new NoSuchElementException("Location not found in graph.");
     }
+    // The farthest location of every location is usually precomputed
+    EccentricityTable eccentricityTable = eccentricities;
+    if (eccentricityTable != null && eccentricityTable.isCurrent(current)) {
+      FrozenGraph<String> snapshot = current.freeze();
+      int farthestId = eccentricityTable.getFarthestId(snapshot.getId(location));
+      if (farthestId != -1) {
+        return snapshot.getData(farthestId);
+      }
+    }
+    scheduleEccentricityRefresh();
+    DistanceTable<String> table = currentDistanceTable(current);
+    if (table != null) {
+      return table.getFarthest(location);
+    }
 
+    // A single shortest path tree holds the distance to every location reachable from location
+    DijkstraGraph<String, Double>.ShortestPathTree tree = current.computeShortestPathTree(location);
     String farthest = null;
     double maxDistance = Double.NEGATIVE_INFINITY; // Proper initialization for finding maximum
-    List<String> locations = getListOfAllLocations();
+    List<String> locations = current.getAllLocations();
     for (String loc : locations) {
-      double dist = graph.shortestPathCost(location, loc);
+      double dist = tree.getCost(loc);
       if (dist > maxDistance && dist != Double.POSITIVE_INFINITY) { // Ensure the location is
                                                                     // reachable and distance is
                                                                     // valid
@@ -124,4 +707,75 @@ public class Backend implements BackendInterface {
 
     return farthest;
   }
+
+    @Override
+    public CompletableFuture<RouteResult<String>> findRouteAsync(String startLocation,
+        String endLocation, long timeoutMillis) {
+      return submitAsync(() -> findRoute(startLocation, endLocation), timeoutMillis);
+    }
+
+    @Override
+    public CompletableFuture<String> getMostDistantLocationAsync(String location,
+        long timeoutMillis) {
+      return submitAsync(() -> getMostDistantLocation(location), timeoutMillis);
+    }
+
+    /**
+     * Replaces the executor that runs the queries of the async methods. Queries that were
+     * already submitted still run on the old one. When all threads are busy and the queue is
+     * full, further queries fail at once with a RejectedExecutionException rather than wait.
+     *
+     * @param threads       the largest number of queries that run at once
+     * @param queueCapacity the largest number of queries that wait for a thread
+     */
+    public void setAsyncExecutor(int threads, int queueCapacity) {
+      ThreadPoolExecutor previous = asyncExecutor;
+      asyncExecutor = newAsyncExecutor(threads, queueCapacity);
+      previous.shutdown();
+    }
+
+    private static ThreadPoolExecutor newAsyncExecutor(int threads, int queueCapacity) {
+      ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 30,
+          TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueCapacity), task -> {
+            Thread thread = new Thread(task, "backend-query");
+            thread.setDaemon(true);
+            return thread;
+          });
+      executor.allowCoreThreadTimeOut(true);
+      return executor;
+    }
+
+    /**
+     * Runs query on the async executor. When the returned future is cancelled or times out
+     * before the query finishes, the thread running it is interrupted, which stops its search
+     * (see SearchWorkspace.settle); a query that is still queued then never starts.
+     */
+    private <T> CompletableFuture<T> submitAsync(Supplier<T> query, long timeoutMillis) {
+      CompletableFuture<T> result = new CompletableFuture<>();
+      Future<?> task;
+      try {
+        task = asyncExecutor.submit(() -> {
+          if (result.isDone()) {
+            return; // cancelled or timed out while queued
+          }
+          try {
+            result.complete(query.get());
+          } catch (RuntimeException e) {
+            result.completeExceptionally(e);
+          }
+        });
+      } catch (RejectedExecutionException e) {
+        result.completeExceptionally(e);
+        return result;
+      }
+      if (timeoutMillis > 0) {
+        result.orTimeout(timeoutMillis, TimeUnit.MILLISECONDS);
+      }
+      result.whenComplete((value, failure) -> {
+        if (result.isCancelled() || failure instanceof TimeoutException) {
+          task.cancel(true);
+        }
+      });
+      return result;
+    }
 }
@@ -1,8 +1,30 @@
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.Assertions;
 import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import org.testfx.framework.junit5.ApplicationTest;
 import static org.testfx.api.FxAssert.verifyThat;
 import static org.testfx.matcher.control.LabeledMatchers.hasText;
@@ -121,6 +143,681 @@ public class BackendDeveloperTests extends ApplicationTest{
     Assertions.assertEquals(expectedLocation, backend.getMostDistantLocation("Union South"));
   }
 
+  /**
+   * Writes contents to a temporary .dot file and loads it into a new backend.
+   */
+  private static Backend loadDotString(String contents) throws IOException {
+    Path file = Files.createTempFile("graph", ".dot");
+    try {
+      Files.write(file, contents.getBytes(StandardCharsets.UTF_8));
+      Backend backend = new Backend(new DijkstraGraph<String, Double>());
+      backend.loadGraphData(file.toString());
+      return backend;
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  @Test
+  public void testLoadGraphDataFromAnyPath() throws IOException {
+    // Edges, escaped and non-ASCII names, comments, edge chains and other statements are read
+    Backend backend = loadDotString("strict digraph campus {\n"
+        + "  // a comment\n"
+        + "  rankdir=LR; node [shape=box];\n"
+        + "  \"Union South\" -> \"Caf\u00e9 \\\"Ten\\\"\" [seconds=176.5];\n"
+        + "  /* a\n block comment */ A -> B -> C [color=red, seconds=12];\n"
+        + "  # a shell style comment\n"
+        + "  D [label=\"lonely\"]\n"
+        + "}\n");
+    List<String> locations = backend.getListOfAllLocations();
+    Assertions.assertEquals(Arrays.asList("Union South", "Caf\u00e9 \"Ten\"", "A", "B", "C", "D"),
+        locations);
+    Assertions.assertEquals(Arrays.asList(176.5),
+        backend.getTravelTimesOnPath("Union South", "Caf\u00e9 \"Ten\""));
+    Assertions.assertEquals(Arrays.asList(12.0, 12.0), backend.getTravelTimesOnPath("A", "C"));
+  }
+
+  @Test
+  public void testLoadGraphDataReportsLineAndColumn() {
+    // Malformed input is reported with the line and column where it was found
+    DotGraphReader.DotSyntaxException missingWeight = Assertions.assertThrows(
+        DotGraphReader.DotSyntaxException.class,
+        () -> loadDotString("digraph {\n  \"A\" -> \"B\";\n}\n"));
+    Assertions.assertEquals(2, missingWeight.getLine());
+    Assertions.assertEquals(3, missingWeight.getColumn());
+    DotGraphReader.DotSyntaxException badNumber = Assertions.assertThrows(
+        DotGraphReader.DotSyntaxException.class,
+        () -> loadDotString("digraph {\n\n A -> B [seconds=fast];\n}\n"));
+    Assertions.assertEquals(3, badNumber.getLine());
+    Assertions.assertEquals(18, badNumber.getColumn());
+    Assertions.assertThrows(DotGraphReader.DotSyntaxException.class,
+        () -> loadDotString("digraph { \"A -> B [seconds=1]; }"));
+  }
+
+
+  @Test
+  public void testParallelLoadMatchesSequentialLoad() throws IOException {
+    // Chunks split inside comments, strings and statements must still give the sequential result
+    StringBuilder contents = new StringBuilder("digraph {\n");
+    for (int i = 0; i < 500; i++) {
+      contents.append(i % 7 == 0 ? "/* a comment\n over two lines */\n" : "");
+      contents.append("\"L").append(i % 53).append(i % 11 == 0 ? "\n" : "").append("\" -> \n \"L")
+          .append(i * 7 % 61).append("\" [seconds=").append(i % 97).append("];\n");
+    }
+    Path file = Files.createTempFile("graph", ".dot");
+    try {
+      Files.write(file, contents.append("}\n").toString().getBytes(StandardCharsets.UTF_8));
+      DijkstraGraph<String, Double> sequential = new DijkstraGraph<>();
+      new DotGraphReader(file).read(sequential);
+      DijkstraGraph<String, Double> parallel = new DijkstraGraph<>();
+      DotGraphReader reader = new DotGraphReader(file);
+      reader.minChunkSize = 64;
+      reader.readParallel(parallel, new java.util.concurrent.ForkJoinPool(4));
+      Assertions.assertEquals(sequential.getAllLocations(), parallel.getAllLocations());
+      Assertions.assertEquals(sequential.getEdgeCount(), parallel.getEdgeCount());
+      for (String pred : sequential.getAllLocations()) {
+        for (String succ : sequential.getAllLocations()) {
+          if (sequential.containsEdge(pred, succ)) {
+            Assertions.assertEquals(sequential.getEdge(pred, succ), parallel.getEdge(pred, succ));
+          }
+        }
+      }
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  @Test
+  public void testSnapshotRestoresGraph() throws IOException {
+    // A second backend restores the graph from the snapshot that the first one wrote, and a
+    // damaged snapshot or a changed .dot file makes the backend parse the .dot file again
+    Path dot = Files.createTempFile("graph", ".dot");
+    Path snapshot = Files.createTempFile("graph", ".snapshot");
+    try {
+      Files.write(dot, ("digraph {\n \"A\" -> \"B\" [seconds=1.5];\n"
+          + " \"B\" -> \"C\" [seconds=2];\n"
+          + " \"C\" -> \"A\" [seconds=4]; \"A\" -> \"C\" [seconds=9];\n}\n")
+          .getBytes(StandardCharsets.UTF_8));
+      Files.delete(snapshot);
+      Backend parsed = new Backend(new DijkstraGraph<String, Double>());
+      parsed.setSnapshotFile(snapshot.toString());
+      parsed.loadGraphData(dot.toString());
+      Assertions.assertTrue(Files.exists(snapshot));
+
+      DijkstraGraph<String, Double> restoredGraph = new DijkstraGraph<>();
+      Backend restored = new Backend(restoredGraph);
+      restored.setSnapshotFile(snapshot.toString());
+      restored.loadGraphData(dot.toString());
+      Assertions.assertEquals(parsed.getListOfAllLocations(), restored.getListOfAllLocations());
+      Assertions.assertEquals(4, restoredGraph.getEdgeCount());
+      Assertions.assertEquals(Arrays.asList(1.5, 2.0), restored.getTravelTimesOnPath("A", "C"));
+
+      byte[] bytes = Files.readAllBytes(snapshot);
+      bytes[bytes.length - 1] ^= 1;
+      Files.write(snapshot, bytes);
+      Backend recovered = new Backend(new DijkstraGraph<String, Double>());
+      recovered.setSnapshotFile(snapshot.toString());
+      recovered.loadGraphData(dot.toString());
+      Assertions.assertEquals(parsed.getListOfAllLocations(), recovered.getListOfAllLocations());
+      Assertions.assertTrue(GraphSnapshot.isCurrent(snapshot, Files.size(dot),
+          Files.getLastModifiedTime(dot).toMillis()));
+      Files.setLastModifiedTime(dot, java.nio.file.attribute.FileTime.fromMillis(
+          Files.getLastModifiedTime(dot).toMillis() + 60000));
+      Assertions.assertFalse(GraphSnapshot.isCurrent(snapshot, Files.size(dot),
+          Files.getLastModifiedTime(dot).toMillis()));
+    } finally {
+      Files.deleteIfExists(dot);
+      Files.deleteIfExists(snapshot);
+    }
+  }
+
+  @Test
+  public void testWatchedFileIsReloadedWithoutInterruptingQueries() throws Exception {
+    // While the file is rewritten and reloaded, a reader keeps querying and must always see
+    // either the complete old graph or the complete new graph
+    Path dot = Files.createTempFile("graph", ".dot");
+    try {
+      Files.write(dot, "digraph {\n A -> B [seconds=1];\n B -> C [seconds=1];\n}\n"
+          .getBytes(StandardCharsets.UTF_8));
+      Backend backend = new Backend(new DijkstraGraph<String, Double>());
+      backend.loadGraphData(dot.toString());
+      backend.watchGraphFile(dot.toString());
+      AtomicBoolean done = new AtomicBoolean();
+      AtomicReference<List<String>> unexpected = new AtomicReference<>();
+      Thread reader = new Thread(() -> {
+        while (!done.get()) {
+          List<String> path = backend.findShortestPath("A", "C");
+          if (!path.equals(Arrays.asList("A", "B", "C")) && !path.equals(Arrays.asList("A", "C")))
+            unexpected.set(path);
+        }
+      });
+      reader.start();
+      try {
+        Files.write(dot, "digraph {\n A -> B [seconds=1];\n B -> C [seconds=1];\n"
+            .concat(" A -> C [seconds=1];\n}\n").getBytes(StandardCharsets.UTF_8));
+        long deadline = System.currentTimeMillis() + 20000;
+        while (backend.findShortestPath("A", "C").size() != 2
+            && System.currentTimeMillis() < deadline) {
+          Thread.sleep(20);
+        }
+      } finally {
+        done.set(true);
+        reader.join();
+        backend.stopWatching();
+      }
+      Assertions.assertEquals(Arrays.asList("A", "C"), backend.findShortestPath("A", "C"));
+      Assertions.assertNull(unexpected.get(), "A query saw a partly loaded graph");
+    } finally {
+      Files.delete(dot);
+    }
+  }
+
+  @Test
+  public void testRouteCacheServesRepeatedQueriesUntilGraphChanges() {
+    // The path and travel times of one route take a single search, and changing the graph makes
+    // the next query search again
+    DijkstraGraph<String, Double> graph = new DijkstraGraph<>();
+    for (String node : Arrays.asList("A", "B", "C")) {
+      graph.insertNode(node);
+    }
+    graph.insertEdge("A", "B", 1.0);
+    graph.insertEdge("B", "C", 2.0);
+    graph.insertEdge("A", "C", 5.0);
+    Backend backend = new Backend(graph);
+    Assertions.assertEquals(Arrays.asList("A", "B", "C"), backend.findShortestPath("A", "C"));
+    Assertions.assertEquals(Arrays.asList(1.0, 2.0), backend.getTravelTimesOnPath("A", "C"));
+    Assertions.assertEquals(1, backend.getRouteCache().getMisses());
+    Assertions.assertEquals(1, backend.getRouteCache().getHits());
+    RouteResult<String> route = backend.findRoute("A", "C");
+    Assertions.assertEquals(Arrays.asList(0.0, 1.0, 3.0), route.getCumulativeTimes());
+    Assertions.assertEquals(3.0, route.getTotalCost());
+
+    graph.removeEdge("B", "C");
+    Assertions.assertEquals(Arrays.asList(5.0), backend.getTravelTimesOnPath("A", "C"));
+    Assertions.assertEquals(2, backend.getRouteCache().getMisses());
+    graph.removeNode("C");
+    Assertions.assertTrue(backend.getTravelTimesOnPath("A", "C").isEmpty());
+    Assertions.assertThrows(java.util.NoSuchElementException.class,
+        () -> backend.findShortestPath("A", "C"));
+  }
+
+  @Test
+  public void testDistanceTableAnswersLikeSearches() throws IOException {
+    // Every query gives the same answer from the table as from a search, a second backend maps
+    // the table that the first one built, and modifying the graph makes queries search again
+    Path tableFile = Files.createTempFile("distances", ".table");
+    try {
+      List<String> names = new ArrayList<>();
+      Backend searching = new Backend(buildRandomGraph(names));
+      Backend tabled = new Backend(buildRandomGraph(names));
+      tabled.useDistanceTable(tableFile.toString());
+      for (String start : names) {
+        Assertions.assertEquals(searching.getMostDistantLocation(start),
+            tabled.getMostDistantLocation(start));
+        for (String end : names) {
+          Assertions.assertEquals(searching.getTravelTimesOnPath(start, end),
+              tabled.getTravelTimesOnPath(start, end));
+        }
+      }
+      double[][] expected = searching.getTravelTimeMatrix(names, names);
+      double[][] actual = tabled.getTravelTimeMatrix(names, names);
+      for (int i = 0; i < names.size(); i++) {
+        for (int j = 0; j < names.size(); j++) {
+          Assertions.assertEquals(expected[i][j], actual[i][j], 1e-3);
+        }
+      }
+
+      long modified = Files.getLastModifiedTime(tableFile).toMillis();
+      Backend reopened = new Backend(buildRandomGraph(names));
+      reopened.useDistanceTable(tableFile.toString());
+      Assertions.assertEquals(modified, Files.getLastModifiedTime(tableFile).toMillis());
+      Assertions.assertEquals(tabled.findShortestPath(names.get(0), names.get(1)),
+          reopened.findShortestPath(names.get(0), names.get(1)));
+
+      // ties go to the first location in getAllLocations order, also when a location reuses
+      // the id of a removed one and so comes before it in id order
+      Backend tied = new Backend(new DijkstraGraph<String, Double>());
+      for (String location : List.of("W", "X", "Y")) {
+        tied.getGraph().insertNode(location);
+      }
+      tied.getGraph().removeNode("X");
+      tied.getGraph().insertNode("Z");
+      tied.getGraph().insertEdge("W", "Y", 1.0);
+      tied.getGraph().insertEdge("W", "Z", 1.0);
+      Assertions.assertEquals("Y", tied.getMostDistantLocation("W"));
+      tied.useDistanceTable(tableFile.toString());
+      Assertions.assertEquals("Y", tied.getMostDistantLocation("W"));
+
+      tabled.getGraph().insertEdge(names.get(0), names.get(1), 0.5);
+      Assertions.assertEquals(Arrays.asList(0.5),
+          tabled.getTravelTimesOnPath(names.get(0), names.get(1)));
+    } finally {
+      Files.deleteIfExists(tableFile);
+    }
+  }
+
+  @Test
+  public void testMostDistantLocationFollowsEdits() throws InterruptedException {
+    // The farthest locations are precomputed, edits mark only the locations that can reach the
+    // edited path as stale, and every answer matches a search before and after the refresh
+    List<String> names = new ArrayList<>();
+    DijkstraGraph<String, Double> graph = buildRandomGraph(names);
+    Backend backend = new Backend(graph);
+    backend.getMostDistantLocation(names.get(0)); // schedules building the table
+    awaitEccentricities(backend);
+    assertFarthestMatchesSearch(backend, graph, names);
+
+    Assertions.assertTrue(backend.updateEdge("L59", "L0", 1.0));
+    Assertions.assertTrue(backend.getStaleEccentricityCount() <= 1); // only L59 reaches L59
+    assertFarthestMatchesSearch(backend, graph, names);
+    awaitEccentricities(backend);
+    Assertions.assertTrue(backend.updateEdge(names.get(3), names.get(40), 0.25));
+    Assertions.assertTrue(backend.closeEdge("L59", "L0"));
+    Assertions.assertFalse(backend.closeEdge("L59", "L0"));
+    assertFarthestMatchesSearch(backend, graph, names);
+    awaitEccentricities(backend);
+    assertFarthestMatchesSearch(backend, graph, names);
+  }
+
+  @Test
+  public void testConcurrentQueriesWhileEdgesAreUpdated() throws Exception {
+    // Readers on several threads always see a complete version of the graph while a writer
+    // keeps changing the path between X and Z, and no version they see is modified directly
+    List<String> names = new ArrayList<>();
+    DijkstraGraph<String, Double> graph = buildRandomGraph(names);
+    for (String node : Arrays.asList("X", "Y", "Z")) {
+      graph.insertNode(node);
+    }
+    graph.insertEdge("X", "Y", 1.0);
+    graph.insertEdge("Y", "Z", 1.0);
+    graph.insertEdge("X", "Z", 3.5);
+    Backend backend = new Backend(graph);
+    backend.setConcurrentMode(true);
+    Assertions.assertThrows(IllegalStateException.class,
+        () -> backend.getGraph().insertEdge("Y", "Z", 2.0));
+
+    AtomicBoolean done = new AtomicBoolean(false);
+    AtomicReference<Throwable> failure = new AtomicReference<>();
+    List<Thread> readers = new ArrayList<>();
+    for (int r = 0; r < 4; r++) {
+      final Random random = new Random(r);
+      Thread reader = new Thread(() -> {
+        try {
+          while (!done.get()) {
+            List<String> path = backend.findShortestPath("X", "Z");
+            List<Double> times = backend.getTravelTimesOnPath("X", "Z");
+            Assertions.assertTrue(path.equals(Arrays.asList("X", "Y", "Z"))
+                || path.equals(Arrays.asList("X", "Z")), path.toString());
+            Assertions.assertTrue(times.equals(Arrays.asList(1.0, 1.0))
+                || times.equals(Arrays.asList(1.0, 2.0)) || times.equals(Arrays.asList(3.5)),
+                times.toString());
+            String start = names.get(random.nextInt(names.size()));
+            String end = names.get(random.nextInt(names.size()));
+            try {
+              RouteResult<String> route = backend.findRoute(start, end);
+              Assertions.assertEquals(start, route.getNodes().get(0));
+              Assertions.assertEquals(end, route.getNodes().get(route.getNodes().size() - 1));
+            } catch (java.util.NoSuchElementException e) {
+              // no path between these two
+            }
+          }
+        } catch (Throwable t) {
+          failure.compareAndSet(null, t);
+        }
+      });
+      readers.add(reader);
+      reader.start();
+    }
+    for (int i = 0; i < 300; i++) {
+      switch (i % 3) {
+        case 0:
+          Assertions.assertTrue(backend.updateEdge("Y", "Z", 2.0));
+          break;
+        case 1:
+          Assertions.assertTrue(backend.closeEdge("Y", "Z"));
+          break;
+        default:
+          Assertions.assertTrue(backend.updateEdge("Y", "Z", 1.0));
+      }
+    }
+    done.set(true);
+    for (Thread reader : readers) {
+      reader.join();
+    }
+    Assertions.assertNull(failure.get());
+    Assertions.assertTrue(backend.getGraph().isReadOnly());
+    Assertions.assertEquals(Arrays.asList(1.0, 1.0), backend.getTravelTimesOnPath("X", "Z"));
+  }
+
+  private static void awaitEccentricities(Backend backend) throws InterruptedException {
+    for (int i = 0; i < 1000 && backend.getStaleEccentricityCount() != 0; i++) {
+      Thread.sleep(10);
+    }
+    Assertions.assertEquals(0, backend.getStaleEccentricityCount());
+  }
+
+  private static void assertFarthestMatchesSearch(Backend backend,
+      DijkstraGraph<String, Double> graph, List<String> names) {
+    for (String start : names) {
+      DijkstraGraph<String, Double>.ShortestPathTree tree = graph.computeShortestPathTree(start);
+      String farthest = null;
+      for (String location : graph.getAllLocations()) {
+        if (tree.getCost(location) != Double.POSITIVE_INFINITY
+            && (farthest == null || tree.getCost(location) > tree.getCost(farthest))) {
+          farthest = location;
+        }
+      }
+      Assertions.assertEquals(farthest, backend.getMostDistantLocation(start), start);
+    }
+  }
+
+  /**
+   * Builds the same graph of 60 locations with random edges every time, with one location that
+   * cannot be reached and one id left unused by a removed location, and lists its locations.
+   */
+  private static DijkstraGraph<String, Double> buildRandomGraph(List<String> names) {
+    Random random = new Random(7);
+    DijkstraGraph<String, Double> graph = new DijkstraGraph<>();
+    names.clear();
+    for (int i = 0; i < 60; i++) {
+      graph.insertNode("L" + i);
+      names.add("L" + i);
+    }
+    for (int i = 0; i < 59 * 3; i++) {
+      int pred = random.nextInt(59);
+      int succ = random.nextInt(59);
+      graph.insertEdge("L" + pred, "L" + succ, 1 + random.nextInt(100) / 4.0);
+    }
+    graph.insertNode("Removed");
+    graph.removeNode("Removed");
+    return graph;
+  }
+
+  @Test
+  public void testAsyncQueriesCanTimeOutAndAreBounded() throws Exception {
+    List<String> names = new ArrayList<>();
+    Backend backend = new Backend(buildRandomGraph(names));
+    Assertions.assertEquals(backend.findRoute("L0", "L5").getNodes(),
+        backend.findRouteAsync("L0", "L5", 0).get(10, TimeUnit.SECONDS).getNodes());
+    Assertions.assertEquals(backend.getMostDistantLocation("L3"),
+        backend.getMostDistantLocationAsync("L3", 1000).get(10, TimeUnit.SECONDS));
+    ExecutionException missing = Assertions.assertThrows(ExecutionException.class,
+        () -> backend.findRouteAsync("L0", "Nowhere", 0).get(10, TimeUnit.SECONDS));
+    Assertions.assertTrue(missing.getCause() instanceof NoSuchElementException);
+
+    // a query that runs until its thread is interrupted, like a search that takes too long
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch interrupted = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    Backend slow = new Backend(backend.getGraph()) {
+      @Override
+      public RouteResult<String> findRoute(String startLocation, String endLocation) {
+        started.countDown();
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          interrupted.countDown();
+          throw new CancellationException("interrupted");
+        }
+        return super.findRoute(startLocation, endLocation);
+      }
+    };
+    ExecutionException timedOut = Assertions.assertThrows(ExecutionException.class,
+        () -> slow.findRouteAsync("L0", "L5", 50).get(10, TimeUnit.SECONDS));
+    Assertions.assertTrue(timedOut.getCause() instanceof TimeoutException);
+    Assertions.assertTrue(interrupted.await(10, TimeUnit.SECONDS), "the query was not stopped");
+
+    // with one thread and room for one waiting query, a third query is rejected at once
+    slow.setAsyncExecutor(1, 1);
+    CompletableFuture<RouteResult<String>> running = slow.findRouteAsync("L0", "L5", 0);
+    Assertions.assertTrue(started.await(10, TimeUnit.SECONDS));
+    CompletableFuture<RouteResult<String>> waiting = slow.findRouteAsync("L1", "L5", 0);
+    ExecutionException rejected = Assertions.assertThrows(ExecutionException.class,
+        () -> slow.findRouteAsync("L2", "L5", 0).get(10, TimeUnit.SECONDS));
+    Assertions.assertTrue(rejected.getCause() instanceof RejectedExecutionException);
+    waiting.cancel(true);
+    release.countDown();
+    Assertions.assertEquals("L0", running.get(10, TimeUnit.SECONDS).getNodes().get(0));
+    Assertions.assertTrue(waiting.isCancelled());
+  }
+
+  @Test
+  public void testIdenticalQueriesInFlightShareOneSearch() throws Exception {
+    AtomicInteger searches = new AtomicInteger();
+    CountDownLatch release = new CountDownLatch(1);
+    DijkstraGraph<String, Double> graph = new DijkstraGraph<>() {
+      @Override
+      public RouteResult<String> shortestRoute(String start, String end) {
+        searches.incrementAndGet();
+        try {
+          release.await(); // holds the first search until every identical query has arrived
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        return super.shortestRoute(start, end);
+      }
+    };
+    graph.insertNode("A");
+    graph.insertNode("B");
+    graph.insertNode("C");
+    graph.insertEdge("A", "B", 2.0);
+    graph.insertEdge("B", "C", 3.0);
+    Backend backend = new Backend(graph);
+
+    int clients = 8;
+    ExecutorService pool = Executors.newFixedThreadPool(clients);
+    List<CompletableFuture<List<String>>> paths = new ArrayList<>();
+    for (int i = 0; i < clients; i++) {
+      paths.add(CompletableFuture.supplyAsync(() -> backend.findShortestPath("A", "C"), pool));
+    }
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+    while (backend.getCoalescedQueryCount() < clients - 1 && System.nanoTime() < deadline) {
+      Thread.sleep(5);
+    }
+    Assertions.assertEquals(clients - 1, backend.getCoalescedQueryCount());
+    release.countDown();
+    for (CompletableFuture<List<String>> path : paths) {
+      Assertions.assertEquals(List.of("A", "B", "C"), path.get(10, TimeUnit.SECONDS));
+    }
+    Assertions.assertEquals(1, searches.get());
+    pool.shutdown();
+
+    // a different query, or the same one after the graph changed, searches on its own
+    backend.findShortestPath("A", "B");
+    backend.updateEdge("A", "B", 1.0);
+    Assertions.assertEquals(List.of(1.0, 3.0), backend.getTravelTimesOnPath("A", "C"));
+    Assertions.assertEquals(3, searches.get());
+    Assertions.assertEquals(clients - 1, backend.getCoalescedQueryCount());
+  }
+
+  @Test
+  public void testQueriesWaitingOnAnInterruptedSearchSearchAgain() throws Exception {
+    AtomicInteger searches = new AtomicInteger();
+    CountDownLatch never = new CountDownLatch(1);
+    DijkstraGraph<String, Double> graph = new DijkstraGraph<>() {
+      @Override
+      public RouteResult<String> shortestRoute(String start, String end) {
+        if (searches.incrementAndGet() == 1) {
+          try {
+            never.await(); // the first search only ends when its thread is interrupted
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Search interrupted");
+          }
+        }
+        return super.shortestRoute(start, end);
+      }
+    };
+    graph.insertNode("A");
+    graph.insertNode("B");
+    graph.insertEdge("A", "B", 2.0);
+    Backend backend = new Backend(graph);
+
+    AtomicReference<Object> leaderResult = new AtomicReference<>();
+    Thread leader = new Thread(() -> {
+      try {
+        leaderResult.set(backend.findShortestPath("A", "B"));
+      } catch (CancellationException e) {
+        leaderResult.set(e);
+      }
+    });
+    leader.start();
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+    while (searches.get() < 1 && System.nanoTime() < deadline) {
+      Thread.sleep(5);
+    }
+    CompletableFuture<List<String>> waiter =
+        CompletableFuture.supplyAsync(() -> backend.findShortestPath("A", "B"));
+    while (backend.getCoalescedQueryCount() < 1 && System.nanoTime() < deadline) {
+      Thread.sleep(5);
+    }
+    Assertions.assertEquals(1, backend.getCoalescedQueryCount());
+
+    // stopping the search fails only the query that ran it; the waiting query searches itself
+    leader.interrupt();
+    leader.join(10000);
+    Assertions.assertTrue(leaderResult.get() instanceof CancellationException);
+    Assertions.assertEquals(List.of("A", "B"), waiter.get(10, TimeUnit.SECONDS));
+    Assertions.assertEquals(2, searches.get());
+  }
+
+  /**
+   * Sends a GET request to a routing server on this machine.
+   *
+   * @return the status code and the body of the response, separated by a space
+   */
+  private static String get(RoutingServer server, String pathAndQuery) throws IOException {
+    HttpURLConnection connection = (HttpURLConnection) new URL(
+        "http://127.0.0.1:" + server.getPort() + pathAndQuery).openConnection();
+    try {
+      int status = connection.getResponseCode();
+      InputStream body = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+      return status + " " + new String(body.readAllBytes(), StandardCharsets.UTF_8);
+    } finally {
+      connection.disconnect();
+    }
+  }
+
+  @Test
+  public void testRoutingServerAnswersInJsonAndShedsLoad() throws Exception {
+    Backend backend = loadDotString(
+        "digraph {\n  A -> B [seconds=2];\n  B -> \"C D\" [seconds=3.5];\n  E;\n}\n");
+    RoutingServer server = new RoutingServer(backend, new InetSocketAddress("127.0.0.1", 0), 4);
+    server.start();
+    try {
+      Assertions.assertEquals("200 {\"locations\":[\"A\",\"B\",\"C D\",\"E\"]}",
+          get(server, "/locations"));
+      Assertions.assertEquals(
+          "200 {\"start\":\"A\",\"end\":\"C D\",\"path\":[\"A\",\"B\",\"C D\"]}",
+          get(server, "/path?start=A&end=C+D"));
+      Assertions.assertEquals("200 {\"start\":\"A\",\"end\":\"C D\",\"times\":[2.0,3.5]}",
+          get(server, "/times?start=A&end=C%20D"));
+      Assertions.assertEquals("200 {\"location\":\"A\",\"farthest\":\"C D\"}",
+          get(server, "/farthest?location=A"));
+      Assertions.assertTrue(get(server, "/path?start=A&end=E").startsWith("404 {\"error\":"));
+      Assertions.assertTrue(get(server, "/path?start=A&end=Z").startsWith("404 {\"error\":"));
+      Assertions.assertTrue(get(server, "/path?start=A").startsWith("400 {\"error\":"));
+      Assertions.assertTrue(get(server, "/nowhere").startsWith("404 {\"error\":"));
+    } finally {
+      server.stop(0);
+    }
+
+    // a backend that blocks keeps the only admitted request busy, so the next one is rejected
+    CountDownLatch entered = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    Backend blocking = new Backend(backend.getGraph()) {
+      @Override
+      public List<String> getListOfAllLocations() {
+        entered.countDown();
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        return super.getListOfAllLocations();
+      }
+    };
+    RoutingServer busy = new RoutingServer(blocking, new InetSocketAddress("127.0.0.1", 0), 1);
+    busy.start();
+    try {
+      AtomicReference<String> first = new AtomicReference<>();
+      Thread client = new Thread(() -> {
+        try {
+          first.set(get(busy, "/locations"));
+        } catch (IOException e) {
+          first.set(e.toString());
+        }
+      });
+      client.start();
+      Assertions.assertTrue(entered.await(10, TimeUnit.SECONDS));
+      Assertions.assertEquals("503 {\"error\":\"Server is overloaded\"}",
+          get(busy, "/locations"));
+      release.countDown();
+      client.join();
+      Assertions.assertTrue(first.get().startsWith("200 "), first.get());
+      Assertions.assertEquals(1, busy.getRejectedCount());
+    } finally {
+      release.countDown();
+      busy.stop(0);
+    }
+
+    // unexpected failures are reported as 500, and queries that were stopped as 503
+    Backend failing = new Backend(backend.getGraph()) {
+      @Override
+      public List<String> getListOfAllLocations() {
+        throw new IllegalStateException("broken");
+      }
+
+      @Override
+      public String getMostDistantLocation(String location) {
+        throw new CancellationException("stopped");
+      }
+    };
+    RoutingServer broken = new RoutingServer(failing, new InetSocketAddress("127.0.0.1", 0), 2);
+    broken.start();
+    try {
+      Assertions.assertTrue(get(broken, "/locations").startsWith("500 {\"error\":"));
+      Assertions.assertTrue(get(broken, "/farthest?location=A").startsWith("503 {\"error\":"));
+      Assertions.assertTrue(get(broken, "/path?start=A&end=B").startsWith("200 "));
+      Assertions.assertEquals("500 {\"error\":\"Internal error\"}", get(broken, "/locations"));
+    } finally {
+      broken.stop(0);
+    }
+
+    // a query that takes longer than the timeout is answered with 503 and stopped, and gives its
+    // admission back, so that later queries are not rejected
+    CountDownLatch stopped = new CountDownLatch(1);
+    Backend slow = new Backend(backend.getGraph()) {
+      @Override
+      public List<String> getListOfAllLocations() {
+        try {
+          new CountDownLatch(1).await();
+        } catch (InterruptedException e) {
+          stopped.countDown();
+          throw new CancellationException("stopped");
+        }
+        return super.getListOfAllLocations();
+      }
+    };
+    RoutingServer timed = new RoutingServer(slow, new InetSocketAddress("127.0.0.1", 0), 1);
+    timed.setQueryTimeout(100);
+    timed.start();
+    try {
+      Assertions.assertEquals("503 {\"error\":\"The query took too long\"}",
+          get(timed, "/locations"));
+      Assertions.assertTrue(stopped.await(10, TimeUnit.SECONDS));
+      long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+      String answer = get(timed, "/path?start=A&end=B");
+      while (answer.startsWith("503 {\"error\":\"Server is overloaded")
+          && System.nanoTime() < deadline) {
+        Thread.sleep(5);
+        answer = get(timed, "/path?start=A&end=B");
+      }
+      Assertions.assertTrue(answer.startsWith("200 "), answer);
+    } finally {
+      timed.stop(0);
+    }
+  }
 
   @BeforeEach
   public void setup() throws Exception {
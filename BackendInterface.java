@@ -1,6 +1,7 @@
 import java.io.IOException;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
 
 public interface BackendInterface {
 
@@ -43,6 +44,18 @@ public interface BackendInterface {
    */
   public List<Double> getTravelTimesOnPath(String startLocation, String endLocation);
 
+  /**
+   * Return the shortest path from startLocation to endLocation together with the walking time in
+   * seconds of each step along it, the walking time from the start to each location on it, its
+   * total walking time and the number of locations the search settled, all from one search.
+   * @param startLocation the start location of the path
+   * @param endLocation the end location of the path
+   * @return the route along the shortest path from startLocation to endLocation
+   * @throws NoSuchElementException if either location does not exist or no such path exists
+   */
+  public RouteResult<String> findRoute(String startLocation, String endLocation)
+      throws NoSuchElementException;
+
   /**
    * Return the most distant location from startLocation that is reachable in the graph.
    * @param startLocation the location to find the most distant location for
@@ -51,4 +64,27 @@ public interface BackendInterface {
    */
   public String getMostDistantLocation(String startLocation) throws NoSuchElementException;
 
+  /**
+   * Starts to find the same route as findRoute on a background thread, and returns without
+   * waiting for it. Cancelling the returned future stops the search. The future fails with a
+   * NoSuchElementException when findRoute would throw one, and with a TimeoutException when the
+   * route is not found within timeoutMillis, which stops the search as well.
+   * @param startLocation the start location of the path
+   * @param endLocation the end location of the path
+   * @param timeoutMillis the longest time in milliseconds to spend on the query, or 0 for no limit
+   * @return a future for the route along the shortest path from startLocation to endLocation
+   */
+  public CompletableFuture<RouteResult<String>> findRouteAsync(String startLocation,
+      String endLocation, long timeoutMillis);
+
+  /**
+   * Starts to find the same location as getMostDistantLocation on a background thread, and
+   * returns without waiting for it. Cancellation and timeouts work like in findRouteAsync.
+   * @param startLocation the location to find the most distant location for
+   * @param timeoutMillis the longest time in milliseconds to spend on the query, or 0 for no limit
+   * @return a future for the location that is most distant from startLocation
+   */
+  public CompletableFuture<String> getMostDistantLocationAsync(String startLocation,
+      long timeoutMillis);
+
 }
@@ -2,6 +2,7 @@ import java.io.IOException;
 import java.util.Arrays;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
 
 public class BackendPlaceholder implements BackendInterface {
 
@@ -21,8 +22,24 @@ public class BackendPlaceholder implements BackendInterface {
     return Arrays.asList(176.0, 80.0);
   }
 
+  public RouteResult<String> findRoute(String startLocation, String endLocation)
+      throws NoSuchElementException {
+    return new RouteResult<>(findShortestPath(startLocation, endLocation),
+        getTravelTimesOnPath(startLocation, endLocation), 0);
+  }
+
   public String getMostDistantLocation(String location) throws NoSuchElementException {
     return "Atmospheric, Oceanic and Space Sciences";
   }
 
+  public CompletableFuture<RouteResult<String>> findRouteAsync(String startLocation,
+      String endLocation, long timeoutMillis) {
+    return CompletableFuture.completedFuture(findRoute(startLocation, endLocation));
+  }
+
+  public CompletableFuture<String> getMostDistantLocationAsync(String location,
+      long timeoutMillis) {
+    return CompletableFuture.completedFuture(getMostDistantLocation(location));
+  }
+
 }
@@ -2,7 +2,6 @@ import java.util.List;
 import java.util.LinkedList;
 import java.util.NoSuchElementException;
 import java.util.ArrayList;
-import java.util.List;
 
 /**
  * This BaseGraph class contains stores a set of nodes, along with a set of
@@ -10,11 +9,16 @@ import java.util.List;
  */
 public class BaseGraph<NodeType, EdgeType extends Number> {
 
-    // Each node contains unique data along with two lists of directed edges
+    // Each node contains unique data along with two lists of directed edges, and
+    // a dense integer id that search algorithms can use to index into arrays.
+    // Nodes with many leaving edges also map each successor's data to the edge
+    // leading there, so that those edges can be found without a linear search
     protected class Node {
         public NodeType data;
+        public int id;
         public List<Edge> edgesLeaving = new LinkedList<>();
         public List<Edge> edgesEntering = new LinkedList<>();
+        public MapADT<NodeType, Edge> successorIndex = null;
 
         public Node(NodeType data) {
             this.data = data;
@@ -24,6 +28,10 @@ public class BaseGraph<NodeType, EdgeType extends Number> {
     // Nodes can be retrieved from this map by their unique data
     protected MapADT<NodeType, Node> nodes = null;
     private List<NodeType> allNodeKeys = new ArrayList<>();
+    // Nodes can also be retrieved from this list by their id; the ids of removed
+    // nodes leave a null entry behind and are handed out again by insertNode
+    protected List<Node> nodesById = new ArrayList<>();
+    private LinkedList<Integer> freeIds = new LinkedList<>();
 
     // Each edge contains data/weight, and two nodes that it connects
     protected class Edge {
@@ -41,6 +49,18 @@ public class BaseGraph<NodeType, EdgeType extends Number> {
     protected int edgeCount = 0;
     // Edges can be retrieved through the edge lists in either connected node
 
+    // Nodes with more leaving edges than this threshold keep a successorIndex
+    public static final int DEFAULT_EDGE_INDEX_THRESHOLD = 8;
+    private int edgeIndexThreshold = DEFAULT_EDGE_INDEX_THRESHOLD;
+
+    // Counts every change to the nodes or edges of this graph, so that data
+    // derived from the graph can tell when it has become out of date
+    protected long modificationCount = 0;
+
+    // The most recent frozen snapshot of this graph, see freeze(). Threads that
+    // share a graph that is no longer modified read it without locking
+    private volatile FrozenGraph<NodeType> frozen = null;
+
     /**
      * Constructor for BaseGraph that provides the map the graph uses.
      * 
@@ -62,11 +82,40 @@ public class BaseGraph<NodeType, EdgeType extends Number> {
     public boolean insertNode(NodeType data) {
         if (nodes.containsKey(data))
             return false; // throws NPE when data's null
-        nodes.put(data, new Node(data));
-        allNodeKeys.add(data);
+        addNode(data);
         return true;
     }
 
+    /**
+     * Return the id of the node containing data, first inserting a new node for
+     * data when the graph does not contain one yet. Loaders that see the same
+     * node many times can use this to look each occurrence up only once.
+     *
+     * @param data is the data item stored in the node
+     * @return the id of the node that contains data
+     * @throws NullPointerException if data is null
+     */
+    public int getOrInsertNode(NodeType data) {
+        if (nodes.containsKey(data))
+            return nodes.get(data).id; // throws NPE when data's null
+        return addNode(data).id;
+    }
+
+    private Node addNode(NodeType data) {
+        Node newNode = new Node(data);
+        if (freeIds.isEmpty()) {
+            newNode.id = nodesById.size();
+            nodesById.add(newNode);
+        } else {
+            newNode.id = freeIds.removeFirst();
+            nodesById.set(newNode.id, newNode);
+        }
+        nodes.put(data, newNode);
+        allNodeKeys.add(data);
+        modificationCount++;
+        return newNode;
+    }
+
     /**
      * Remove a node from the graph.
      * And also remove all edges adjacent to that node.
@@ -82,12 +131,21 @@ public class BaseGraph<NodeType, EdgeType extends Number> {
             return false; // throws NPE when data==null
         Node oldNode = nodes.remove(data);
         // remove all edges entering neighboring nodes from this one
-        for (Edge edge : oldNode.edgesLeaving)
+        for (Edge edge : oldNode.edgesLeaving) {
             edge.successor.edgesEntering.remove(edge);
+            this.edgeCount--;
+        }
         // remove all edges leaving neighboring nodes toward this one
-        for (Edge edge : oldNode.edgesEntering)
+        for (Edge edge : oldNode.edgesEntering) {
             edge.predecessor.edgesLeaving.remove(edge);
+            if (edge.predecessor.successorIndex != null)
+                edge.predecessor.successorIndex.remove(data);
+            this.edgeCount--;
+        }
         allNodeKeys.remove(data);
+        nodesById.set(oldNode.id, null);
+        freeIds.addFirst(oldNode.id);
+        modificationCount++;
         return true;
     }
 
@@ -111,6 +169,27 @@ public class BaseGraph<NodeType, EdgeType extends Number> {
         return new ArrayList<>(allNodeKeys);
     }
 
+    /**
+     * Return an upper bound on the ids of the nodes in this graph. Every node's id
+     * is at least 0 and less than this value, so arrays of this length can be
+     * indexed by node id.
+     *
+     * @return one more than the largest id that may be assigned to a node
+     */
+    public int getNodeIdBound() {
+        return nodesById.size();
+    }
+
+    /**
+     * Return the node with the provided id.
+     *
+     * @param id the id of the node to retrieve
+     * @return the node with that id, or null if no node currently has that id
+     */
+    protected Node getNodeById(int id) {
+        return nodesById.get(id);
+    }
+
     /**
      * Return the number of nodes in the graph
      * 
@@ -133,23 +212,52 @@ public class BaseGraph<NodeType, EdgeType extends Number> {
      */
     public boolean insertEdge(NodeType pred, NodeType succ, EdgeType weight) {
         // find nodes associated with node data, and return false when not found
-        Node predNode = nodes.get(pred);
-        Node succNode = nodes.get(succ);
+        if (!nodes.containsKey(pred) || !nodes.containsKey(succ))
+            return false;
+        insertEdge(nodes.get(pred), nodes.get(succ), weight);
+        return true;
+    }
+
+    /**
+     * Insert a new directed edge, or update the weight of an existing one,
+     * between the nodes with the provided ids. See insertEdge.
+     *
+     * @param predId is the id of the new edge's predecessor node
+     * @param succId is the id of the new edge's successor node
+     * @param weight is the non-negative data item stored in the new edge
+     * @return true if the edge could be inserted or updated, or
+     *         false if either id does not belong to a node in the graph
+     */
+    public boolean insertEdgeById(int predId, int succId, EdgeType weight) {
+        if (predId < 0 || predId >= nodesById.size() || succId < 0
+                || succId >= nodesById.size())
+            return false;
+        Node predNode = nodesById.get(predId);
+        Node succNode = nodesById.get(succId);
         if (predNode == null || succNode == null)
             return false;
-        try {
+        insertEdge(predNode, succNode, weight);
+        return true;
+    }
+
+    private void insertEdge(Node predNode, Node succNode, EdgeType weight) {
+        Edge existingEdge = findEdge(predNode, succNode.data);
+        if (existingEdge != null) {
             // when an edge alread exists within the graph, update its weight
-            Edge existingEdge = getEdgeHelper(pred, succ);
             existingEdge.data = weight;
-        } catch (NoSuchElementException e) {
+        } else {
             // otherwise create a new edges
             Edge newEdge = new Edge(weight, predNode, succNode);
             this.edgeCount++;
             // and insert it into each of its adjacent nodes' respective lists
             predNode.edgesLeaving.add(newEdge);
             succNode.edgesEntering.add(newEdge);
+            if (predNode.successorIndex != null)
+                predNode.successorIndex.put(succNode.data, newEdge);
+            else if (predNode.edgesLeaving.size() > edgeIndexThreshold)
+                buildSuccessorIndex(predNode);
         }
-        return true;
+        modificationCount++;
     }
 
     /**
@@ -161,19 +269,21 @@ public class BaseGraph<NodeType, EdgeType extends Number> {
      *         false if such an edge is not found in the graph
      */
     public boolean removeEdge(NodeType pred, NodeType succ) {
-        try {
-            // when an edge exists
-            Edge oldEdge = getEdgeHelper(pred, succ);
-            // remove it from the edge lists of each adjacent node
-            oldEdge.predecessor.edgesLeaving.remove(oldEdge);
-            oldEdge.successor.edgesEntering.remove(oldEdge);
-            // and decrement the edge count before removing
-            this.edgeCount--;
-            return true;
-        } catch (NoSuchElementException e) {
-            // when no such edge exists, return false instead
+        if (!nodes.containsKey(pred))
             return false;
-        }
+        Edge oldEdge = findEdge(nodes.get(pred), succ);
+        // when no such edge exists, return false instead
+        if (oldEdge == null)
+            return false;
+        // remove it from the edge lists of each adjacent node
+        oldEdge.predecessor.edgesLeaving.remove(oldEdge);
+        oldEdge.successor.edgesEntering.remove(oldEdge);
+        if (oldEdge.predecessor.successorIndex != null)
+            oldEdge.predecessor.successorIndex.remove(succ);
+        // and decrement the edge count before removing
+        this.edgeCount--;
+        modificationCount++;
+        return true;
     }
 
     /**
@@ -184,12 +294,7 @@ public class BaseGraph<NodeType, EdgeType extends Number> {
      * @return true if the edge is found in the graph, or false other
      */
     public boolean containsEdge(NodeType pred, NodeType succ) {
-        try {
-            getEdgeHelper(pred, succ);
-            return true;
-        } catch (NoSuchElementException e) {
-            return false;
-        }
+        return nodes.containsKey(pred) && findEdge(nodes.get(pred), succ) != null;
     }
 
     /**
@@ -206,15 +311,174 @@ public class BaseGraph<NodeType, EdgeType extends Number> {
     }
 
     protected Edge getEdgeHelper(NodeType pred, NodeType succ) {
-        Node predNode = nodes.get(pred);
-        // search for edge through the predecessor's list of leaving edges
+        Edge edge = findEdge(nodes.get(pred), succ);
+        // when no such edge can be found, throw NSE
+        if (edge == null)
+            throw new NoSuchElementException("No edge from " + pred.toString() + " to " +
+                    succ.toString());
+        return edge;
+    }
+
+    /**
+     * Find the edge leaving a node toward the node with the provided data.
+     *
+     * @param predNode the node the edge leaves
+     * @param succ     the data item contained in the target node for the edge
+     * @return the edge, or null if predNode has no edge leading to succ
+     */
+    protected Edge findEdge(Node predNode, NodeType succ) {
+        // look the edge up directly when this node keeps an index of its successors
+        if (predNode.successorIndex != null)
+            return predNode.successorIndex.containsKey(succ)
+                    ? predNode.successorIndex.get(succ) : null;
+        // otherwise search for edge through the predecessor's list of leaving edges
         for (Edge edge : predNode.edgesLeaving)
             // compare succ to the data in each leaving edge's successor
             if (edge.successor.data.equals(succ))
                 return edge;
-        // when no such edge can be found, throw NSE
-        throw new NoSuchElementException("No edge from " + pred.toString() + " to " +
-                succ.toString());
+        return null;
+    }
+
+    /**
+     * Set how many edges must leave a node before that node keeps an index
+     * from each successor's data to the edge leading there. Nodes above the new
+     * threshold get an index right away, and nodes at or below it drop theirs.
+     * An index makes finding a node's edges (in insertEdge, removeEdge,
+     * containsEdge and getEdge) take constant rather than linear time, at the
+     * cost of memory for the index.
+     *
+     * @param threshold the largest number of leaving edges a node can have
+     *                  without an index, or Integer.MAX_VALUE to never index
+     */
+    public void setEdgeIndexThreshold(int threshold) {
+        this.edgeIndexThreshold = threshold;
+        for (Node node : nodesById) {
+            if (node == null)
+                continue;
+            if (node.edgesLeaving.size() > threshold)
+                buildSuccessorIndex(node);
+            else
+                node.successorIndex = null;
+        }
+    }
+
+    private void buildSuccessorIndex(Node node) {
+        node.successorIndex = new HashtableMap<>(node.edgesLeaving.size() * 2);
+        for (Edge edge : node.edgesLeaving)
+            node.successorIndex.put(edge.successor.data, edge);
+    }
+
+    /**
+     * Compile the current nodes and edges of this graph into an immutable
+     * snapshot in compressed sparse row form (see FrozenGraph). The snapshot is
+     * kept, and returned again by later calls until this graph is modified.
+     * Any number of threads may call this at once while the graph is not being
+     * modified; only one of them compiles the snapshot.
+     *
+     * @return a snapshot of the current state of this graph
+     */
+    public FrozenGraph<NodeType> freeze() {
+        FrozenGraph<NodeType> snapshot = frozen;
+        if (snapshot != null && snapshot.getGraphVersion() == modificationCount)
+            return snapshot;
+        synchronized (this) {
+            // another thread may have compiled it while this one waited
+            snapshot = frozen;
+            if (snapshot != null && snapshot.getGraphVersion() == modificationCount)
+                return snapshot;
+            return compileSnapshot();
+        }
+    }
+
+    private FrozenGraph<NodeType> compileSnapshot() {
+        FrozenGraph<NodeType> snapshot;
+        // read first, so that a snapshot compiled while the graph is being
+        // modified is never mistaken for one of the newer version
+        long version = modificationCount;
+
+        int bound = nodesById.size();
+        int[] forwardOffsets = new int[bound + 1];
+        int[] reverseOffsets = new int[bound + 1];
+        for (int id = 0; id < bound; id++) {
+            Node node = nodesById.get(id);
+            forwardOffsets[id + 1] = forwardOffsets[id]
+                    + (node == null ? 0 : node.edgesLeaving.size());
+            reverseOffsets[id + 1] = reverseOffsets[id]
+                    + (node == null ? 0 : node.edgesEntering.size());
+        }
+        int[] forwardTargets = new int[forwardOffsets[bound]];
+        double[] forwardWeights = new double[forwardOffsets[bound]];
+        int[] reverseSources = new int[reverseOffsets[bound]];
+        double[] reverseWeights = new double[reverseOffsets[bound]];
+        Object[] dataById = new Object[bound];
+        MapADT<NodeType, Integer> idsByData = new HashtableMap<>(Math.max(16, bound * 2));
+        for (int id = 0; id < bound; id++) {
+            Node node = nodesById.get(id);
+            if (node == null)
+                continue;
+            dataById[id] = node.data;
+            idsByData.put(node.data, id);
+            // edges keep the order of the node's lists, so searches visit them in the same order
+            int index = forwardOffsets[id];
+            for (Edge edge : node.edgesLeaving) {
+                forwardTargets[index] = edge.successor.id;
+                forwardWeights[index++] = edge.data.doubleValue();
+            }
+            index = reverseOffsets[id];
+            for (Edge edge : node.edgesEntering) {
+                reverseSources[index] = edge.predecessor.id;
+                reverseWeights[index++] = edge.data.doubleValue();
+            }
+        }
+        snapshot = new FrozenGraph<>(forwardOffsets, forwardTargets, forwardWeights,
+                reverseOffsets, reverseSources, reverseWeights, dataById, idsByData,
+                nodes.getSize(), version);
+        frozen = snapshot;
+        return snapshot;
+    }
+
+    /**
+     * Replace the contents of this graph, which must be empty, with a copy of
+     * the nodes and edges of source. Every node keeps its id, the edges leaving
+     * each node keep their order, and the modification count is copied too, so
+     * that data derived from source by id and version also describes the copy.
+     *
+     * @param source the graph to copy
+     * @throws IllegalStateException if this graph is not empty
+     */
+    protected void copyFrom(BaseGraph<NodeType, EdgeType> source) {
+        if (!nodesById.isEmpty())
+            throw new IllegalStateException("Can only copy into an empty graph");
+        for (Node node : source.nodesById) {
+            Node copy = null;
+            if (node != null) {
+                copy = new Node(node.data);
+                copy.id = node.id;
+                nodes.put(node.data, copy);
+            }
+            nodesById.add(copy);
+        }
+        for (Node node : source.nodesById) {
+            if (node == null)
+                continue;
+            for (Edge edge : node.edgesLeaving)
+                insertEdge(nodesById.get(node.id), nodesById.get(edge.successor.id),
+                        edge.data);
+        }
+        allNodeKeys.addAll(source.allNodeKeys);
+        freeIds.addAll(source.freeIds);
+        modificationCount = source.modificationCount;
+    }
+
+    /**
+     * Return the number of changes that have been made to this graph. Every
+     * successful insertion or removal of a node, and every insertion, update or
+     * removal of an edge increases this count.
+     *
+     * @return the number of modifications made to this graph so far
+     */
+    public long getModificationCount() {
+        return modificationCount;
     }
 
     /**
@@ -0,0 +1,585 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+
+/**
+ * Command line benchmarks for the graph and map implementations in this project. Each benchmark
+ * builds its own synthetic data, so no input files are needed. Run with the name of a benchmark
+ * as the only argument, or with no arguments to run all of them:
+ *
+ *   java Benchmarks [queues|strategies|snapshot|maps|resize|load|matrix|table|eccentricity|concurrent]
+ */
+public class Benchmarks {
+
+  public static void main(String[] args) {
+    String which = args.length > 0 ? args[0] : "all";
+    if (which.equals("all") || which.equals("queues")) {
+      benchmarkQueues();
+    }
+    if (which.equals("all") || which.equals("strategies")) {
+      benchmarkStrategies();
+    }
+    if (which.equals("all") || which.equals("snapshot")) {
+      benchmarkSnapshot();
+    }
+    if (which.equals("all") || which.equals("maps")) {
+      benchmarkMaps();
+      benchmarkConcurrentMaps();
+    }
+    if (which.equals("all") || which.equals("resize")) {
+      benchmarkResize();
+    }
+    if (which.equals("all") || which.equals("load")) {
+      benchmarkLoad();
+    }
+    if (which.equals("all") || which.equals("matrix")) {
+      benchmarkMatrix();
+    }
+    if (which.equals("all") || which.equals("table")) {
+      benchmarkTable();
+    }
+    if (which.equals("all") || which.equals("eccentricity")) {
+      benchmarkEccentricity();
+    }
+    if (which.equals("all") || which.equals("concurrent")) {
+      benchmarkConcurrent();
+    }
+  }
+
+  /**
+   * Builds a square grid graph in which every node has edges with random weights to its
+   * neighbors in all four directions, similar in shape to a street network.
+   *
+   * @param side   the number of nodes along each side of the grid
+   * @param random the source of edge weights
+   * @return the grid graph, with nodes numbered row by row
+   */
+  static DijkstraGraph<Integer, Double> buildGridGraph(int side, Random random) {
+    DijkstraGraph<Integer, Double> graph = new DijkstraGraph<>();
+    for (int i = 0; i < side * side; i++) {
+      graph.insertNode(i);
+    }
+    for (int row = 0; row < side; row++) {
+      for (int col = 0; col < side; col++) {
+        int node = row * side + col;
+        if (col + 1 < side) {
+          graph.insertEdge(node, node + 1, 10 + random.nextInt(300) / 10.0);
+          graph.insertEdge(node + 1, node, 10 + random.nextInt(300) / 10.0);
+        }
+        if (row + 1 < side) {
+          graph.insertEdge(node, node + side, 10 + random.nextInt(300) / 10.0);
+          graph.insertEdge(node + side, node, 10 + random.nextInt(300) / 10.0);
+        }
+      }
+    }
+    return graph;
+  }
+
+  /**
+   * Compares the lazy binary heap with the indexed 4-ary heap on the same random point to point
+   * queries. Besides time, it reports the number of heap operations, the number of heap entries
+   * that were moved while sifting (a proxy for memory traffic), and the largest heap size.
+   */
+  static void benchmarkQueues() {
+    int side = 200;
+    int queries = 200;
+    DijkstraGraph<Integer, Double> graph = buildGridGraph(side, new Random(42));
+    System.out.println("queues: " + graph.getNodeCount() + " nodes, " + graph.getEdgeCount()
+        + " edges, " + queries + " queries");
+
+    for (DijkstraGraph.QueueType type : DijkstraGraph.QueueType.values()) {
+      graph.setQueueType(type);
+      Random random = new Random(7);
+      // warm up before measuring
+      for (int i = 0; i < queries / 4; i++) {
+        graph.shortestPathCost(random.nextInt(side * side), random.nextInt(side * side));
+      }
+      SearchQueueADT queue = graph.getWorkspace().getQueue();
+      queue.resetStatistics();
+      random = new Random(11);
+      long startTime = System.nanoTime();
+      double checksum = 0;
+      for (int i = 0; i < queries; i++) {
+        checksum += graph.shortestPathCost(random.nextInt(side * side),
+            random.nextInt(side * side));
+      }
+      long elapsed = System.nanoTime() - startTime;
+      System.out.printf("  %-18s %8.1f ms  %,12d ops  %,14d moves  peak %,7d  (checksum %.1f)%n",
+          type, elapsed / 1e6, queue.getOperationCount(), queue.getMoveCount(),
+          queue.getPeakSize(), checksum);
+    }
+  }
+
+  /**
+   * Compares the search strategies of DijkstraGraph on the same random point to point queries,
+   * reporting time and the average number of nodes each query settled. The checksums (sums of all
+   * path costs) must agree, since every strategy finds shortest paths.
+   */
+  static void benchmarkStrategies() {
+    int side = 200;
+    int queries = 200;
+    DijkstraGraph<Integer, Double> graph = buildGridGraph(side, new Random(42));
+    System.out.println("strategies: " + graph.getNodeCount() + " nodes, " + graph.getEdgeCount()
+        + " edges, " + queries + " queries");
+    long preprocessStart = System.nanoTime();
+    graph.preprocessLandmarks(16);
+    System.out.printf("  16 landmarks preprocessed in %.1f ms%n",
+        (System.nanoTime() - preprocessStart) / 1e6);
+    preprocessStart = System.nanoTime();
+    graph.preprocessContractionHierarchy();
+    System.out.printf("  contraction hierarchy preprocessed in %.1f ms%n",
+        (System.nanoTime() - preprocessStart) / 1e6);
+
+    for (DijkstraGraph.SearchStrategy strategy : DijkstraGraph.SearchStrategy.values()) {
+      graph.setSearchStrategy(strategy);
+      Random random = new Random(11);
+      long settled = 0;
+      double checksum = 0;
+      long startTime = System.nanoTime();
+      for (int i = 0; i < queries; i++) {
+        checksum += graph.shortestPathCost(random.nextInt(side * side),
+            random.nextInt(side * side));
+        settled += graph.getLastSettledCount();
+      }
+      long elapsed = System.nanoTime() - startTime;
+      System.out.printf("  %-24s %8.1f ms  %,10d settled/query  (checksum %.1f)%n", strategy,
+          elapsed / 1e6, settled / queries, checksum);
+    }
+  }
+
+  /**
+   * Compares filling a distance matrix with one point to point query per pair against the batch
+   * distanceMatrix, run on a single thread and on the common fork/join pool. The checksums (sums
+   * of all entries) must agree.
+   */
+  static void benchmarkMatrix() {
+    int side = 200;
+    int count = 30;
+    DijkstraGraph<Integer, Double> graph = buildGridGraph(side, new Random(42));
+    Random random = new Random(5);
+    List<Integer> sources = new ArrayList<>();
+    List<Integer> targets = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      sources.add(random.nextInt(side * side));
+      targets.add(random.nextInt(side * side));
+    }
+    System.out.println("matrix: " + graph.getNodeCount() + " nodes, " + count + " x " + count
+        + " pairs, " + ForkJoinPool.commonPool().getParallelism()
+        + " pool threads");
+
+    long startTime = System.nanoTime();
+    double checksum = 0;
+    for (int source : sources) {
+      for (int target : targets) {
+        checksum += graph.shortestPathCost(source, target);
+      }
+    }
+    System.out.printf("  %-24s %8.1f ms  (checksum %.1f)%n", "pairwise queries",
+        (System.nanoTime() - startTime) / 1e6, checksum);
+
+    ExecutorService single = Executors.newSingleThreadExecutor();
+    startTime = System.nanoTime();
+    checksum = sum(graph.distanceMatrix(sources, targets, single));
+    System.out.printf("  %-24s %8.1f ms  (checksum %.1f)%n", "batch, one thread",
+        (System.nanoTime() - startTime) / 1e6, checksum);
+    single.shutdown();
+
+    startTime = System.nanoTime();
+    checksum = sum(graph.distanceMatrix(sources, targets));
+    System.out.printf("  %-24s %8.1f ms  (checksum %.1f)%n", "batch, common pool",
+        (System.nanoTime() - startTime) / 1e6, checksum);
+  }
+
+  /**
+   * Measures how long building and mapping a DistanceTable for a campus-sized grid takes, and
+   * compares random point to point routes from the table with routes from Dijkstra's algorithm.
+   * The checksums (sums of all route costs) must agree.
+   */
+  static void benchmarkTable() {
+    int side = 55;
+    int queries = 20_000;
+    DijkstraGraph<Integer, Double> graph = buildGridGraph(side, new Random(42));
+    System.out.println("table: " + graph.getNodeCount() + " nodes, " + queries + " queries, "
+        + ForkJoinPool.commonPool().getParallelism() + " pool threads");
+    try {
+      Path file = Files.createTempFile("benchmark", ".table");
+      try {
+        long startTime = System.nanoTime();
+        DistanceTable<Integer> table = DistanceTable.build(graph, file, ForkJoinPool.commonPool());
+        System.out.printf("  built in %.1f ms, %,d KB on disk%n",
+            (System.nanoTime() - startTime) / 1e6, Files.size(file) / 1024);
+        startTime = System.nanoTime();
+        table = DistanceTable.open(graph, file);
+        System.out.printf("  mapped in %.1f ms%n", (System.nanoTime() - startTime) / 1e6);
+
+        Random random = new Random(11);
+        double checksum = 0;
+        startTime = System.nanoTime();
+        for (int i = 0; i < queries; i++) {
+          checksum += graph.shortestRoute(random.nextInt(side * side),
+              random.nextInt(side * side)).getTotalCost();
+        }
+        System.out.printf("  %-24s %8.1f ms  (checksum %.1f)%n", "dijkstra routes",
+            (System.nanoTime() - startTime) / 1e6, checksum);
+        random = new Random(11);
+        checksum = 0;
+        startTime = System.nanoTime();
+        for (int i = 0; i < queries; i++) {
+          checksum += table.getRoute(random.nextInt(side * side),
+              random.nextInt(side * side)).getTotalCost();
+        }
+        System.out.printf("  %-24s %8.1f ms  (checksum %.1f)%n", "table routes",
+            (System.nanoTime() - startTime) / 1e6, checksum);
+      } finally {
+        Files.deleteIfExists(file);
+      }
+    } catch (IOException e) {
+      System.out.println("  failed: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Measures how long building an EccentricityTable for a campus-sized grid takes, and how long
+   * refreshing it takes after one edge changes, compared with searching for the farthest node of
+   * every node.
+   */
+  static void benchmarkEccentricity() {
+    int side = 55;
+    DijkstraGraph<Integer, Double> graph = buildGridGraph(side, new Random(42));
+    System.out.println("eccentricity: " + graph.getNodeCount() + " nodes, "
+        + ForkJoinPool.commonPool().getParallelism() + " pool threads");
+    long startTime = System.nanoTime();
+    EccentricityTable table = EccentricityTable.build(graph, ForkJoinPool.commonPool());
+    System.out.printf("  built in %.1f ms%n", (System.nanoTime() - startTime) / 1e6);
+
+    // an edge leaving a corner of a grid without edges back towards it affects few sources
+    graph.removeEdge(1, 0);
+    graph.removeEdge(side, 0);
+    ReachabilityIndex before = graph.getReachabilityIndex();
+    table = EccentricityTable.build(graph, ForkJoinPool.commonPool());
+    graph.insertEdge(0, 1, 5.0);
+    table = table.withStale(before, 0, graph);
+    int stale = table.getStaleCount();
+    startTime = System.nanoTime();
+    table = table.refresh(graph, ForkJoinPool.commonPool());
+    System.out.printf("  refreshed %d stale source(s) in %.1f ms%n", stale,
+        (System.nanoTime() - startTime) / 1e6);
+
+    startTime = System.nanoTime();
+    double checksum = 0;
+    for (int id = 0; id < side * side; id++) {
+      checksum += table.getEccentricity(id);
+    }
+    System.out.printf("  %-24s %8.3f ms  (checksum %.1f)%n", "table lookups",
+        (System.nanoTime() - startTime) / 1e6, checksum);
+    startTime = System.nanoTime();
+    checksum = 0;
+    for (int node = 0; node < side * side; node++) {
+      DijkstraGraph<Integer, Double>.ShortestPathTree tree = graph.computeShortestPathTree(node);
+      double farthest = 0;
+      for (int other = 0; other < side * side; other++) {
+        if (tree.getCost(other) != Double.POSITIVE_INFINITY) {
+          farthest = Math.max(farthest, tree.getCost(other));
+        }
+      }
+      checksum += farthest;
+    }
+    System.out.printf("  %-24s %8.1f ms  (checksum %.1f)%n", "searches",
+        (System.nanoTime() - startTime) / 1e6, checksum);
+  }
+
+  /**
+   * Measures the throughput of random route queries on a Backend in concurrent mode, with one
+   * thread and then with more threads, while another thread keeps updating an edge. Each
+   * thread runs the same number of queries, so with lock-free reads the time should stay about
+   * the same as threads are added, up to the number of cores.
+   */
+  static void benchmarkConcurrent() {
+    int side = 100;
+    int queriesPerThread = 300;
+    DijkstraGraph<String, Double> graph = new DijkstraGraph<>();
+    DijkstraGraph<Integer, Double> grid = buildGridGraph(side, new Random(42));
+    for (int node = 0; node < side * side; node++) {
+      graph.insertNode("N" + node);
+    }
+    FrozenGraph<Integer> frozen = grid.freeze();
+    for (int node = 0; node < side * side; node++) {
+      int id = frozen.getId(node);
+      for (int edge = frozen.forwardStart(id); edge < frozen.forwardEnd(id); edge++) {
+        graph.insertEdge("N" + node, "N" + frozen.getData(frozen.getForwardTargets()[edge]),
+            frozen.getForwardWeights()[edge]);
+      }
+    }
+    Backend backend = new Backend(graph);
+    backend.setConcurrentMode(true);
+    int cores = Runtime.getRuntime().availableProcessors();
+    System.out.println("concurrent: " + graph.getNodeCount() + " nodes, " + queriesPerThread
+        + " queries per thread, " + cores + " cores");
+    for (int threads = 1; threads <= Math.max(4, cores); threads *= 2) {
+      List<Thread> workers = new ArrayList<>();
+      for (int t = 0; t < threads; t++) {
+        Random random = new Random(t);
+        workers.add(new Thread(() -> {
+          for (int i = 0; i < queriesPerThread; i++) {
+            backend.findShortestPath("N" + random.nextInt(side * side),
+                "N" + random.nextInt(side * side));
+          }
+        }));
+      }
+      Thread writer = new Thread(() -> {
+        for (int i = 0; i < 20; i++) {
+          backend.updateEdge("N0", "N1", 10.0 + i);
+        }
+      });
+      long startTime = System.nanoTime();
+      writer.start();
+      workers.forEach(Thread::start);
+      try {
+        for (Thread worker : workers) {
+          worker.join();
+        }
+        writer.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+      long elapsed = System.nanoTime() - startTime;
+      System.out.printf("  %2d thread(s) %8.1f ms  %,10.0f queries/s%n", threads, elapsed / 1e6,
+          threads * queriesPerThread / (elapsed / 1e9));
+    }
+  }
+
+  private static double sum(double[][] matrix) {
+    double total = 0;
+    for (double[] row : matrix) {
+      for (double value : row) {
+        total += value;
+      }
+    }
+    return total;
+  }
+
+  /**
+   * Measures how long compiling a frozen CSR snapshot of a grid graph takes, and roughly how much
+   * heap the linked graph and the snapshot each occupy.
+   */
+  static void benchmarkSnapshot() {
+    int side = 200;
+    long before = usedHeap();
+    DijkstraGraph<Integer, Double> graph = buildGridGraph(side, new Random(42));
+    long graphBytes = usedHeap() - before;
+    long startTime = System.nanoTime();
+    FrozenGraph<Integer> snapshot = graph.freeze();
+    long elapsed = System.nanoTime() - startTime;
+    long snapshotBytes = usedHeap() - before - graphBytes;
+    System.out.printf("snapshot: %,d nodes, %,d edges frozen in %.1f ms%n",
+        snapshot.getNodeCount(), snapshot.getEdgeCount(), elapsed / 1e6);
+    System.out.printf("  linked graph ~%,d KB, CSR snapshot ~%,d KB%n", graphBytes / 1024,
+        snapshotBytes / 1024);
+  }
+
+  /**
+   * Compares the chaining HashtableMap with the open addressing OpenAddressingMap: the heap each
+   * occupies when filled with the same boxed integer keys, and the time to insert, look up and
+   * remove all of those keys.
+   */
+  static void benchmarkMaps() {
+    int count = 1_000_000;
+    Integer[] keys = new Integer[count];
+    Random random = new Random(42);
+    for (int i = 0; i < count; i++) {
+      keys[i] = random.nextInt();
+    }
+    benchmarkMap("HashtableMap", new HashtableMap<>(), keys);
+    benchmarkMap("OpenAddressingMap", new OpenAddressingMap<>(), keys);
+  }
+
+  /**
+   * Compares the read throughput of ConcurrentHashtableMap with java.util.concurrent's
+   * ConcurrentHashMap, for increasing numbers of threads that each look up every key of a map
+   * holding a million boxed integer keys.
+   */
+  static void benchmarkConcurrentMaps() {
+    int count = 1_000_000;
+    Integer[] keys = new Integer[count];
+    for (int i = 0; i < count; i++) {
+      keys[i] = i * 7919;
+    }
+    ConcurrentHashtableMap<Integer, Integer> striped = new ConcurrentHashtableMap<>();
+    ConcurrentHashMap<Integer, Integer> standard = new ConcurrentHashMap<>();
+    for (Integer key : keys) {
+      striped.put(key, key);
+      standard.put(key, key);
+    }
+    int maxThreads = Math.max(4, Runtime.getRuntime().availableProcessors());
+    for (int threads = 1; threads <= maxThreads; threads *= 2) {
+      double stripedTime = timeReads(threads, keys, striped::get);
+      double standardTime = timeReads(threads, keys, standard::get);
+      System.out.printf("concurrent get %2d thread(s): ConcurrentHashtableMap %6.1f ms, "
+          + "ConcurrentHashMap %6.1f ms%n", threads, stripedTime, standardTime);
+    }
+  }
+
+  /**
+   * @return the milliseconds it takes threads threads to each look up every key with get
+   */
+  private static double timeReads(int threads, Integer[] keys, Function<Integer, Integer> get) {
+    List<Thread> readers = new ArrayList<>();
+    for (int t = 0; t < threads; t++) {
+      readers.add(new Thread(() -> {
+        long checksum = 0;
+        for (Integer key : keys) {
+          checksum += get.apply(key);
+        }
+        if (checksum == 1) {
+          System.out.println(); // keeps the lookups from being optimized away
+        }
+      }));
+    }
+    long startTime = System.nanoTime();
+    readers.forEach(Thread::start);
+    try {
+      for (Thread reader : readers) {
+        reader.join();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    return (System.nanoTime() - startTime) / 1e6;
+  }
+
+  private static void benchmarkMap(String name, MapADT<Integer, Integer> map, Integer[] keys) {
+    long before = usedHeap();
+    long startTime = System.nanoTime();
+    for (Integer key : keys) {
+      if (!map.containsKey(key)) {
+        map.put(key, key);
+      }
+    }
+    long putTime = System.nanoTime() - startTime;
+    long bytes = usedHeap() - before;
+    startTime = System.nanoTime();
+    long checksum = 0;
+    for (int round = 0; round < 5; round++) {
+      for (Integer key : keys) {
+        checksum += map.get(key);
+      }
+    }
+    long getTime = System.nanoTime() - startTime;
+    startTime = System.nanoTime();
+    for (Integer key : keys) {
+      if (map.containsKey(key)) {
+        map.remove(key);
+      }
+    }
+    long removeTime = System.nanoTime() - startTime;
+    System.out.printf("%-18s put %6.1f ms, 5x get %6.1f ms, remove %6.1f ms, ~%,d KB (%d)%n",
+        name, putTime / 1e6, getTime / 1e6, removeTime / 1e6, bytes / 1024, checksum & 1);
+  }
+
+  /**
+   * Compares the worst case latency of a single put into HashtableMap with resizing done all at
+   * once and with resizing spread across later operations. Garbage collection pauses are
+   * included in the measured latency, so run this with a heap large enough to avoid them.
+   */
+  static void benchmarkResize() {
+    int count = 2_000_000;
+    for (boolean incremental : new boolean[] {false, true}) {
+      HashtableMap<Integer, Integer> map = new HashtableMap<>();
+      map.setIncrementalResize(incremental);
+      long worst = 0;
+      long startTime = System.nanoTime();
+      for (int i = 0; i < count; i++) {
+        long putStart = System.nanoTime();
+        map.put(i, i);
+        worst = Math.max(worst, System.nanoTime() - putStart);
+      }
+      long elapsed = System.nanoTime() - startTime;
+      System.out.printf("resize %-12s %,d puts in %6.1f ms, slowest put %8.3f ms%n",
+          incremental ? "incremental" : "all at once", count, elapsed / 1e6, worst / 1e6);
+    }
+  }
+
+  /**
+   * Writes a grid graph with about a million edges to a temporary .dot file, and measures how long
+   * Backend.loadGraphData takes to read it back, and how long restoring the same graph from a
+   * binary snapshot takes.
+   */
+  static void benchmarkLoad() {
+    int side = 500;
+    try {
+      Path file = Files.createTempFile("grid", ".dot");
+      try {
+        Random random = new Random(42);
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+          out.write("digraph grid {\n");
+          for (int row = 0; row < side; row++) {
+            for (int col = 0; col < side; col++) {
+              int node = row * side + col;
+              if (col + 1 < side) {
+                writeDotEdge(out, node, node + 1, random);
+                writeDotEdge(out, node + 1, node, random);
+              }
+              if (row + 1 < side) {
+                writeDotEdge(out, node, node + side, random);
+                writeDotEdge(out, node + side, node, random);
+              }
+            }
+          }
+          out.write("}\n");
+        }
+        usedHeap();
+        long startTime = System.nanoTime();
+        DijkstraGraph<String, Double> graph = new DijkstraGraph<>();
+        new Backend(graph).loadGraphData(file.toString());
+        long elapsed = System.nanoTime() - startTime;
+        int nodeCount = graph.getNodeCount();
+        System.out.printf("load: %,d nodes, %,d edges (%,d KB) in %.1f ms%n", nodeCount,
+            graph.getEdgeCount(), Files.size(file) / 1024, elapsed / 1e6);
+
+        Path snapshot = Files.createTempFile("grid", ".snapshot");
+        try {
+          graph.preprocessLandmarks(8);
+          GraphSnapshot.write(graph, snapshot, 0, 0);
+          graph = null;
+          usedHeap(); // collect the parsed graph first, so that its garbage is not timed
+          startTime = System.nanoTime();
+          GraphSnapshot.read(snapshot, new DijkstraGraph<>());
+          elapsed = System.nanoTime() - startTime;
+          System.out.printf("  from snapshot with 8 landmarks (%,d KB) in %.1f ms%n",
+              Files.size(snapshot) / 1024, elapsed / 1e6);
+        } finally {
+          Files.delete(snapshot);
+        }
+      } finally {
+        Files.delete(file);
+      }
+    } catch (IOException e) {
+      System.out.println("load: failed, " + e.getMessage());
+    }
+  }
+
+  private static void writeDotEdge(BufferedWriter out, int pred, int succ, Random random)
+      throws IOException {
+    out.write("    \"Loc " + pred + "\" -> \"Loc " + succ + "\" [seconds="
+        + (10 + random.nextInt(300) / 10.0) + "];\n");
+  }
+
+  private static long usedHeap() {
+    Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+}
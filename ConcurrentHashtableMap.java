@@ -0,0 +1,307 @@
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * ConcurrentHashtableMap implements the MapADT interface with the same chaining design as
+ * HashtableMap, but can be used by any number of threads at once.
+ *
+ * The entries of a bucket form an immutable linked list, and the buckets are held in an atomic
+ * array that is reached through a volatile field, so get and containsKey never lock: they always
+ * see a complete list. put and remove replace the list of one bucket while holding the lock of
+ * the bucket's stripe. The table length is a power of two that is at least the number of
+ * stripes, so a key's stripe depends only on the low bits of its hash and stays the same across
+ * resizes.
+ *
+ * When the load factor is exceeded a larger table is created, and every thread that modifies the
+ * map helps to move the buckets into it, a chunk at a time. A bucket that has been moved is
+ * replaced with a forwarding entry, which readers and writers follow to the larger table, so no
+ * operation waits for a resize to finish. Like HashtableMap, put throws IllegalArgumentException
+ * for a key that is already present, and get and remove throw NoSuchElementException for a key
+ * that is not.
+ */
+public class ConcurrentHashtableMap<KeyType, ValueType> implements MapADT<KeyType, ValueType> {
+  private static final int DEFAULT_CAPACITY = 64;
+  static final double LOAD_FACTOR_THRESHOLD = 0.8;
+  private static final int STRIPES = 16; // must be a power of two
+  private static final int TRANSFER_CHUNK = 16; // buckets moved per claim during a resize
+
+  private volatile AtomicReferenceArray<Node> table;
+  private volatile Resize resize; // the resize in progress, or null
+  private final Object resizeLock = new Object();
+  private final Object[] locks = new Object[STRIPES];
+  private final AtomicInteger size = new AtomicInteger();
+
+  protected class Node {
+    final int hash;
+    final KeyType key;
+    final ValueType value;
+    final Node next;
+
+    Node(int hash, KeyType key, ValueType value, Node next) {
+      this.hash = hash;
+      this.key = key;
+      this.value = value;
+      this.next = next;
+    }
+  }
+
+  /**
+   * Replaces a bucket of a table that has been moved into a larger table.
+   */
+  private class Forward extends Node {
+    final AtomicReferenceArray<Node> target;
+
+    Forward(AtomicReferenceArray<Node> target) {
+      super(0, null, null, null);
+      this.target = target;
+    }
+  }
+
+  /**
+   * The state of a resize: the buckets of from are claimed in chunks by the threads that help to
+   * move them into to.
+   */
+  private class Resize {
+    final AtomicReferenceArray<Node> from;
+    final AtomicReferenceArray<Node> to;
+    final Forward forward;
+    final AtomicInteger nextBucket = new AtomicInteger(); // the first bucket not yet claimed
+    final AtomicInteger moved = new AtomicInteger(); // the number of buckets moved so far
+
+    Resize(AtomicReferenceArray<Node> from) {
+      this.from = from;
+      this.to = new AtomicReferenceArray<>(from.length() * 2);
+      this.forward = new Forward(to);
+    }
+  }
+
+  public ConcurrentHashtableMap(int capacity) {
+    // a power of two capacity lets the bucket and its stripe be computed with masks
+    int tableLength = Integer.highestOneBit(Math.max(STRIPES, capacity) - 1) << 1;
+    table = new AtomicReferenceArray<>(tableLength);
+    for (int i = 0; i < STRIPES; i++) {
+      locks[i] = new Object();
+    }
+  }
+
+  public ConcurrentHashtableMap() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  @Override
+  public void put(KeyType key, ValueType value) {
+    if (key == null)
+      throw new NullPointerException("Key cannot be null.");
+    int hash = hash(key);
+    AtomicReferenceArray<Node> buckets = table;
+    while (true) {
+      int index = hash & (buckets.length() - 1);
+      Node head;
+      synchronized (locks[index & (STRIPES - 1)]) {
+        head = buckets.get(index);
+        if (!(head instanceof Forward)) {
+          for (Node node = head; node != null; node = node.next) {
+            if (node.hash == hash && node.key.equals(key))
+              throw new IllegalArgumentException("Duplicate key.");
+          }
+          buckets.set(index, new Node(hash, key, value, head));
+        }
+      }
+      if (head instanceof Forward) {
+        buckets = ((Forward) head).target; // the bucket has been moved, so retry there
+        continue;
+      }
+      if (size.incrementAndGet() >= LOAD_FACTOR_THRESHOLD * buckets.length()) {
+        startResize(buckets);
+      }
+      helpResize();
+      return;
+    }
+  }
+
+  @Override
+  public boolean containsKey(KeyType key) {
+    return find(key) != null;
+  }
+
+  @Override
+  public ValueType get(KeyType key) {
+    Node node = find(key);
+    if (node == null)
+      throw new NoSuchElementException("Key not found.");
+    return node.value;
+  }
+
+  @Override
+  public ValueType remove(KeyType key) {
+    int hash = hash(key);
+    AtomicReferenceArray<Node> buckets = table;
+    while (true) {
+      int index = hash & (buckets.length() - 1);
+      Node head;
+      Node removed = null;
+      synchronized (locks[index & (STRIPES - 1)]) {
+        head = buckets.get(index);
+        if (!(head instanceof Forward)) {
+          removed = head;
+          while (removed != null && !(removed.hash == hash && removed.key.equals(key))) {
+            removed = removed.next;
+          }
+          if (removed != null) {
+            buckets.set(index, without(head, removed));
+          }
+        }
+      }
+      if (head instanceof Forward) {
+        buckets = ((Forward) head).target;
+        continue;
+      }
+      if (removed == null)
+        throw new NoSuchElementException("Key not found for removal.");
+      size.decrementAndGet();
+      helpResize();
+      return removed.value;
+    }
+  }
+
+  /**
+   * Removes every entry. Entries that other threads put while clear is running may or may not be
+   * removed.
+   */
+  @Override
+  public void clear() {
+    AtomicReferenceArray<Node> buckets = table;
+    for (int index = 0; index < buckets.length(); index++) {
+      Node head;
+      synchronized (locks[index & (STRIPES - 1)]) {
+        head = buckets.get(index);
+        if (!(head instanceof Forward)) {
+          buckets.set(index, null);
+          for (Node node = head; node != null; node = node.next) {
+            size.decrementAndGet();
+          }
+        }
+      }
+      if (head instanceof Forward) {
+        // a resize has started, so wait for it and clear the larger table from the start
+        while (resize != null) {
+          helpResize();
+          Thread.onSpinWait();
+        }
+        buckets = table;
+        index = -1;
+      }
+    }
+  }
+
+  @Override
+  public int getSize() {
+    return size.get();
+  }
+
+  @Override
+  public int getCapacity() {
+    return table.length();
+  }
+
+  private static int hash(Object key) {
+    int h = key.hashCode();
+    return h ^ (h >>> 16);
+  }
+
+  /**
+   * Looks key up without locking, following forwarding entries to the table its bucket was moved
+   * to.
+   *
+   * @return the entry for key, or null if there is none
+   */
+  private Node find(KeyType key) {
+    int hash = hash(key);
+    AtomicReferenceArray<Node> buckets = table;
+    while (true) {
+      Node node = buckets.get(hash & (buckets.length() - 1));
+      if (node instanceof Forward) {
+        buckets = ((Forward) node).target;
+        continue;
+      }
+      for (; node != null; node = node.next) {
+        if (node.hash == hash && node.key.equals(key))
+          return node;
+      }
+      return null;
+    }
+  }
+
+  /**
+   * @return a list with the entries of head except removed, which shares the entries after
+   *         removed with the original list
+   */
+  private Node without(Node head, Node removed) {
+    if (head == removed)
+      return removed.next;
+    return new Node(head.hash, head.key, head.value, without(head.next, removed));
+  }
+
+  /**
+   * Starts to move the entries of buckets into a table twice as long, unless another thread has
+   * already done so.
+   */
+  private void startResize(AtomicReferenceArray<Node> buckets) {
+    synchronized (resizeLock) {
+      if (resize == null && table == buckets) {
+        resize = new Resize(buckets);
+      }
+    }
+  }
+
+  /**
+   * Moves chunks of buckets into the larger table until every chunk of the resize in progress has
+   * been claimed. The thread that moves the last bucket publishes the larger table.
+   */
+  private void helpResize() {
+    Resize current = resize;
+    if (current == null)
+      return;
+    int length = current.from.length();
+    while (true) {
+      int start = current.nextBucket.getAndAdd(TRANSFER_CHUNK);
+      if (start >= length)
+        return;
+      int end = Math.min(start + TRANSFER_CHUNK, length);
+      for (int index = start; index < end; index++) {
+        transfer(current, index);
+      }
+      if (current.moved.addAndGet(end - start) == length) {
+        synchronized (resizeLock) {
+          table = current.to;
+          resize = null;
+        }
+        return;
+      }
+    }
+  }
+
+  /**
+   * Moves the entries of one bucket into the larger table. Since the larger table is twice as
+   * long, the entries of bucket i can only land in buckets i and i + length of the larger table,
+   * which belong to the same stripe as bucket i.
+   */
+  private void transfer(Resize current, int index) {
+    int length = current.from.length();
+    synchronized (locks[index & (STRIPES - 1)]) {
+      Node low = null;
+      Node high = null;
+      for (Node node = current.from.get(index); node != null; node = node.next) {
+        if ((node.hash & length) == 0) {
+          low = new Node(node.hash, node.key, node.value, low);
+        } else {
+          high = new Node(node.hash, node.key, node.value, high);
+        }
+      }
+      current.to.set(index, low);
+      current.to.set(index + length, high);
+      current.from.set(index, current.forward);
+    }
+  }
+}
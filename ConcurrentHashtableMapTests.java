@@ -0,0 +1,106 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Assertions;
+
+/**
+ * Tests of ConcurrentHashtableMap. They are kept apart from it because JUnit only runs test
+ * classes that declare a single constructor.
+ */
+public class ConcurrentHashtableMapTests {
+
+  /**
+   * Tests that put() adds a new key-value pair, that put() throws IllegalArgumentException on a
+   * duplicate key, and that get() and remove() throw NoSuchElementException on a missing key.
+   */
+  @Test
+  public void testMapContract() {
+    ConcurrentHashtableMap<String, Integer> map = new ConcurrentHashtableMap<>();
+    map.put("key1", 100);
+    Assertions.assertEquals(100, map.get("key1"));
+    Assertions.assertTrue(map.containsKey("key1"));
+    Assertions.assertFalse(map.containsKey("key2"));
+    Assertions.assertThrows(IllegalArgumentException.class, () -> map.put("key1", 200));
+    Assertions.assertThrows(NoSuchElementException.class, () -> map.get("key2"));
+    Assertions.assertThrows(NoSuchElementException.class, () -> map.remove("key2"));
+    Assertions.assertThrows(NullPointerException.class, () -> map.put(null, 1));
+    Assertions.assertEquals(100, map.remove("key1"));
+    Assertions.assertFalse(map.containsKey("key1"));
+    Assertions.assertEquals(0, map.getSize());
+  }
+
+  /**
+   * Tests that entries stay reachable through resizes, including keys that collide, and that
+   * clear() removes every entry.
+   */
+  @Test
+  public void testResizeRemoveAndClear() {
+    ConcurrentHashtableMap<Integer, Integer> map = new ConcurrentHashtableMap<>(5);
+    for (int i = 0; i < 5000; i++) {
+      map.put(i * 1024, i);
+      map.put(Integer.MIN_VALUE + i, -i);
+      if (i % 3 == 0) {
+        Assertions.assertEquals(i, map.remove(i * 1024));
+      }
+    }
+    Assertions.assertTrue(map.getCapacity() >= map.getSize()
+        / ConcurrentHashtableMap.LOAD_FACTOR_THRESHOLD);
+    for (int i = 0; i < 5000; i++) {
+      Assertions.assertEquals(i % 3 != 0, map.containsKey(i * 1024));
+      Assertions.assertEquals(-i, map.get(Integer.MIN_VALUE + i));
+    }
+    Assertions.assertEquals(5000 + 5000 - 1667, map.getSize());
+    map.clear();
+    Assertions.assertEquals(0, map.getSize());
+    Assertions.assertFalse(map.containsKey(1024));
+    map.put(7, 7);
+    Assertions.assertEquals(7, map.get(7));
+  }
+
+  /**
+   * Tests that threads putting and removing their own keys, through many resizes, never disturb
+   * each other or readers of keys that were put before they started.
+   */
+  @Test
+  public void testConcurrentPutsRemovesAndReads() throws InterruptedException {
+    ConcurrentHashtableMap<Integer, Integer> map = new ConcurrentHashtableMap<>();
+    int threads = 4;
+    int perThread = 20000;
+    for (int i = 0; i < 1000; i++) {
+      map.put(-1 - i, i);
+    }
+    List<Throwable> failures = new ArrayList<>();
+    List<Thread> workers = new ArrayList<>();
+    for (int t = 0; t < threads; t++) {
+      final int first = t * perThread;
+      workers.add(new Thread(() -> {
+        try {
+          for (int i = first; i < first + perThread; i++) {
+            map.put(i, i);
+            Assertions.assertEquals(i, map.get(i));
+            Assertions.assertEquals(i % 1000, map.get(-1 - i % 1000));
+            if (i % 2 == 0) {
+              Assertions.assertEquals(i, map.remove(i));
+            }
+          }
+        } catch (Throwable e) {
+          synchronized (failures) {
+            failures.add(e);
+          }
+        }
+      }));
+    }
+    for (Thread worker : workers) {
+      worker.start();
+    }
+    for (Thread worker : workers) {
+      worker.join();
+    }
+    Assertions.assertEquals(List.of(), failures);
+    Assertions.assertEquals(1000 + threads * perThread / 2, map.getSize());
+    for (int i = 0; i < threads * perThread; i++) {
+      Assertions.assertEquals(i % 2 != 0, map.containsKey(i));
+    }
+  }
+}
@@ -0,0 +1,447 @@
+import java.util.Arrays;
+
+/**
+ * A ContractionHierarchy answers shortest path queries on one graph by searching only a small
+ * part of it. During preprocessing every node is contracted in turn, from least to most important:
+ * contracting a node removes it from the remaining graph, and adds a shortcut edge between any
+ * two of its remaining neighbors whose only shortest connection ran through it. Each shortcut
+ * remembers the node it skips. A query then runs a bidirectional search that only follows edges
+ * towards nodes that were contracted later (upward), from the start forward and from the end
+ * backward, and finally unpacks the shortcuts on the path it found into the original edges.
+ *
+ * Nodes are contracted in order of their edge difference: the number of shortcuts contracting
+ * the node would add, minus the number of edges it would remove. To spread contraction evenly
+ * across the graph, the number of neighbors already contracted and the depth of the hierarchy
+ * below the node are added to that priority.
+ *
+ * A hierarchy is indexed by node id, and only describes the graph as it was when it was built:
+ * getGraphVersion returns the graph's modification count at that time.
+ */
+public class ContractionHierarchy {
+  // witness searches give up after settling this many nodes, and add the shortcut instead; the
+  // searches that only estimate a node's priority use a smaller limit than actual contractions
+  private static final int WITNESS_SETTLE_LIMIT = 100;
+  private static final int ESTIMATE_SETTLE_LIMIT = 20;
+
+  /**
+   * A growable list of weighted edges leaving or entering one node. An edge whose middle is -1 is
+   * an edge of the original graph; otherwise it is a shortcut for the path through middle.
+   */
+  private static class ArcList {
+    int[] nodes = new int[4];
+    double[] weights = new double[4];
+    int[] middles = new int[4];
+    int size = 0;
+
+    int indexOf(int node) {
+      for (int i = 0; i < size; i++) {
+        if (nodes[i] == node)
+          return i;
+      }
+      return -1;
+    }
+
+    /**
+     * Adds an edge to node, or replaces the existing edge to node when the new one is cheaper.
+     * @return true if the list changed
+     */
+    boolean addOrImprove(int node, double weight, int middle) {
+      int index = indexOf(node);
+      if (index == -1) {
+        if (size == nodes.length) {
+          nodes = Arrays.copyOf(nodes, size * 2);
+          weights = Arrays.copyOf(weights, size * 2);
+          middles = Arrays.copyOf(middles, size * 2);
+        }
+        index = size++;
+      } else if (weights[index] <= weight) {
+        return false;
+      }
+      nodes[index] = node;
+      weights[index] = weight;
+      middles[index] = middle;
+      return true;
+    }
+
+    void remove(int node) {
+      int index = indexOf(node);
+      if (index != -1) {
+        size--;
+        nodes[index] = nodes[size];
+        weights[index] = weights[size];
+        middles[index] = middles[size];
+      }
+    }
+  }
+
+  /**
+   * The nodes along a shortest path found in the hierarchy, together with the weight of each of
+   * the original edges between them.
+   */
+  public static class Path {
+    public final int[] nodeIds;
+    public final double[] edgeWeights; // edgeWeights[i] is the weight from nodeIds[i] onward
+
+    private Path(int[] nodeIds, double[] edgeWeights) {
+      this.nodeIds = nodeIds;
+      this.edgeWeights = edgeWeights;
+    }
+  }
+
+  private int[] rank; // the position of each node id in the contraction order
+  private ArcList[] upward; // edges leaving each node towards higher ranked nodes
+  private ArcList[] downwardInto; // edges entering each node from higher ranked nodes
+  private long graphVersion;
+
+  private ContractionHierarchy(int[] rank, ArcList[] upward, ArcList[] downwardInto,
+      long graphVersion) {
+    this.rank = rank;
+    this.upward = upward;
+    this.downwardInto = downwardInto;
+    this.graphVersion = graphVersion;
+  }
+
+  /**
+   * Contracts every node of the provided graph and returns the resulting hierarchy.
+   *
+   * @param graph the graph to build a hierarchy for
+   * @return the contraction hierarchy for the graph's current nodes and edges
+   */
+  public static ContractionHierarchy build(DijkstraGraph<?, ?> graph) {
+    int bound = graph.getNodeIdBound();
+    ArcList[] out = new ArcList[bound];
+    ArcList[] in = new ArcList[bound];
+    for (int id = 0; id < bound; id++) {
+      out[id] = new ArcList();
+      in[id] = new ArcList();
+    }
+    FrozenGraph<?> snapshot = graph.freeze();
+    int[] targets = snapshot.getForwardTargets();
+    double[] weights = snapshot.getForwardWeights();
+    for (int id = 0; id < bound; id++) {
+      for (int i = snapshot.forwardStart(id); i < snapshot.forwardEnd(id); i++) {
+        if (targets[i] != id) {
+          out[id].addOrImprove(targets[i], weights[i], -1);
+          in[targets[i]].addOrImprove(id, weights[i], -1);
+        }
+      }
+    }
+
+    ArcList[] upward = new ArcList[bound];
+    ArcList[] downwardInto = new ArcList[bound];
+    Contractor contractor = new Contractor(out, in, upward, downwardInto);
+    IndexedDaryHeap order = new IndexedDaryHeap();
+    order.clear(bound);
+    for (int id = 0; id < bound; id++) {
+      if (snapshot.getData(id) != null) {
+        order.insertOrDecrease(id, contractor.edgeDifference(id));
+      }
+    }
+
+    int[] rank = new int[bound];
+    int nextRank = 0;
+    while (!order.isEmpty()) {
+      int id = order.poll();
+      // priorities change as neighbors are contracted, so they are only brought up to date
+      // lazily: a node whose current priority is worse than the next node's waits its turn
+      double priority = contractor.edgeDifference(id);
+      if (!order.isEmpty() && priority > order.peekCost()) {
+        order.insertOrDecrease(id, priority);
+        continue;
+      }
+      contractor.contract(id);
+      rank[id] = nextRank++;
+    }
+    for (int id = 0; id < bound; id++) {
+      if (upward[id] == null) { // ids without a node
+        upward[id] = new ArcList();
+        downwardInto[id] = new ArcList();
+      }
+    }
+    return new ContractionHierarchy(rank, upward, downwardInto, snapshot.getGraphVersion());
+  }
+
+  /**
+   * Holds the remaining graph while nodes are contracted, and runs the witness searches that
+   * decide which shortcuts are needed.
+   */
+  private static class Contractor {
+    private ArcList[] out;
+    private ArcList[] in;
+    private ArcList[] upward;
+    private ArcList[] downwardInto;
+    private int[] contractedNeighbors;
+    private int[] level;
+    private SearchWorkspace workspace = new SearchWorkspace();
+
+    Contractor(ArcList[] out, ArcList[] in, ArcList[] upward, ArcList[] downwardInto) {
+      this.out = out;
+      this.in = in;
+      this.upward = upward;
+      this.downwardInto = downwardInto;
+      this.contractedNeighbors = new int[out.length];
+      this.level = new int[out.length];
+    }
+
+    double edgeDifference(int id) {
+      int removed = in[id].size + out[id].size;
+      return 2 * (addShortcuts(id, false) - removed) + contractedNeighbors[id] + level[id];
+    }
+
+    /**
+     * Adds the shortcuts that id needs, and then moves its remaining edges out of the remaining
+     * graph: since all of its neighbors will be contracted later, its edges become the upward
+     * edges leaving it and the downward edges entering it.
+     */
+    void contract(int id) {
+      addShortcuts(id, true);
+      upward[id] = out[id];
+      downwardInto[id] = in[id];
+      for (int i = 0; i < in[id].size; i++) {
+        int neighbor = in[id].nodes[i];
+        out[neighbor].remove(id);
+        contractedNeighbors[neighbor]++;
+        level[neighbor] = Math.max(level[neighbor], level[id] + 1);
+      }
+      for (int i = 0; i < out[id].size; i++) {
+        int neighbor = out[id].nodes[i];
+        in[neighbor].remove(id);
+        contractedNeighbors[neighbor]++;
+        level[neighbor] = Math.max(level[neighbor], level[id] + 1);
+      }
+      out[id] = null;
+      in[id] = null;
+    }
+
+    /**
+     * Finds every pair of remaining neighbors u -> id -> w for which the path through id is the
+     * only shortest path that the witness search can find, and counts or inserts the shortcuts
+     * that contracting id needs.
+     *
+     * @return the number of shortcuts needed
+     */
+    int addShortcuts(int id, boolean insert) {
+      int shortcuts = 0;
+      double maxOut = 0;
+      for (int j = 0; j < out[id].size; j++) {
+        maxOut = Math.max(maxOut, out[id].weights[j]);
+      }
+      for (int i = 0; i < in[id].size; i++) {
+        int source = in[id].nodes[i];
+        double inWeight = in[id].weights[i];
+        witnessSearch(source, id, inWeight + maxOut,
+            insert ? WITNESS_SETTLE_LIMIT : ESTIMATE_SETTLE_LIMIT);
+        for (int j = 0; j < out[id].size; j++) {
+          int target = out[id].nodes[j];
+          if (target == source)
+            continue;
+          double viaWeight = inWeight + out[id].weights[j];
+          if (workspace.isReached(target) && workspace.dist[target] <= viaWeight)
+            continue; // a path that avoids id is just as short
+          shortcuts++;
+          if (insert) {
+            out[source].addOrImprove(target, viaWeight, id);
+            in[target].addOrImprove(source, viaWeight, id);
+          }
+        }
+      }
+      return shortcuts;
+    }
+
+    /**
+     * Runs Dijkstra's algorithm from source over the remaining graph without passing through
+     * skipped, until the costs exceed maxCost or settleLimit nodes have been settled.
+     */
+    void witnessSearch(int source, int skipped, double maxCost, int settleLimit) {
+      workspace.startSearch(out.length);
+      workspace.reach(source, 0, -1, 0);
+      int settled = 0;
+      while (!workspace.queue.isEmpty() && settled < settleLimit) {
+        double cost = workspace.queue.peekCost();
+        int current = workspace.queue.poll();
+        if (workspace.isSettled(current))
+          continue;
+        if (cost > maxCost)
+          break;
+        workspace.settle(current);
+        settled++;
+        for (int i = 0; i < out[current].size; i++) {
+          int next = out[current].nodes[i];
+          if (next == skipped)
+            continue;
+          double newCost = cost + out[current].weights[i];
+          if (!workspace.isReached(next) || newCost < workspace.dist[next]) {
+            workspace.reach(next, newCost, current, out[current].weights[i]);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Finds the shortest path from the node with id startId to the node with id endId. The forward
+   * search from the start follows upward edges, and the backward search from the end follows
+   * downward edges in reverse, so both only ever climb the hierarchy. Each search stops once its
+   * lowest queued cost reaches the best path found through a node that both have reached. Where
+   * several paths cost the same, the one found depends on the hierarchy, and can differ from the
+   * one Dijkstra's algorithm finds on the original graph.
+   *
+   * @param forward a workspace for the forward search, whose reverse workspace is used for the
+   *                backward search
+   * @param startId the id of the starting node
+   * @param endId   the id of the destination node
+   * @return the nodes and original edges along the shortest path, or null when there is none
+   */
+  public Path findPath(SearchWorkspace forward, int startId, int endId) {
+    SearchWorkspace backward = forward.getReverse();
+    forward.startSearch(rank.length);
+    backward.startSearch(rank.length);
+    forward.reach(startId, 0, -1, 0);
+    backward.reach(endId, 0, -1, 0);
+
+    double bestCost = Double.POSITIVE_INFINITY;
+    int meetingId = -1;
+    boolean forwardTurn = true;
+    while (true) {
+      boolean forwardDone =
+          forward.queue.isEmpty() || forward.queue.peekCost() >= bestCost;
+      boolean backwardDone =
+          backward.queue.isEmpty() || backward.queue.peekCost() >= bestCost;
+      if (forwardDone && backwardDone)
+        break;
+      if (forwardDone || backwardDone)
+        forwardTurn = !forwardDone;
+
+      SearchWorkspace current = forwardTurn ? forward : backward;
+      SearchWorkspace other = forwardTurn ? backward : forward;
+      ArcList[] arcs = forwardTurn ? upward : downwardInto;
+      double cost = current.queue.peekCost();
+      int currentId = current.queue.poll();
+      if (!current.isSettled(currentId)) {
+        current.settle(currentId);
+        if (other.isSettled(currentId) && cost + other.dist[currentId] < bestCost) {
+          bestCost = cost + other.dist[currentId];
+          meetingId = currentId;
+        }
+        ArcList list = arcs[currentId];
+        for (int i = 0; i < list.size; i++) {
+          int next = list.nodes[i];
+          double newCost = cost + list.weights[i];
+          if (!current.isReached(next) || newCost < current.dist[next]) {
+            current.reach(next, newCost, currentId, list.weights[i]);
+            if (other.isReached(next) && newCost + other.dist[next] < bestCost) {
+              bestCost = newCost + other.dist[next];
+              meetingId = next;
+            }
+          }
+        }
+      }
+      forwardTurn = !forwardTurn;
+    }
+    if (meetingId == -1) {
+      return null;
+    }
+
+    // collect the hierarchy's path from start to end through the meeting node
+    int length = 1;
+    for (int id = meetingId; forward.pred[id] != -1; id = forward.pred[id])
+      length++;
+    for (int id = meetingId; backward.pred[id] != -1; id = backward.pred[id])
+      length++;
+    int[] hierarchyPath = new int[length];
+    int index = 0;
+    for (int id = meetingId; id != -1; id = forward.pred[id])
+      hierarchyPath[index++] = id;
+    reverse(hierarchyPath, 0, index);
+    for (int id = backward.pred[meetingId]; id != -1; id = backward.pred[id])
+      hierarchyPath[index++] = id;
+
+    // replace every shortcut along it with the original edges it stands for
+    IntList path = new IntList();
+    DoubleList weights = new DoubleList();
+    path.add(hierarchyPath[0]);
+    for (int i = 0; i + 1 < hierarchyPath.length; i++) {
+      unpack(hierarchyPath[i], hierarchyPath[i + 1], path, weights);
+    }
+    return new Path(path.toArray(), weights.toArray());
+  }
+
+  /**
+   * Appends the nodes after from along the original edges that the hierarchy's edge from -> to
+   * stands for.
+   */
+  private void unpack(int from, int to, IntList path, DoubleList weights) {
+    ArcList arcs = rank[to] > rank[from] ? upward[from] : downwardInto[to];
+    int index = arcs.indexOf(rank[to] > rank[from] ? to : from);
+    int middle = arcs.middles[index];
+    if (middle == -1) {
+      path.add(to);
+      weights.add(arcs.weights[index]);
+    } else {
+      unpack(from, middle, path, weights);
+      unpack(middle, to, path, weights);
+    }
+  }
+
+  private static void reverse(int[] values, int from, int to) {
+    for (int i = from, j = to - 1; i < j; i++, j--) {
+      int swap = values[i];
+      values[i] = values[j];
+      values[j] = swap;
+    }
+  }
+
+  /**
+   * A growable list of ints, used to collect unpacked paths without boxing.
+   */
+  private static class IntList {
+    int[] values = new int[16];
+    int size = 0;
+
+    void add(int value) {
+      if (size == values.length)
+        values = Arrays.copyOf(values, size * 2);
+      values[size++] = value;
+    }
+
+    int[] toArray() {
+      return Arrays.copyOf(values, size);
+    }
+  }
+
+  /**
+   * A growable list of doubles, used to collect the edge weights of unpacked paths.
+   */
+  private static class DoubleList {
+    double[] values = new double[16];
+    int size = 0;
+
+    void add(double value) {
+      if (size == values.length)
+        values = Arrays.copyOf(values, size * 2);
+      values[size++] = value;
+    }
+
+    double[] toArray() {
+      return Arrays.copyOf(values, size);
+    }
+  }
+
+  /**
+   * @return the modification count of the graph at the time this hierarchy was built
+   */
+  public long getGraphVersion() {
+    return graphVersion;
+  }
+
+  /**
+   * @return the number of edges in this hierarchy, counting both original edges and shortcuts
+   */
+  public int getEdgeCount() {
+    int count = 0;
+    for (int id = 0; id < rank.length; id++) {
+      count += upward[id].size + downwardInto[id].size;
+    }
+    return count;
+  }
+}
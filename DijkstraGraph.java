@@ -6,18 +6,28 @@
 // Lecturer: Lecture 3 Florian
 // Notes to Grader: <optional extra notes>
 
-import java.util.PriorityQueue;
+import java.io.IOException;
 import java.util.List;
 import java.util.LinkedList;
 import java.util.NoSuchElementException;
+import java.util.Random;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.Assertions;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 /**
  * This class extends the BaseGraph data structure with additional methods for computing the total
  * cost and list of node data along the shortest path connecting a provided starting to ending
  * nodes. This class makes use of Dijkstra's shortest path algorithm.
+ *
+ * All searches run over the graph's frozen snapshot (see BaseGraph.freeze), which is compiled
+ * again by the first search after the graph has been modified.
  */
 public class DijkstraGraph<NodeType, EdgeType extends Number> extends BaseGraph<NodeType, EdgeType>
     implements GraphADT<NodeType, EdgeType> {
@@ -36,6 +46,7 @@ public class DijkstraGraph<NodeType, EdgeType extends Number> extends BaseGraph<
     public Node node;
     public double cost;
     public SearchNode predecessor;
+    public double edgeWeight; // weight of the edge from predecessor's node to this node
 
     public SearchNode(Node node, double cost, SearchNode predecessor) {
       this.node = node;
@@ -52,12 +63,251 @@ public class DijkstraGraph<NodeType, EdgeType extends Number> extends BaseGraph<
     }
   }
 
+  /**
+   * The kinds of priority queue that searches can take nodes from. LAZY_BINARY_HEAP queues a node
+   * again every time a cheaper path to it is found and skips the stale entries, while
+   * INDEXED_DARY_HEAP lowers the cost of the queued entry in place.
+   */
+  public enum QueueType {
+    LAZY_BINARY_HEAP, INDEXED_DARY_HEAP
+  }
+
+  /**
+   * The algorithms that shortestPathData and shortestPathCost can use to answer a query. DIJKSTRA
+   * searches forward from the start until the end is settled. BIDIRECTIONAL searches forward from
+   * the start and backward from the end at the same time, and stops once the two searches meet
+   * along a shortest path. ALT is an A* search that is guided towards the end by lower bounds
+   * derived from precomputed distances to and from a few landmark nodes (see preprocessLandmarks),
+   * and falls back to DIJKSTRA while no up to date landmarks are available.
+   * CONTRACTION_HIERARCHIES searches a precomputed contraction hierarchy (see
+   * preprocessContractionHierarchy), and also falls back to DIJKSTRA while none is up to date.
+   *
+   * Every strategy finds a path of the same cost, but where several paths cost the same, the
+   * other strategies may return a different one of them than DIJKSTRA does.
+   */
+  public enum SearchStrategy {
+    DIJKSTRA, BIDIRECTIONAL, ALT, CONTRACTION_HIERARCHIES
+  }
+
+  // Each thread that searches this graph reuses its own workspace from one search to the next.
+  // Copies share them, so that replacing a graph with an edited copy allocates no new workspaces
+  private ThreadLocal<SearchWorkspace> workspaces = ThreadLocal.withInitial(SearchWorkspace::new);
+  private volatile QueueType queueType = QueueType.INDEXED_DARY_HEAP;
+  private volatile SearchStrategy searchStrategy = SearchStrategy.DIJKSTRA;
+  private volatile LandmarkIndex landmarks = null;
+  private volatile ContractionHierarchy hierarchy = null;
+  private volatile ReachabilityIndex reachability = null;
+  private volatile boolean readOnly = false;
+
     /**
     * Constructor that sets the map that the graph uses.
     */
     public DijkstraGraph() {
-     super(new HashtableMap<>());
+     super(new OpenAddressingMap<>());
+    }
+
+  /**
+   * Selects the kind of priority queue that later searches on this graph use.
+   *
+   * @param queueType the kind of queue to use
+   */
+  public void setQueueType(QueueType queueType) {
+    this.queueType = queueType;
+  }
+
+  /**
+   * @return the kind of priority queue that searches on this graph use
+   */
+  public QueueType getQueueType() {
+    return queueType;
+  }
+
+  /**
+   * Selects the algorithm that later calls to shortestPathData and shortestPathCost use. Every
+   * strategy finds paths with the same (shortest) cost.
+   *
+   * @param searchStrategy the algorithm to use
+   */
+  public void setSearchStrategy(SearchStrategy searchStrategy) {
+    this.searchStrategy = searchStrategy;
+  }
+
+  /**
+   * @return the algorithm that shortestPathData and shortestPathCost use
+   */
+  public SearchStrategy getSearchStrategy() {
+    return searchStrategy;
+  }
+
+  /**
+   * Returns the number of nodes that the most recent shortestPathData or shortestPathCost query
+   * on the calling thread settled, counting both directions of a bidirectional search. Copies
+   * share their workspaces with this graph, so this includes queries on them.
+   *
+   * @return the number of nodes settled by the last query
+   */
+  public int getLastSettledCount() {
+    return workspaces.get().querySettledCount;
+  }
+
+  /**
+   * Returns the calling thread's workspace, with a queue of the currently selected type.
+   *
+   * @return the workspace for searches on the calling thread
+   */
+  protected SearchWorkspace getWorkspace() {
+    SearchWorkspace workspace = workspaces.get();
+    useSelectedQueue(workspace);
+    if (workspace.reverse != null) {
+      useSelectedQueue(workspace.reverse);
+    }
+    return workspace;
+  }
+
+  private void useSelectedQueue(SearchWorkspace workspace) {
+    if (queueType == QueueType.LAZY_BINARY_HEAP && !(workspace.queue instanceof LazyBinaryHeap)) {
+      workspace.setQueue(new LazyBinaryHeap());
+    } else if (queueType == QueueType.INDEXED_DARY_HEAP
+        && !(workspace.queue instanceof IndexedDaryHeap)) {
+      workspace.setQueue(new IndexedDaryHeap());
+    }
+  }
+
+  /**
+   * Returns the index that rejects queries for paths that cannot exist, first building it from
+   * the current nodes and edges when there is none that is up to date. Modifications that the
+   * index stays correct for (see ReachabilityIndex) keep it up to date without a rebuild.
+   *
+   * @return the reachability index for this graph's current version
+   */
+  public ReachabilityIndex getReachabilityIndex() {
+    ReachabilityIndex current = reachability;
+    if (current == null || current.getGraphVersion() != getModificationCount()) {
+      current = ReachabilityIndex.build(freeze());
+      reachability = current;
+    }
+    return current;
+  }
+
+  /**
+   * @return the reachability index if it is up to date, otherwise null
+   */
+  private ReachabilityIndex currentReachability() {
+    ReachabilityIndex current = reachability;
+    return current != null && current.getGraphVersion() == getModificationCount() ? current
+        : null;
+  }
+
+  /**
+   * Marks the reachability index that was up to date before a modification as up to date after
+   * it, for modifications that the index stays correct for.
+   */
+  private void keepReachability(ReachabilityIndex before) {
+    if (before != null) {
+      reachability = before.atVersion(getModificationCount());
+    }
+  }
+
+  /**
+   * Returns a copy of this graph that can be modified without affecting it. Nodes keep their
+   * ids, and the copy has the same search settings and modification count, so the reachability
+   * index, landmarks and contraction hierarchy of this graph are shared with the copy for as long
+   * as it is not modified. The copy is never read only, and each thread reuses the same search
+   * workspace for this graph and its copies.
+   *
+   * @return a copy of this graph
+   */
+  public DijkstraGraph<NodeType, EdgeType> copy() {
+    DijkstraGraph<NodeType, EdgeType> copy = new DijkstraGraph<>();
+    copy.workspaces = workspaces;
+    copy.copyFrom(this);
+    copy.queueType = queueType;
+    copy.searchStrategy = searchStrategy;
+    copy.reachability = currentReachability();
+    copy.landmarks = getLandmarks();
+    copy.hierarchy = getContractionHierarchy();
+    return copy;
+  }
+
+  /**
+   * Makes this graph read only: from now on, every method that would modify its nodes or edges
+   * throws an IllegalStateException instead. A read only graph never changes, so any number of
+   * threads can search it at once without locking; to change it, modify a copy and use that
+   * instead.
+   */
+  public void setReadOnly() {
+    readOnly = true;
+  }
+
+  /**
+   * @return true if this graph has been made read only
+   */
+  public boolean isReadOnly() {
+    return readOnly;
+  }
+
+  private void checkWritable() {
+    if (readOnly) {
+      throw new IllegalStateException("This graph is read only; modify a copy of it instead");
     }
+  }
+
+  @Override
+  public int getOrInsertNode(NodeType data) {
+    if (!containsNode(data)) {
+      checkWritable();
+    }
+    return super.getOrInsertNode(data);
+  }
+
+  @Override
+  public boolean insertNode(NodeType data) {
+    checkWritable();
+    ReachabilityIndex before = currentReachability();
+    boolean inserted = super.insertNode(data);
+    keepReachability(inserted ? before : null); // a new node has no edges yet
+    return inserted;
+  }
+
+  @Override
+  public boolean removeNode(NodeType data) {
+    checkWritable();
+    ReachabilityIndex before = currentReachability();
+    boolean removed = super.removeNode(data);
+    keepReachability(removed ? before : null);
+    return removed;
+  }
+
+  @Override
+  public boolean insertEdge(NodeType pred, NodeType succ, EdgeType weight) {
+    checkWritable();
+    ReachabilityIndex before = currentReachability();
+    boolean inserted = super.insertEdge(pred, succ, weight);
+    if (inserted && before != null && before.covers(nodes.get(pred).id, nodes.get(succ).id)) {
+      keepReachability(before);
+    }
+    return inserted;
+  }
+
+  @Override
+  public boolean insertEdgeById(int predId, int succId, EdgeType weight) {
+    checkWritable();
+    ReachabilityIndex before = currentReachability();
+    boolean inserted = super.insertEdgeById(predId, succId, weight);
+    if (inserted && before != null && before.covers(predId, succId)) {
+      keepReachability(before);
+    }
+    return inserted;
+  }
+
+  @Override
+  public boolean removeEdge(NodeType pred, NodeType succ) {
+    checkWritable();
+    ReachabilityIndex before = currentReachability();
+    boolean removed = super.removeEdge(pred, succ);
+    keepReachability(removed ? before : null);
+    return removed;
+  }
 
    @Override
     public List<NodeType> getAllLocations() {
@@ -85,38 +335,689 @@ public class DijkstraGraph<NodeType, EdgeType extends Number> extends BaseGraph<
       throw new NoSuchElementException("Start or end node not found");
     }
 
-    PriorityQueue<SearchNode> priorityQueue = new PriorityQueue<>();
-    MapADT<NodeType, SearchNode> visitedNodes = new PlaceholderMap<>();
+    SearchWorkspace workspace = getWorkspace();
+    int startId = nodes.get(start).id;
+    int endId = nodes.get(end).id;
+    if (!getReachabilityIndex().mayReach(startId, endId)) {
+      // rejected in constant time, instead of settling every node reachable from start
+      workspace.querySettledCount = 0;
+      throw new NoSuchElementException("No path found from " + start + " to " + end);
+    }
+    SearchNode endNode;
+    LandmarkIndex currentLandmarks = getLandmarks();
+    ContractionHierarchy currentHierarchy = getContractionHierarchy();
+    if (searchStrategy == SearchStrategy.CONTRACTION_HIERARCHIES && currentHierarchy != null) {
+      ContractionHierarchy.Path path = currentHierarchy.findPath(workspace, startId, endId);
+      workspace.querySettledCount =
+          workspace.getSettledCount() + workspace.getReverse().getSettledCount();
+      endNode = path == null ? null : buildSearchPath(path);
+    } else if (searchStrategy == SearchStrategy.BIDIRECTIONAL) {
+      endNode = runBidirectionalSearch(workspace, startId, endId);
+      workspace.querySettledCount =
+          workspace.getSettledCount() + workspace.getReverse().getSettledCount();
+    } else if (searchStrategy == SearchStrategy.ALT && currentLandmarks != null) {
+      runLandmarkSearch(workspace, currentLandmarks, startId, endId);
+      workspace.querySettledCount = workspace.getSettledCount();
+      endNode = workspace.isSettled(endId) ? buildSearchPath(workspace, endId) : null;
+    } else {
+      runSearch(workspace, startId, endId);
+      workspace.querySettledCount = workspace.getSettledCount();
+      endNode = workspace.isSettled(endId) ? buildSearchPath(workspace, endId) : null;
+    }
+    if (endNode == null) {
+      throw new NoSuchElementException("No path found from " + start + " to " + end);
+    }
+    return endNode;
+  }
+
+  /**
+   * Runs Dijkstra's algorithm in the provided workspace, starting from the node with id startId.
+   * The search stops as soon as the node with id endId is settled, or after every node reachable
+   * from the start has been settled when endId is -1 (or unreachable). When this method returns,
+   * the workspace holds the cost and predecessor of every node that was settled.
+   *
+   * @param workspace the workspace to run the search in
+   * @param startId   the id of the starting node
+   * @param endId     the id of the destination node, or -1 to search the entire graph
+   */
+  protected void runSearch(SearchWorkspace workspace, int startId, int endId) {
+    runSearch(workspace, startId, endId, false);
+  }
+
+  /**
+   * Runs Dijkstra's algorithm like runSearch(workspace, startId, endId), or when reverse is true,
+   * follows every edge backward (from the node it enters) so that the costs in the workspace are the
+   * costs of the shortest paths from each settled node to the node with id startId.
+   *
+   * @param workspace the workspace to run the search in
+   * @param startId   the id of the starting node
+   * @param endId     the id of the destination node, or -1 to search the entire graph
+   * @param reverse   true to search backward along edges, false to search forward
+   */
+  protected void runSearch(SearchWorkspace workspace, int startId, int endId, boolean reverse) {
+    runSearch(workspace, freeze(), startId, endId, reverse);
+  }
 
-    // Initialized the start node in the priority queue
-    priorityQueue.add(new SearchNode(nodes.get(start), 0, null));
+  /**
+   * Runs Dijkstra's algorithm like runSearch(workspace, startId, endId, reverse), over the nodes
+   * and edges of the provided snapshot instead of the graph's current ones. Searches that must
+   * not see modifications made while they run, such as those on background threads, use this.
+   *
+   * @param workspace the workspace to run the search in
+   * @param snapshot  the frozen version of this graph to search
+   * @param startId   the id of the starting node
+   * @param endId     the id of the destination node, or -1 to search the entire graph
+   * @param reverse   true to search backward along edges, false to search forward
+   */
+  protected void runSearch(SearchWorkspace workspace, FrozenGraph<NodeType> snapshot, int startId,
+      int endId, boolean reverse) {
+    int[] neighbors = reverse ? snapshot.getReverseSources() : snapshot.getForwardTargets();
+    double[] weights = reverse ? snapshot.getReverseWeights() : snapshot.getForwardWeights();
+    workspace.startSearch(snapshot.getNodeIdBound());
+    SearchQueueADT queue = workspace.queue;
+    workspace.reach(startId, 0, -1, 0);
 
-    while (!priorityQueue.isEmpty()) {
-      SearchNode currentNode = priorityQueue.poll();
+    while (!queue.isEmpty()) {
+      double cost = queue.peekCost();
+      int currentId = queue.poll();
 
-      // If the node has been visited with a cheaper path, I skip it
-      if (visitedNodes.containsKey(currentNode.node.data)) {
+      // If the node has been settled with a cheaper path (a stale entry), I skip it
+      if (workspace.isSettled(currentId)) {
         continue;
       }
-      visitedNodes.put(currentNode.node.data, currentNode);
-      if (currentNode.node.data.equals(end)) {
-        return currentNode;
+      workspace.settle(currentId);
+      if (currentId == endId) {
+        return;
       }
 
-      for (BaseGraph<NodeType, EdgeType>.Edge edge : currentNode.node.edgesLeaving) {
-        NodeType successorData = edge.successor.data;
-        double edgeWeight = edge.data.doubleValue();
-        double newCost = currentNode.cost + edgeWeight;
+      int end = reverse ? snapshot.reverseEnd(currentId) : snapshot.forwardEnd(currentId);
+      for (int i = reverse ? snapshot.reverseStart(currentId) : snapshot.forwardStart(currentId);
+          i < end; i++) {
+        int successorId = neighbors[i];
+        double edgeWeight = weights[i];
+        double newCost = cost + edgeWeight;
 
-        // If the successor has not been visited or I found a cheaper path to the successor
-        if (!visitedNodes.containsKey(successorData)
-            || newCost < visitedNodes.get(successorData).cost) {
-          // Added the successor to the priority queue
-          priorityQueue.add(new SearchNode(edge.successor, newCost, currentNode));
+        // If the successor has not been reached or I found a cheaper path to the successor
+        if (!workspace.isReached(successorId) || newCost < workspace.dist[successorId]) {
+          workspace.reach(successorId, newCost, currentId, edgeWeight);
         }
       }
     }
-    throw new NoSuchElementException("No path found from " + start + " to " + end);
+  }
+
+  /**
+   * Runs Dijkstra's algorithm like runSearch, but stops as soon as every node marked in isTarget
+   * has been settled, instead of at one destination or after the entire graph. Searches over the
+   * provided snapshot, so that the searches of one distance matrix all see the same version of the
+   * graph even if it is modified while they run.
+   *
+   * @param workspace   the workspace to run the search in
+   * @param snapshot    the frozen version of this graph to search
+   * @param startId     the id of the starting node
+   * @param isTarget    marks the ids of the target nodes
+   * @param targetCount the number of ids marked in isTarget
+   * @param reverse     true to search backward along edges, false to search forward
+   */
+  protected void runSearchToTargets(SearchWorkspace workspace, FrozenGraph<NodeType> snapshot,
+      int startId, boolean[] isTarget, int targetCount, boolean reverse) {
+    int[] neighbors = reverse ? snapshot.getReverseSources() : snapshot.getForwardTargets();
+    double[] weights = reverse ? snapshot.getReverseWeights() : snapshot.getForwardWeights();
+    workspace.startSearch(snapshot.getNodeIdBound());
+    SearchQueueADT queue = workspace.queue;
+    workspace.reach(startId, 0, -1, 0);
+    int remaining = targetCount;
+
+    while (!queue.isEmpty() && remaining > 0) {
+      double cost = queue.peekCost();
+      int currentId = queue.poll();
+      if (workspace.isSettled(currentId)) {
+        continue;
+      }
+      workspace.settle(currentId);
+      if (isTarget[currentId]) {
+        remaining--;
+      }
+
+      int end = reverse ? snapshot.reverseEnd(currentId) : snapshot.forwardEnd(currentId);
+      for (int i = reverse ? snapshot.reverseStart(currentId) : snapshot.forwardStart(currentId);
+          i < end; i++) {
+        int successorId = neighbors[i];
+        double newCost = cost + weights[i];
+        if (!workspace.isReached(successorId) || newCost < workspace.dist[successorId]) {
+          workspace.reach(successorId, newCost, currentId, weights[i]);
+        }
+      }
+    }
+  }
+
+  /**
+   * Runs a bidirectional version of Dijkstra's algorithm between the nodes with ids startId and
+   * endId. The provided workspace holds a forward search from the start that follows edgesLeaving,
+   * and its reverse workspace holds a backward search from the end that follows edgesEntering. The
+   * two searches take turns settling one node each. Whenever either search reaches a node that the
+   * other has already reached, the cost of the path through that node is a candidate for the
+   * shortest path. The searches stop once the lowest costs in both queues add up to at least the
+   * best candidate, since no path found after that point could be cheaper.
+   *
+   * @param forward the workspace for the forward search
+   * @param startId the id of the starting node
+   * @param endId   the id of the destination node
+   * @return SearchNode for the final end node within the shortest path, or null when no path exists
+   */
+  protected SearchNode runBidirectionalSearch(SearchWorkspace forward, int startId, int endId) {
+    FrozenGraph<NodeType> snapshot = freeze();
+    SearchWorkspace backward = forward.getReverse();
+    forward.startSearch(snapshot.getNodeIdBound());
+    backward.startSearch(snapshot.getNodeIdBound());
+    forward.reach(startId, 0, -1, 0);
+    backward.reach(endId, 0, -1, 0);
+
+    double bestCost = startId == endId ? 0 : Double.POSITIVE_INFINITY;
+    int meetingId = startId == endId ? startId : -1;
+    boolean forwardTurn = true;
+    while (!forward.queue.isEmpty() && !backward.queue.isEmpty()
+        && forward.queue.peekCost() + backward.queue.peekCost() < bestCost) {
+      SearchWorkspace current = forwardTurn ? forward : backward;
+      SearchWorkspace other = forwardTurn ? backward : forward;
+      double cost = current.queue.peekCost();
+      int currentId = current.queue.poll();
+      if (!current.isSettled(currentId)) {
+        current.settle(currentId);
+        int[] neighbors = forwardTurn ? snapshot.getForwardTargets() : snapshot.getReverseSources();
+        double[] weights = forwardTurn ? snapshot.getForwardWeights() : snapshot.getReverseWeights();
+        int end = forwardTurn ? snapshot.forwardEnd(currentId) : snapshot.reverseEnd(currentId);
+        for (int i = forwardTurn ? snapshot.forwardStart(currentId)
+            : snapshot.reverseStart(currentId); i < end; i++) {
+          int neighborId = neighbors[i];
+          double edgeWeight = weights[i];
+          double newCost = cost + edgeWeight;
+          if (!current.isReached(neighborId) || newCost < current.dist[neighborId]) {
+            current.reach(neighborId, newCost, currentId, edgeWeight);
+            // the neighbor links a path from the start with a path to the end
+            if (other.isReached(neighborId) && newCost + other.dist[neighborId] < bestCost) {
+              bestCost = newCost + other.dist[neighborId];
+              meetingId = neighborId;
+            }
+          }
+        }
+      }
+      forwardTurn = !forwardTurn;
+    }
+    if (meetingId == -1) {
+      return null;
+    }
+
+    // the path runs from the start to the meeting node in the forward search, and on from the
+    // meeting node to the end in the backward search
+    SearchNode pathNode = buildSearchPath(forward, meetingId);
+    for (int id = backward.pred[meetingId], previousId = meetingId; id != -1;
+        previousId = id, id = backward.pred[id]) {
+      pathNode = new SearchNode(getNodeById(id), bestCost - backward.dist[id], pathNode);
+      pathNode.edgeWeight = backward.predWeight[previousId];
+    }
+    return pathNode;
+  }
+
+  /**
+   * Runs an A* search from the node with id startId to the node with id endId. Nodes are taken
+   * from the queue in order of their path cost plus the landmarks' lower bound on their remaining
+   * cost to the end. Since those bounds never overestimate and are consistent, the first time the
+   * end is settled its shortest path is known, just like with Dijkstra's algorithm, but nodes that
+   * lead away from the end are settled much later or not at all. Nodes that the landmarks prove
+   * cannot reach the end are never queued. Since nodes are settled in a different order, the path
+   * found can differ from Dijkstra's algorithm's where several paths cost the same.
+   *
+   * @param workspace the workspace to run the search in
+   * @param landmarks up to date landmark distances for this graph
+   * @param startId   the id of the starting node
+   * @param endId     the id of the destination node
+   */
+  protected void runLandmarkSearch(SearchWorkspace workspace, LandmarkIndex landmarks,
+      int startId, int endId) {
+    FrozenGraph<NodeType> snapshot = freeze();
+    int[] targets = snapshot.getForwardTargets();
+    double[] weights = snapshot.getForwardWeights();
+    workspace.startSearch(snapshot.getNodeIdBound());
+    SearchQueueADT queue = workspace.queue;
+    double startBound = landmarks.lowerBound(startId, endId);
+    if (startBound == Double.POSITIVE_INFINITY) {
+      return;
+    }
+    workspace.reach(startId, 0, -1, 0, startBound);
+
+    while (!queue.isEmpty()) {
+      int currentId = queue.poll();
+      if (workspace.isSettled(currentId)) {
+        continue;
+      }
+      workspace.settle(currentId);
+      if (currentId == endId) {
+        return;
+      }
+
+      double cost = workspace.dist[currentId];
+      for (int i = snapshot.forwardStart(currentId); i < snapshot.forwardEnd(currentId); i++) {
+        int successorId = targets[i];
+        double edgeWeight = weights[i];
+        double newCost = cost + edgeWeight;
+        if (!workspace.isSettled(successorId)
+            && (!workspace.isReached(successorId) || newCost < workspace.dist[successorId])) {
+          double bound = landmarks.lowerBound(successorId, endId);
+          if (bound != Double.POSITIVE_INFINITY) {
+            workspace.reach(successorId, newCost, currentId, edgeWeight, newCost + bound);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Selects landmarks for the ALT search strategy and computes the cost of the shortest paths
+   * from every landmark to every node and from every node to every landmark. The first landmark is
+   * the node farthest from the first node in the graph; each further landmark is the node
+   * farthest from all landmarks chosen so far. These landmarks stay in use until the graph is next
+   * modified.
+   *
+   * @param count the number of landmarks to select
+   */
+  public void preprocessLandmarks(int count) {
+    landmarks = LandmarkIndex.build(this, count);
+  }
+
+  /**
+   * Writes the current landmark distances to a file, so that they can be restored with
+   * loadLandmarks instead of computed again.
+   *
+   * @param filename the path of the file to write
+   * @throws IOException           if the file could not be written
+   * @throws IllegalStateException if there are no up to date landmarks to save
+   */
+  public void saveLandmarks(String filename) throws IOException {
+    LandmarkIndex currentLandmarks = getLandmarks();
+    if (currentLandmarks == null) {
+      throw new IllegalStateException("No up to date landmarks to save");
+    }
+    currentLandmarks.save(this, filename);
+  }
+
+  /**
+   * Reads landmark distances that were written by saveLandmarks for a graph with the same nodes
+   * and edges as this one, and uses them for the ALT search strategy.
+   *
+   * @param filename the path of the file to read
+   * @throws IOException if the file could not be read, or does not match the nodes and edges in
+   *                     this graph
+   */
+  public void loadLandmarks(String filename) throws IOException {
+    landmarks = LandmarkIndex.load(this, filename);
+  }
+
+  /**
+   * Uses landmark distances that were restored from elsewhere, such as a graph snapshot, for the
+   * ALT search strategy.
+   *
+   * @param landmarks the landmark distances, computed for this graph's current version
+   */
+  protected void useLandmarks(LandmarkIndex landmarks) {
+    this.landmarks = landmarks;
+  }
+
+  /**
+   * @return the landmark distances for this graph, or null when there are none or the graph has
+   *         been modified since they were computed
+   */
+  protected LandmarkIndex getLandmarks() {
+    LandmarkIndex currentLandmarks = landmarks;
+    if (currentLandmarks == null
+        || currentLandmarks.getGraphVersion() != getModificationCount()) {
+      return null;
+    }
+    return currentLandmarks;
+  }
+
+  /**
+   * Builds a contraction hierarchy of this graph for the CONTRACTION_HIERARCHIES search strategy.
+   * The hierarchy stays in use until the graph is next modified.
+   */
+  public void preprocessContractionHierarchy() {
+    hierarchy = ContractionHierarchy.build(this);
+  }
+
+  /**
+   * @return the contraction hierarchy for this graph, or null when there is none or the graph has
+   *         been modified since it was built
+   */
+  protected ContractionHierarchy getContractionHierarchy() {
+    ContractionHierarchy currentHierarchy = hierarchy;
+    if (currentHierarchy == null
+        || currentHierarchy.getGraphVersion() != getModificationCount()) {
+      return null;
+    }
+    return currentHierarchy;
+  }
+
+  /**
+   * Builds the chain of SearchNodes along the path to the node with id endId that is recorded in
+   * the provided workspace. Only the nodes on that path are allocated.
+   *
+   * @param workspace a workspace in which the node with id endId has been settled
+   * @param endId     the id of the final node on the path
+   * @return SearchNode for the final end node within the path
+   */
+  protected SearchNode buildSearchPath(SearchWorkspace workspace, int endId) {
+    SearchNode endNode = new SearchNode(getNodeById(endId), workspace.dist[endId], null);
+    endNode.edgeWeight = workspace.predWeight[endId];
+    SearchNode current = endNode;
+    for (int id = workspace.pred[endId]; id != -1; id = workspace.pred[id]) {
+      current.predecessor = new SearchNode(getNodeById(id), workspace.dist[id], null);
+      current = current.predecessor;
+      current.edgeWeight = workspace.predWeight[id];
+    }
+    return endNode;
+  }
+
+  /**
+   * Builds the chain of SearchNodes along a path that a contraction hierarchy found. The cost of
+   * each node is the sum of the original edge weights up to it, added in path order.
+   *
+   * @param path the nodes and edge weights along the path
+   * @return SearchNode for the final end node within the path
+   */
+  protected SearchNode buildSearchPath(ContractionHierarchy.Path path) {
+    SearchNode pathNode = new SearchNode(getNodeById(path.nodeIds[0]), 0, null);
+    for (int i = 1; i < path.nodeIds.length; i++) {
+      pathNode = new SearchNode(getNodeById(path.nodeIds[i]),
+          pathNode.cost + path.edgeWeights[i - 1], pathNode);
+      pathNode.edgeWeight = path.edgeWeights[i - 1];
+    }
+    return pathNode;
+  }
+
+  /**
+   * A ShortestPathTree holds the result of a single Dijkstra search that was run from one start
+   * node until every node reachable from it was settled. For each of those reachable nodes it
+   * records the cost of the shortest path from the start, the predecessor along that path, and the
+   * weight of the edge from that predecessor, in arrays indexed by node id. This lets one-to-many
+   * questions (all distances from a location, the most distant location, the path to any
+   * destination) be answered from one search instead of one search per destination.
+   *
+   * A tree describes the graph as it was when the tree was computed, and should not be used after
+   * nodes or edges are inserted or removed.
+   */
+  public class ShortestPathTree {
+    private NodeType source;
+    private double[] dist;
+    private int[] pred;
+    private double[] predWeight;
+    private int[] settleOrder;
+
+    private ShortestPathTree(NodeType source, SearchWorkspace workspace) {
+      this.source = source;
+      int bound = getNodeIdBound();
+      this.dist = new double[bound];
+      this.pred = new int[bound];
+      this.predWeight = new double[bound];
+      this.settleOrder = new int[workspace.getSettledCount()];
+      Arrays.fill(dist, Double.POSITIVE_INFINITY);
+      Arrays.fill(pred, -1);
+      for (int i = 0; i < settleOrder.length; i++) {
+        int id = workspace.getSettledId(i);
+        settleOrder[i] = id;
+        dist[id] = workspace.dist[id];
+        pred[id] = workspace.pred[id];
+        predWeight[id] = workspace.predWeight[id];
+      }
+    }
+
+    private int idOf(NodeType node) {
+      return nodes.containsKey(node) ? nodes.get(node).id : -1;
+    }
+
+    /**
+     * @return the data item in the node that this tree was computed from
+     */
+    public NodeType getSource() {
+      return source;
+    }
+
+    /**
+     * Checks whether a path from the source to the provided node exists.
+     *
+     * @param node the data item of the destination node
+     * @return true if node is reachable from the source, false otherwise
+     */
+    public boolean isReachable(NodeType node) {
+      int id = idOf(node);
+      return id != -1 && id < dist.length && dist[id] != Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Returns the cost of the shortest path from the source to the provided node.
+     *
+     * @param node the data item of the destination node
+     * @return the cost of the shortest path, or Double.POSITIVE_INFINITY if node is unreachable
+     */
+    public double getCost(NodeType node) {
+      return isReachable(node) ? dist[idOf(node)] : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Returns the node that comes right before the provided node on its shortest path.
+     *
+     * @param node the data item of the destination node
+     * @return the predecessor's data item, or null when node is the source
+     * @throws NoSuchElementException if node is not reachable from the source
+     */
+    public NodeType getPredecessor(NodeType node) {
+      int id = checkedIdOf(node);
+      return pred[id] == -1 ? null : getNodeById(pred[id]).data;
+    }
+
+    /**
+     * Returns the list of data values along the shortest path from the source to the provided
+     * node, in the same format as shortestPathData.
+     *
+     * @param node the data item of the destination node
+     * @return list of data items along the shortest path
+     * @throws NoSuchElementException if node is not reachable from the source
+     */
+    public List<NodeType> getPath(NodeType node) {
+      LinkedList<NodeType> path = new LinkedList<>();
+      for (int id = checkedIdOf(node); id != -1; id = pred[id]) {
+        path.addFirst(getNodeById(id).data);
+      }
+      return path;
+    }
+
+    /**
+     * Returns the weights of the edges along the shortest path from the source to the provided
+     * node, in path order. The list is empty when node is the source.
+     *
+     * @param node the data item of the destination node
+     * @return list of edge weights along the shortest path
+     * @throws NoSuchElementException if node is not reachable from the source
+     */
+    public List<Double> getPathWeights(NodeType node) {
+      LinkedList<Double> weights = new LinkedList<>();
+      for (int id = checkedIdOf(node); pred[id] != -1; id = pred[id]) {
+        weights.addFirst(predWeight[id]);
+      }
+      return weights;
+    }
+
+    /**
+     * Returns every node reachable from the source, in the order Dijkstra's algorithm settled
+     * them (which is also non-decreasing order of path cost).
+     *
+     * @return list of the data items of all reachable nodes
+     */
+    public List<NodeType> getReachableNodes() {
+      List<NodeType> reachable = new ArrayList<>(settleOrder.length);
+      for (int id : settleOrder) {
+        reachable.add(getNodeById(id).data);
+      }
+      return reachable;
+    }
+
+    private int checkedIdOf(NodeType node) {
+      if (!isReachable(node)) {
+        throw new NoSuchElementException("No path exists from " + source + " to " + node);
+      }
+      return idOf(node);
+    }
+  }
+
+  /**
+   * Runs Dijkstra's algorithm from the node with the provided start value without stopping at any
+   * particular destination, and returns the resulting tree of shortest paths to every node that
+   * can be reached from start.
+   *
+   * @param start the data item in the starting node for all paths
+   * @return the shortest path tree rooted at start
+   * @throws NoSuchElementException when start does not correspond to a graph node
+   */
+  public ShortestPathTree computeShortestPathTree(NodeType start) {
+    if (!nodes.containsKey(start)) {
+      throw new NoSuchElementException("Start node not found");
+    }
+    SearchWorkspace workspace = getWorkspace();
+    runSearch(workspace, nodes.get(start).id, -1);
+    return new ShortestPathTree(start, workspace);
+  }
+
+  /**
+   * Finds the shortest path from the node with the provided start value to the node with the
+   * provided end value, and returns its nodes together with the weight of every edge along it.
+   * Everything comes from the one search, so no edges have to be looked up afterwards.
+   *
+   * @param start the data item in the starting node for the path
+   * @param end   the data item in the destination node for the path
+   * @return the nodes, edge weights, costs and search effort of the shortest path
+   * @throws NoSuchElementException when either node is missing or no path exists
+   */
+  public RouteResult<NodeType> shortestRoute(NodeType start, NodeType end) {
+    SearchNode endNode;
+    try {
+      endNode = computeShortestPath(start, end);
+    } catch (NoSuchElementException e) {
+      throw new NoSuchElementException("No path exists from " + start + " to " + end);
+    }
+    LinkedList<NodeType> path = new LinkedList<>();
+    LinkedList<Double> legTimes = new LinkedList<>();
+    for (SearchNode current = endNode; current != null; current = current.predecessor) {
+      path.addFirst(current.node.data);
+      if (current.predecessor != null) {
+        legTimes.addFirst(current.edgeWeight);
+      }
+    }
+    return new RouteResult<>(path, legTimes, getLastSettledCount());
+  }
+
+  /**
+   * Computes the cost of the shortest path from every source to every target, with one search
+   * per source on the common fork/join pool. See distanceMatrix(sources, targets, executor).
+   *
+   * @param sources the data items in the starting nodes, one per row of the result
+   * @param targets the data items in the destination nodes, one per column of the result
+   * @return the matrix of shortest path costs
+   * @throws NoSuchElementException if any source or target is not in the graph
+   */
+  public double[][] distanceMatrix(List<NodeType> sources, List<NodeType> targets) {
+    return distanceMatrix(sources, targets, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Computes the cost of the shortest path from every source to every target. Entry [i][j] of
+   * the result is the cost from sources.get(i) to targets.get(j), or positive infinity when there
+   * is no such path. Each source gets one search, which stops as soon as all targets are settled,
+   * and the searches run in parallel on executor. When there are fewer targets than sources,
+   * searches run backward from each target instead, so that the number of searches is the
+   * smaller of the two.
+   *
+   * @param sources  the data items in the starting nodes, one per row of the result
+   * @param targets  the data items in the destination nodes, one per column of the result
+   * @param executor runs the searches
+   * @return the matrix of shortest path costs
+   * @throws NoSuchElementException if any source or target is not in the graph
+   */
+  public double[][] distanceMatrix(List<NodeType> sources, List<NodeType> targets,
+      ExecutorService executor) {
+    int[] sourceIds = nodeIds(sources);
+    int[] targetIds = nodeIds(targets);
+    boolean reverse = targetIds.length < sourceIds.length;
+    int[] searchIds = reverse ? targetIds : sourceIds;
+    int[] stopIds = reverse ? sourceIds : targetIds;
+    FrozenGraph<NodeType> snapshot = freeze(); // compiled once, before the searches share it
+    boolean[] isStop = new boolean[snapshot.getNodeIdBound()];
+    int[] distinctStops = new int[stopIds.length];
+    int stopCount = 0;
+    for (int id : stopIds) {
+      if (!isStop[id]) {
+        isStop[id] = true;
+        distinctStops[stopCount++] = id;
+      }
+    }
+    final int distinctStopCount = stopCount;
+
+    double[][] matrix = new double[sourceIds.length][targetIds.length];
+    List<Future<?>> searches = new ArrayList<>();
+    ReachabilityIndex current = getReachabilityIndex();
+    // an index of another version than the snapshot could miss some of its paths
+    ReachabilityIndex index =
+        current.getGraphVersion() == snapshot.getGraphVersion() ? current : null;
+    for (int i = 0; i < searchIds.length; i++) {
+      final int row = i;
+      searches.add(executor.submit(() -> {
+        // only wait for the stops the search can reach, so that unreachable ones don't make it
+        // settle every node it can reach
+        int reachableStops = 0;
+        for (int s = 0; s < distinctStopCount; s++) {
+          int id = distinctStops[s];
+          if (index == null || (reverse ? index.mayReach(id, searchIds[row])
+              : index.mayReach(searchIds[row], id))) {
+            reachableStops++;
+          }
+        }
+        SearchWorkspace workspace = getWorkspace();
+        runSearchToTargets(workspace, snapshot, searchIds[row], isStop, reachableStops,
+            reverse);
+        for (int column = 0; column < stopIds.length; column++) {
+          int id = stopIds[column];
+          double cost = workspace.isSettled(id) ? workspace.dist[id] : Double.POSITIVE_INFINITY;
+          if (reverse) {
+            matrix[column][row] = cost;
+          } else {
+            matrix[row][column] = cost;
+          }
+        }
+      }));
+    }
+    try {
+      for (Future<?> search : searches) {
+        search.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while computing distances", e);
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("Computing distances failed", e.getCause());
+    }
+    return matrix;
+  }
+
+  /**
+   * @return the ids of the nodes containing each data item, in order
+   * @throws NoSuchElementException if any data item is not in the graph
+   */
+  private int[] nodeIds(List<NodeType> data) {
+    int[] ids = new int[data.size()];
+    for (int i = 0; i < ids.length; i++) {
+      if (!nodes.containsKey(data.get(i))) {
+        throw new NoSuchElementException("Node not found: " + data.get(i));
+      }
+      ids[i] = nodes.get(data.get(i)).id;
+    }
+    return ids;
   }
 
   /**
@@ -159,7 +1060,9 @@ public class DijkstraGraph<NodeType, EdgeType extends Number> extends BaseGraph<
    *
    * @param start the data item in the starting node for the path
    * @param end   the data item in the destination node for the path
-   * @return the cost of the shortest path between these nodes
+   * @return the cost of the shortest path between these nodes, or positive infinity if there is
+   *         none
+   * @throws CancellationException if the calling thread is interrupted during the search
    */
    public double shortestPathCost(NodeType start, NodeType end) {
       try {
@@ -168,8 +1071,10 @@ public class DijkstraGraph<NodeType, EdgeType extends Number> extends BaseGraph<
               return Double.POSITIVE_INFINITY; // Indicating no path exists
           }
         return endNode.cost;
-      } catch (Exception e) {
-          return Double.POSITIVE_INFINITY; // Gracefully handle errors by returning a special value
+      } catch (NoSuchElementException e) {
+          // A missing node means no path; a CancellationException from an interrupted search
+          // is passed on, so that it is not mistaken for a missing path
+          return Double.POSITIVE_INFINITY;
       }
    }
   /**
@@ -258,6 +1163,576 @@ public class DijkstraGraph<NodeType, EdgeType extends Number> extends BaseGraph<
     Assertions.assertEquals(expectedCost, actualCost);
   }
 
+  /**
+   * @return the graph with nodes A to G that was traced in class
+   */
+  private static DijkstraGraph<String, Integer> classGraph() {
+    DijkstraGraph<String, Integer> graph = new DijkstraGraph<>();
+    for (String node : List.of("A", "B", "C", "D", "E", "F", "G")) {
+      graph.insertNode(node);
+    }
+    graph.insertEdge("A", "B", 1);
+    graph.insertEdge("B", "C", 4);
+    graph.insertEdge("D", "B", 1);
+    graph.insertEdge("C", "D", 3);
+    graph.insertEdge("E", "C", 2);
+    graph.insertEdge("C", "G", 2);
+    graph.insertEdge("D", "F", 5);
+    graph.insertEdge("E", "G", 4);
+    graph.insertEdge("A", "D", 3);
+    graph.insertEdge("A", "F", 5);
+    graph.insertEdge("F", "E", 4);
+    graph.insertEdge("G", "F", 2);
+    graph.insertEdge("G", "B", 5);
+    graph.insertEdge("E", "D", 3);
+    return graph;
+  }
+
+  /**
+   * Test that one shortest path tree computed from A agrees with the individual shortest path
+   * queries from A to every other node, and that F -> A is reported as unreachable.
+   */
+  @Test
+  void testShortestPathTreeMatchesPointQueries() {
+    DijkstraGraph<String, Integer> graph = classGraph();
+
+    DijkstraGraph<String, Integer>.ShortestPathTree tree = graph.computeShortestPathTree("A");
+    for (String node : graph.getAllLocations()) {
+      Assertions.assertEquals(graph.shortestPathCost("A", node), tree.getCost(node));
+      Assertions.assertEquals(graph.shortestPathData("A", node), tree.getPath(node));
+    }
+    Assertions.assertEquals(List.of(1.0, 4.0, 2.0), tree.getPathWeights("G"));
+    Assertions.assertEquals(7, tree.getReachableNodes().size());
+    Assertions.assertEquals("A", tree.getReachableNodes().get(0));
+
+    DijkstraGraph<String, Integer>.ShortestPathTree fromF = graph.computeShortestPathTree("F");
+    Assertions.assertFalse(fromF.isReachable("A"));
+    Assertions.assertEquals(Double.POSITIVE_INFINITY, fromF.getCost("A"));
+  }
+
+  /**
+   * Test that repeated searches which reuse the same workspace stay correct after a node is
+   * removed and its id is handed out again to a newly inserted node.
+   */
+  @Test
+  void testRepeatedQueriesAfterRemovingNode() {
+    DijkstraGraph<String, Integer> graph = new DijkstraGraph<>();
+    graph.insertNode("A");
+    graph.insertNode("B");
+    graph.insertNode("C");
+    graph.insertEdge("A", "B", 1);
+    graph.insertEdge("B", "C", 1);
+    graph.insertEdge("A", "C", 5);
+    Assertions.assertEquals(List.of("A", "B", "C"), graph.shortestPathData("A", "C"));
+
+    graph.removeNode("B");
+    Assertions.assertEquals(List.of("A", "C"), graph.shortestPathData("A", "C"));
+    Assertions.assertEquals(5, graph.shortestPathCost("A", "C"));
+
+    graph.insertNode("D");
+    graph.insertEdge("A", "D", 1);
+    graph.insertEdge("D", "C", 2);
+    Assertions.assertEquals(List.of("A", "D", "C"), graph.shortestPathData("A", "C"));
+    Assertions.assertEquals(3, graph.shortestPathCost("A", "C"));
+    Assertions.assertEquals(3, graph.getNodeIdBound());
+  }
+
+  /**
+   * Test that both kinds of queue find the same shortest paths, and that the indexed heap never
+   * holds more than one entry per node while the lazy heap needs more operations.
+   */
+  @Test
+  void testQueueTypesAgree() {
+    DijkstraGraph<Integer, Integer> graph = new DijkstraGraph<>();
+    for (int i = 0; i < 100; i++) {
+      graph.insertNode(i);
+    }
+    for (int i = 0; i < 100; i++) {
+      for (int j = 1; j <= 5; j++) {
+        graph.insertEdge(i, (i + j * 7) % 100, 100 - (i * j) % 97);
+      }
+    }
+
+    for (int end = 1; end < 100; end += 9) {
+      graph.setQueueType(QueueType.LAZY_BINARY_HEAP);
+      double lazyCost = graph.shortestPathCost(0, end);
+      graph.setQueueType(QueueType.INDEXED_DARY_HEAP);
+      Assertions.assertEquals(lazyCost, graph.shortestPathCost(0, end));
+    }
+
+    graph.setQueueType(QueueType.LAZY_BINARY_HEAP);
+    graph.getWorkspace().queue.resetStatistics();
+    graph.computeShortestPathTree(0);
+    long lazyOperations = graph.getWorkspace().queue.getOperationCount();
+    graph.setQueueType(QueueType.INDEXED_DARY_HEAP);
+    graph.getWorkspace().queue.resetStatistics();
+    graph.computeShortestPathTree(0);
+    Assertions.assertTrue(graph.getWorkspace().queue.getPeakSize() <= 100);
+    Assertions.assertTrue(graph.getWorkspace().queue.getOperationCount() <= lazyOperations);
+  }
+
+  /**
+   * @return a graph of 60 nodes with 3 random edges leaving each, whose weights from 1 to 4 give
+   *         many pairs of nodes several shortest paths of the same cost
+   */
+  private static DijkstraGraph<Integer, Integer> randomTiedGraph(long seed) {
+    Random random = new Random(seed);
+    DijkstraGraph<Integer, Integer> graph = new DijkstraGraph<>();
+    int nodes = 60;
+    for (int i = 0; i < nodes; i++) {
+      graph.insertNode(i);
+    }
+    for (int i = 0; i < nodes; i++) {
+      for (int j = 0; j < 3; j++) {
+        graph.insertEdge(i, random.nextInt(nodes), 1 + random.nextInt(4));
+      }
+    }
+    return graph;
+  }
+
+  /**
+   * Asserts that strategy finds paths of the same cost as Dijkstra's algorithm between every pair
+   * of nodes in graph. Where several paths cost the same, the strategies may return different
+   * ones, so each path is only checked to lead from start to end along edges of that total cost.
+   */
+  private static <T> void assertSameCostsAsDijkstra(DijkstraGraph<T, Integer> graph,
+      SearchStrategy strategy) {
+    for (T start : graph.getAllLocations()) {
+      for (T end : graph.getAllLocations()) {
+        graph.setSearchStrategy(SearchStrategy.DIJKSTRA);
+        double cost = graph.shortestPathCost(start, end);
+        graph.setSearchStrategy(strategy);
+        Assertions.assertEquals(cost, graph.shortestPathCost(start, end));
+        if (cost == Double.POSITIVE_INFINITY) {
+          Assertions.assertThrows(NoSuchElementException.class,
+              () -> graph.shortestPathData(start, end));
+          continue;
+        }
+        List<T> path = graph.shortestPathData(start, end);
+        Assertions.assertEquals(start, path.get(0));
+        Assertions.assertEquals(end, path.get(path.size() - 1));
+        double pathCost = 0;
+        for (int i = 0; i + 1 < path.size(); i++) {
+          pathCost += graph.getEdge(path.get(i), path.get(i + 1));
+        }
+        Assertions.assertEquals(cost, pathCost);
+      }
+    }
+  }
+
+  /**
+   * Test that bidirectional searches find paths of the same cost as forward searches, including
+   * paths from a node to itself and paths that do not exist, on the graph traced in class and on
+   * graphs where many shortest paths are tied.
+   */
+  @Test
+  void testBidirectionalMatchesDijkstra() {
+    DijkstraGraph<String, Integer> graph = classGraph();
+    assertSameCostsAsDijkstra(graph, SearchStrategy.BIDIRECTIONAL);
+
+    for (long seed = 0; seed < 5; seed++) {
+      assertSameCostsAsDijkstra(randomTiedGraph(seed), SearchStrategy.BIDIRECTIONAL);
+    }
+  }
+
+  /**
+   * Test that shortestRoute reports the weight of every edge along the path it finds, and costs
+   * that add up to the path's cost, with every search strategy.
+   */
+  @Test
+  void testShortestRouteLegWeights() {
+    DijkstraGraph<String, Double> graph = new DijkstraGraph<>();
+    for (String node : List.of("A", "B", "C", "D", "E")) {
+      graph.insertNode(node);
+    }
+    graph.insertEdge("A", "B", 1.5);
+    graph.insertEdge("B", "C", 2.25);
+    graph.insertEdge("C", "D", 0.5);
+    graph.insertEdge("A", "D", 9.0);
+    graph.insertEdge("D", "E", 1.0);
+    graph.insertEdge("E", "A", 3.0);
+    graph.preprocessLandmarks(2);
+    graph.preprocessContractionHierarchy();
+    for (SearchStrategy strategy : SearchStrategy.values()) {
+      graph.setSearchStrategy(strategy);
+      RouteResult<String> route = graph.shortestRoute("A", "E");
+      Assertions.assertEquals(List.of("A", "B", "C", "D", "E"), route.getNodes());
+      Assertions.assertEquals(List.of(1.5, 2.25, 0.5, 1.0), route.getLegTimes());
+      Assertions.assertEquals(List.of(0.0, 1.5, 3.75, 4.25, 5.25), route.getCumulativeTimes());
+      Assertions.assertEquals(5.25, route.getTotalCost());
+      Assertions.assertTrue(route.getSettledCount() > 0);
+      Assertions.assertEquals(List.of(), graph.shortestRoute("C", "C").getLegTimes());
+    }
+    graph.removeEdge("E", "A");
+    Assertions.assertThrows(NoSuchElementException.class, () -> graph.shortestRoute("E", "A"));
+  }
+
+  /**
+   * Test that every entry of a distance matrix matches the cost of the shortest path between its
+   * source and target, in both search directions, with duplicate and unreachable targets.
+   */
+  @Test
+  void testDistanceMatrix() {
+    DijkstraGraph<Integer, Integer> graph = new DijkstraGraph<>();
+    int side = 8;
+    for (int i = 0; i < side * side; i++) {
+      graph.insertNode(i);
+    }
+    for (int row = 0; row < side; row++) {
+      for (int col = 0; col < side; col++) {
+        int id = row * side + col;
+        if (col + 1 < side)
+          graph.insertEdge(id, id + 1, 1 + (id * 7) % 5);
+        if (row + 1 < side)
+          graph.insertEdge(id, id + side, 1 + (id * 3) % 4);
+      }
+    }
+    graph.insertNode(-1); // reachable from nowhere
+    List<Integer> few = List.of(0, 9, 9, -1);
+    List<Integer> many = List.of(63, 12, 0, 40, 7, -1);
+    for (List<List<Integer>> pair : List.of(List.of(few, many), List.of(many, few))) {
+      List<Integer> sources = pair.get(0);
+      List<Integer> targets = pair.get(1);
+      double[][] matrix = graph.distanceMatrix(sources, targets);
+      Assertions.assertEquals(sources.size(), matrix.length);
+      for (int i = 0; i < sources.size(); i++) {
+        Assertions.assertEquals(targets.size(), matrix[i].length);
+        for (int j = 0; j < targets.size(); j++) {
+          double expected;
+          try {
+            expected = graph.shortestPathCost(sources.get(i), targets.get(j));
+          } catch (NoSuchElementException e) {
+            expected = Double.POSITIVE_INFINITY;
+          }
+          Assertions.assertEquals(expected, matrix[i][j], sources.get(i) + " to " + targets.get(j));
+        }
+      }
+    }
+    Assertions.assertThrows(NoSuchElementException.class,
+        () -> graph.distanceMatrix(List.of(0), List.of(100)));
+  }
+
+  /**
+   * Test that the reachability index agrees with breadth first searches on random graphs, that it
+   * rejects unreachable destinations without settling any node, that it handles long chains of
+   * components, and that it follows modifications of the graph.
+   */
+  @Test
+  void testReachabilityIndex() {
+    Random random = new Random(3);
+    for (int round = 0; round < 20; round++) {
+      DijkstraGraph<Integer, Integer> graph = new DijkstraGraph<>();
+      int count = 30;
+      for (int i = 0; i < count; i++) {
+        graph.insertNode(i);
+      }
+      for (int e = 0; e < count + round * 2; e++) {
+        graph.insertEdge(random.nextInt(count), random.nextInt(count), 1);
+      }
+      graph.removeNode(random.nextInt(count));
+      ReachabilityIndex index = graph.getReachabilityIndex();
+      Assertions.assertTrue(index.isExact());
+      for (int start : graph.getAllLocations()) {
+        // breadth first search from start, over the same nodes and edges
+        boolean[] reached = new boolean[count];
+        LinkedList<Integer> queue = new LinkedList<>(List.of(start));
+        reached[start] = true;
+        while (!queue.isEmpty()) {
+          int current = queue.removeFirst();
+          for (int next : graph.getAllLocations()) {
+            if (!reached[next] && graph.containsEdge(current, next)) {
+              reached[next] = true;
+              queue.add(next);
+            }
+          }
+        }
+        for (int end : graph.getAllLocations()) {
+          Assertions.assertEquals(reached[end], index.mayReach(graph.freeze().getId(start),
+              graph.freeze().getId(end)), start + " to " + end);
+        }
+      }
+    }
+
+    DijkstraGraph<String, Integer> graph = new DijkstraGraph<>();
+    for (String node : List.of("A", "B", "C", "D")) {
+      graph.insertNode(node);
+    }
+    graph.insertEdge("A", "B", 1);
+    graph.insertEdge("B", "C", 1);
+    graph.insertEdge("C", "B", 1);
+    graph.insertEdge("C", "D", 1);
+    Assertions.assertThrows(NoSuchElementException.class, () -> graph.shortestPathData("D", "A"));
+    Assertions.assertEquals(0, graph.getLastSettledCount());
+    graph.insertEdge("B", "D", 5); // B already reaches D, so the index stays in use
+    graph.removeEdge("C", "D");
+    Assertions.assertEquals(List.of("A", "B", "D"), graph.shortestPathData("A", "D"));
+    graph.insertEdge("D", "A", 1); // D reaches A now, so the index is rebuilt
+    Assertions.assertEquals(List.of("D", "A"), graph.shortestPathData("D", "A"));
+    Assertions.assertEquals(1, graph.getReachabilityIndex().getComponentCount());
+
+    // a chain has one component per node, too many for a closure, and is deeper than the stack
+    DijkstraGraph<Integer, Integer> chain = new DijkstraGraph<>();
+    int length = 100_000;
+    for (int i = 0; i < length; i++) {
+      chain.insertNode(i);
+      if (i > 0) {
+        chain.insertEdge(i - 1, i, 1);
+      }
+    }
+    ReachabilityIndex chainIndex = chain.getReachabilityIndex();
+    Assertions.assertEquals(length, chainIndex.getComponentCount());
+    Assertions.assertFalse(chainIndex.isExact());
+    FrozenGraph<Integer> frozenChain = chain.freeze();
+    int first = frozenChain.getId(0);
+    int last = frozenChain.getId(length - 1);
+    Assertions.assertTrue(chainIndex.mayReach(first, last));
+    Assertions.assertFalse(chainIndex.mayReach(last, first));
+  }
+
+  /**
+   * Test that a copy keeps node ids, edge order and the modification count, that modifying it
+   * leaves the original alone, and that a read only graph rejects every modification.
+   */
+  @Test
+  void testCopyAndReadOnly() {
+    DijkstraGraph<String, Integer> graph = new DijkstraGraph<>();
+    for (String node : List.of("A", "B", "C", "D")) {
+      graph.insertNode(node);
+    }
+    graph.insertEdge("A", "B", 1);
+    graph.insertEdge("A", "D", 5);
+    graph.insertEdge("B", "D", 1);
+    graph.removeNode("C"); // leaves an unused id behind
+    graph.setReadOnly();
+    DijkstraGraph<String, Integer> copy = graph.copy();
+    Assertions.assertEquals(graph.getModificationCount(), copy.getModificationCount());
+    Assertions.assertEquals(graph.getAllLocations(), copy.getAllLocations());
+    for (String node : graph.getAllLocations()) {
+      Assertions.assertEquals(graph.freeze().getId(node), copy.freeze().getId(node));
+    }
+    Assertions.assertArrayEquals(graph.freeze().getForwardTargets(),
+        copy.freeze().getForwardTargets());
+    Assertions.assertFalse(copy.isReadOnly());
+    Assertions.assertSame(graph.getWorkspace(), copy.getWorkspace());
+
+    copy.removeEdge("B", "D");
+    Assertions.assertTrue(copy.insertNode("E"));
+    Assertions.assertEquals(graph.freeze().getNodeIdBound(), copy.freeze().getNodeIdBound());
+    Assertions.assertEquals(List.of("A", "D"), copy.shortestPathData("A", "D"));
+    Assertions.assertEquals(List.of("A", "B", "D"), graph.shortestPathData("A", "D"));
+
+    Assertions.assertThrows(IllegalStateException.class, () -> graph.insertNode("F"));
+    Assertions.assertThrows(IllegalStateException.class, () -> graph.getOrInsertNode("F"));
+    Assertions.assertThrows(IllegalStateException.class, () -> graph.insertEdge("A", "B", 2));
+    Assertions.assertThrows(IllegalStateException.class, () -> graph.insertEdgeById(0, 1, 2));
+    Assertions.assertThrows(IllegalStateException.class, () -> graph.removeEdge("A", "B"));
+    Assertions.assertThrows(IllegalStateException.class, () -> graph.removeNode("A"));
+    Assertions.assertEquals(0, graph.getOrInsertNode("A"));
+  }
+
+  /**
+   * Test that every search strategy stops with a CancellationException when its thread has been
+   * interrupted, also while it uses its landmarks or contraction hierarchy, and that searches work
+   * again once the interrupt is cleared.
+   */
+  @Test
+  void testSearchStopsWhenInterrupted() {
+    // Two chains meet at the hub 0, and the start fans out to spokes that all lead to the hub.
+    // The start is contracted first, so even the hierarchy's search settles every spoke, while
+    // the landmarks and the hierarchy both keep their searches out of the chain that leads away.
+    DijkstraGraph<Integer, Integer> graph = new DijkstraGraph<>();
+    int length = 2 * SearchWorkspace.INTERRUPT_CHECK_INTERVAL;
+    int spokes = SearchWorkspace.INTERRUPT_CHECK_INTERVAL + 100;
+    graph.insertNode(0);
+    for (int i = 1; i <= length; i++) {
+      graph.insertNode(i);
+      graph.insertNode(-i);
+      graph.insertEdge(i - 1, i, 1);
+      graph.insertEdge(i, i - 1, 1);
+      graph.insertEdge(1 - i, -i, 1);
+      graph.insertEdge(-i, 1 - i, 1);
+    }
+    int start = length + 1;
+    graph.insertNode(start);
+    for (int spoke = start + 1; spoke <= start + spokes; spoke++) {
+      graph.insertNode(spoke);
+      graph.insertEdge(start, spoke, 2);
+      graph.insertEdge(spoke, start, 2);
+      graph.insertEdge(spoke, 0, 1);
+      graph.insertEdge(0, spoke, 1);
+    }
+    graph.preprocessLandmarks(4);
+    graph.preprocessContractionHierarchy();
+
+    int dijkstraSettled = -1;
+    for (SearchStrategy strategy : SearchStrategy.values()) {
+      graph.setSearchStrategy(strategy);
+      Thread.currentThread().interrupt();
+      try {
+        Assertions.assertThrows(CancellationException.class,
+            () -> graph.shortestPathData(start, length), strategy.name());
+        Assertions.assertThrows(CancellationException.class,
+            () -> graph.shortestPathCost(start, length), strategy.name());
+      } finally {
+        Assertions.assertTrue(Thread.interrupted(), "the interrupt should stay visible");
+      }
+      Assertions.assertEquals(length + 3.0, graph.shortestPathCost(start, length));
+      if (strategy == SearchStrategy.DIJKSTRA) {
+        dijkstraSettled = graph.getLastSettledCount();
+      } else if (strategy != SearchStrategy.BIDIRECTIONAL) {
+        // settling fewer nodes than Dijkstra's algorithm shows that the index was used
+        Assertions.assertTrue(graph.getLastSettledCount() < dijkstraSettled, strategy.name());
+      }
+    }
+    Thread.currentThread().interrupt();
+    try {
+      Assertions.assertThrows(CancellationException.class,
+          () -> graph.computeShortestPathTree(start));
+    } finally {
+      Thread.interrupted();
+    }
+  }
+
+  /**
+   * Test that ALT searches find paths of the same cost as Dijkstra's algorithm while settling
+   * fewer nodes, also where many shortest paths are tied, that saved landmarks can be loaded into
+   * a copy of the graph, but not into a graph with different weights, and that modifying the
+   * graph stops outdated landmarks from being used.
+   */
+  @Test
+  void testLandmarkSearch() throws IOException {
+    DijkstraGraph<Integer, Integer> graph = new DijkstraGraph<>();
+    DijkstraGraph<Integer, Integer> copy = new DijkstraGraph<>();
+    int side = 20;
+    for (int i = 0; i < side * side; i++) {
+      graph.insertNode(i);
+      copy.insertNode(i);
+    }
+    for (int i = 0; i < side * side; i++) {
+      if (i % side + 1 < side) {
+        graph.insertEdge(i, i + 1, 1 + i % 7);
+        graph.insertEdge(i + 1, i, 1 + i % 3);
+        copy.insertEdge(i, i + 1, 1 + i % 7);
+        copy.insertEdge(i + 1, i, 1 + i % 3);
+      }
+      if (i + side < side * side) {
+        graph.insertEdge(i + side, i, 1 + i % 5);
+        graph.insertEdge(i, i + side, 1 + i % 4);
+        copy.insertEdge(i + side, i, 1 + i % 5);
+        copy.insertEdge(i, i + side, 1 + i % 4);
+      }
+    }
+    // one extra node that has an edge into the grid, but that nothing leads to
+    graph.insertNode(-1);
+    graph.insertEdge(-1, 0, 1);
+    copy.insertNode(-1);
+    copy.insertEdge(-1, 0, 1);
+    graph.preprocessLandmarks(4);
+    java.io.File file = java.io.File.createTempFile("landmarks", ".bin");
+    file.deleteOnExit();
+    graph.saveLandmarks(file.getPath());
+    copy.loadLandmarks(file.getPath());
+    copy.setSearchStrategy(SearchStrategy.ALT);
+
+    int dijkstraSettled = 0;
+    int altSettled = 0;
+    for (int end = 0; end < side * side; end += 13) {
+      double cost = graph.shortestPathCost(side * side - 1, end);
+      dijkstraSettled += graph.getLastSettledCount();
+      Assertions.assertEquals(cost, copy.shortestPathCost(side * side - 1, end));
+      altSettled += copy.getLastSettledCount();
+    }
+    Assertions.assertTrue(altSettled < dijkstraSettled);
+    Assertions.assertEquals(Double.POSITIVE_INFINITY, copy.shortestPathCost(0, -1));
+    Assertions.assertEquals(0, copy.getLastSettledCount());
+
+    copy.insertEdge(0, -1, 1);
+    Assertions.assertEquals(1, copy.shortestPathCost(0, -1));
+    Assertions.assertThrows(IllegalStateException.class,
+        () -> copy.saveLandmarks(file.getPath()));
+
+    // landmarks saved for the same nodes with different weights give bounds that are too high
+    DijkstraGraph<String, Integer> before = new DijkstraGraph<>();
+    DijkstraGraph<String, Integer> after = new DijkstraGraph<>();
+    for (String node : List.of("A", "B", "C", "D")) {
+      before.insertNode(node);
+      after.insertNode(node);
+    }
+    before.insertEdge("A", "B", 1);
+    before.insertEdge("B", "D", 1);
+    before.insertEdge("A", "C", 1);
+    before.insertEdge("C", "D", 100);
+    after.insertEdge("A", "B", 1);
+    after.insertEdge("B", "D", 5);
+    after.insertEdge("A", "C", 1);
+    after.insertEdge("C", "D", 1);
+    before.preprocessLandmarks(2);
+    before.saveLandmarks(file.getPath());
+    Assertions.assertThrows(IOException.class, () -> after.loadLandmarks(file.getPath()));
+    after.setSearchStrategy(SearchStrategy.ALT);
+    Assertions.assertEquals(List.of("A", "C", "D"), after.shortestPathData("A", "D"));
+
+    for (long seed = 0; seed < 5; seed++) {
+      DijkstraGraph<Integer, Integer> tied = randomTiedGraph(seed);
+      tied.preprocessLandmarks(4);
+      assertSameCostsAsDijkstra(tied, SearchStrategy.ALT);
+      Assertions.assertNotNull(tied.getLandmarks());
+    }
+  }
+
+  /**
+   * Test that a contraction hierarchy finds paths of the same cost as Dijkstra's algorithm on the
+   * graph traced in class and on graphs where many shortest paths are tied, and stops being used
+   * once the graph is modified.
+   */
+  @Test
+  void testContractionHierarchyMatchesDijkstra() {
+    for (long seed = 0; seed < 5; seed++) {
+      DijkstraGraph<Integer, Integer> tied = randomTiedGraph(seed);
+      tied.preprocessContractionHierarchy();
+      assertSameCostsAsDijkstra(tied, SearchStrategy.CONTRACTION_HIERARCHIES);
+    }
+
+    DijkstraGraph<String, Integer> graph = classGraph();
+    graph.preprocessContractionHierarchy();
+    assertSameCostsAsDijkstra(graph, SearchStrategy.CONTRACTION_HIERARCHIES);
+
+    graph.insertEdge("A", "G", 1);
+    Assertions.assertEquals(List.of("A", "G"), graph.shortestPathData("A", "G"));
+  }
+
+  /**
+   * Test that edges leaving a hub node with more edges than the index threshold are found,
+   * updated and removed correctly, both with and without its successor index.
+   */
+  @Test
+  void testHubEdgeLookup() {
+    DijkstraGraph<String, Integer> graph = new DijkstraGraph<>();
+    graph.insertNode("Hub");
+    for (int i = 0; i < 50; i++) {
+      graph.insertNode("N" + i);
+      graph.insertEdge("Hub", "N" + i, i + 1);
+    }
+    Assertions.assertEquals(20, graph.getEdge("Hub", "N19"));
+    Assertions.assertTrue(graph.insertEdge("Hub", "N19", 5));
+    Assertions.assertEquals(5, graph.getEdge("Hub", "N19"));
+    Assertions.assertEquals(50, graph.getEdgeCount());
+
+    Assertions.assertTrue(graph.removeEdge("Hub", "N3"));
+    Assertions.assertFalse(graph.containsEdge("Hub", "N3"));
+    Assertions.assertFalse(graph.removeEdge("Hub", "N3"));
+    Assertions.assertTrue(graph.removeNode("N7"));
+    Assertions.assertFalse(graph.containsEdge("Hub", "N7"));
+    Assertions.assertThrows(NoSuchElementException.class, () -> graph.getEdge("Hub", "N7"));
+    Assertions.assertFalse(graph.insertEdge("Hub", "Missing", 1));
+
+    graph.setEdgeIndexThreshold(Integer.MAX_VALUE);
+    Assertions.assertTrue(graph.containsEdge("Hub", "N49"));
+    Assertions.assertFalse(graph.containsEdge("Hub", "N3"));
+    Assertions.assertEquals(5, graph.shortestPathCost("Hub", "N19"));
+    Assertions.assertEquals(48, graph.getEdgeCount());
+  }
+
   /**
    * Test the behavior of the implementation when searching for a path between nodes where no path
    * exists. For example, from node F to node A.
@@ -0,0 +1,343 @@
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * A precomputed table of the shortest paths between all pairs of nodes in one version of a
+ * graph, kept in a memory mapped file. For every pair of node ids it stores the cost of the
+ * shortest path as a float and the id of the first node after the start on that path (the next
+ * hop), and for every node the node that is farthest from it. Costs are then a single lookup,
+ * and paths are found by following next hops, in time proportional to their length and without
+ * any search.
+ *
+ * The table needs space quadratic in the number of nodes, so it is meant for graphs of a few
+ * thousand nodes, such as a campus map. A table file consists of a header followed by three
+ * sections:
+ *
+ *   header   magic "GDST", format version, node id bound n, bytes per next hop (2 when n is
+ *            small enough, otherwise 4), fingerprint of the graph, payload length
+ *   costs    n * n floats, row by row: the cost from each node id to each node id, or positive
+ *            infinity when there is no path
+ *   farthest n ints: the id of the reachable node with the most costly path from each node id
+ *   hops     n * n next hops, row by row, or the largest unsigned value when there is no path
+ *
+ * The payload is not checksummed, since that would read the entire table when it is opened;
+ * the fingerprint of the graph's nodes and edges ensures that a table is only used with the graph
+ * it was built from. Tables are written to a temporary file that then replaces the target.
+ */
+public class DistanceTable<NodeType> {
+  private static final int MAGIC = 0x47445354; // "GDST"
+  private static final int FORMAT_VERSION = 1;
+  private static final int HEADER_SIZE = 32;
+
+  private final DijkstraGraph<NodeType, ?> graph;
+  private final FrozenGraph<NodeType> snapshot;
+  private final MappedByteBuffer buffer;
+  private final int idBound;
+  private final int hopBytes;
+  private final int noHop;
+  private final long farthestOffset;
+  private final long hopsOffset;
+
+  private DistanceTable(DijkstraGraph<NodeType, ?> graph, FrozenGraph<NodeType> snapshot,
+      MappedByteBuffer buffer) {
+    this.graph = graph;
+    this.snapshot = snapshot;
+    this.buffer = buffer;
+    this.idBound = snapshot.getNodeIdBound();
+    this.hopBytes = buffer.getInt(12);
+    this.noHop = hopBytes == 2 ? 0xFFFF : -1;
+    this.farthestOffset = HEADER_SIZE + 4L * idBound * idBound;
+    this.hopsOffset = farthestOffset + 4L * idBound;
+  }
+
+  /**
+   * Computes the table for the current version of graph on pool, with one search from each node
+   * running in parallel, and writes it to the file at path. The graph must not be modified while
+   * the table is built.
+   *
+   * @param graph the graph to compute all shortest paths in
+   * @param path  the table file to write
+   * @param pool  runs the searches
+   * @return the table, mapped from the new file
+   * @throws IOException if the file could not be written, or the table would be too large
+   */
+  public static <NodeType> DistanceTable<NodeType> build(DijkstraGraph<NodeType, ?> graph,
+      Path path, ForkJoinPool pool) throws IOException {
+    FrozenGraph<NodeType> snapshot = graph.freeze();
+    int n = snapshot.getNodeIdBound();
+    int hopBytes = n < 0xFFFF ? 2 : 4;
+    long payloadLength = (4L + hopBytes) * n * n + 4L * n;
+    if (HEADER_SIZE + payloadLength > Integer.MAX_VALUE)
+      throw new IOException("Graph is too large for a distance table: " + n + " nodes");
+
+    Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+    try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+        StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      MappedByteBuffer buffer =
+          channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + payloadLength);
+      buffer.putInt(0, MAGIC);
+      buffer.putInt(4, FORMAT_VERSION);
+      buffer.putInt(8, n);
+      buffer.putInt(12, hopBytes);
+      buffer.putLong(16, fingerprint(snapshot));
+      buffer.putLong(24, payloadLength);
+
+      // each search writes its own row, using absolute puts that leave the buffer's position
+      // alone, so the searches can share the buffer
+      DistanceTable<NodeType> table = new DistanceTable<>(graph, snapshot, buffer);
+      // ties between farthest nodes are broken in the order of getAllLocations, like the search
+      // that getMostDistantLocation falls back to
+      List<NodeType> locations = graph.getAllLocations();
+      int[] locationIds = new int[locations.size()];
+      for (int i = 0; i < locationIds.length; i++) {
+        locationIds[i] = snapshot.getId(locations.get(i));
+      }
+      List<ForkJoinTask<?>> rows = new ArrayList<>();
+      for (int id = 0; id < n; id++) {
+        final int source = id;
+        rows.add(pool.submit(() -> table.computeRow(source, locationIds)));
+      }
+      for (ForkJoinTask<?> row : rows) {
+        row.join();
+      }
+      buffer.force();
+    }
+    Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING,
+        StandardCopyOption.ATOMIC_MOVE);
+    return open(graph, path);
+  }
+
+  /**
+   * Maps a table file that was built for the current version of graph.
+   *
+   * @param graph the graph the table was built from
+   * @param path  the table file to map
+   * @return the table
+   * @throws IOException if the file could not be read, is not a complete table, or was built
+   *                     from another graph
+   */
+  public static <NodeType> DistanceTable<NodeType> open(DijkstraGraph<NodeType, ?> graph,
+      Path path) throws IOException {
+    FrozenGraph<NodeType> snapshot = graph.freeze();
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      long size = channel.size();
+      if (size < HEADER_SIZE || size > Integer.MAX_VALUE)
+        throw new IOException("Not a distance table: " + path);
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+      if (buffer.getInt(0) != MAGIC)
+        throw new IOException("Not a distance table: " + path);
+      if (buffer.getInt(4) != FORMAT_VERSION)
+        throw new IOException("Unsupported distance table version " + buffer.getInt(4) + ": "
+            + path);
+      int n = buffer.getInt(8);
+      int hopBytes = buffer.getInt(12);
+      if (n != snapshot.getNodeIdBound() || buffer.getLong(16) != fingerprint(snapshot))
+        throw new IOException("Distance table was built from another graph: " + path);
+      if ((hopBytes != 2 && hopBytes != 4)
+          || HEADER_SIZE + buffer.getLong(24) != size
+          || buffer.getLong(24) != (4L + hopBytes) * n * n + 4L * n)
+        throw new IOException("Truncated distance table: " + path);
+      return new DistanceTable<>(graph, snapshot, buffer);
+    }
+  }
+
+  /**
+   * Maps the table file at path if it was built for the current version of graph, and otherwise
+   * builds it again.
+   *
+   * @param graph the graph to compute all shortest paths in
+   * @param path  the table file to map or write
+   * @param pool  runs the searches when the table is built
+   * @return the table
+   * @throws IOException if the file could not be written
+   */
+  public static <NodeType> DistanceTable<NodeType> openOrBuild(DijkstraGraph<NodeType, ?> graph,
+      Path path, ForkJoinPool pool) throws IOException {
+    if (Files.isRegularFile(path)) {
+      try {
+        return open(graph, path);
+      } catch (IOException e) {
+        // out of date or damaged, so build it again
+      }
+    }
+    return build(graph, path, pool);
+  }
+
+  /**
+   * Combines the data of every node and every edge of snapshot into one number, which differs
+   * between different graphs with high probability.
+   */
+  static long fingerprint(FrozenGraph<?> snapshot) {
+    long hash = snapshot.getNodeIdBound();
+    for (int id = 0; id < snapshot.getNodeIdBound(); id++) {
+      hash = hash * 31 + Objects.hashCode(snapshot.getData(id));
+      hash = hash * 31 + snapshot.forwardStart(id);
+    }
+    for (int target : snapshot.getForwardTargets()) {
+      hash = hash * 31 + target;
+    }
+    for (double weight : snapshot.getForwardWeights()) {
+      hash = hash * 31 + Double.doubleToLongBits(weight);
+    }
+    return hash;
+  }
+
+  /**
+   * Searches the entire graph from the node with id source and writes its row of costs and next
+   * hops, and its farthest node: the first node in locationIds whose path costs the most.
+   */
+  private void computeRow(int source, int[] locationIds) {
+    long row = (long) source * idBound;
+    if (snapshot.getData(source) == null) {
+      // no node has this id, so nothing is reachable from it
+      for (int target = 0; target < idBound; target++) {
+        buffer.putFloat((int) (HEADER_SIZE + 4 * (row + target)), Float.POSITIVE_INFINITY);
+        putHop(row + target, noHop);
+      }
+      buffer.putInt((int) (farthestOffset + 4L * source), source);
+      return;
+    }
+    SearchWorkspace workspace = graph.getWorkspace();
+    graph.runSearch(workspace, snapshot, source, -1, false);
+
+    // nodes are settled after their predecessors, so each one can take its next hop from its
+    // predecessor's
+    int[] hops = new int[idBound];
+    Arrays.fill(hops, noHop);
+    for (int i = 0; i < workspace.getSettledCount(); i++) {
+      int id = workspace.getSettledId(i);
+      int pred = workspace.pred[id];
+      hops[id] = pred == source || pred == -1 ? id : hops[pred];
+    }
+
+    for (int target = 0; target < idBound; target++) {
+      boolean reached = workspace.isSettled(target);
+      double cost = reached ? workspace.dist[target] : Double.POSITIVE_INFINITY;
+      buffer.putFloat((int) (HEADER_SIZE + 4 * (row + target)), (float) cost);
+      putHop(row + target, hops[target]);
+    }
+    int farthest = -1; // the source is settled, so some location always is
+    for (int location : locationIds) {
+      if (workspace.isSettled(location)
+          && (farthest == -1 || workspace.dist[location] > workspace.dist[farthest])) {
+        farthest = location;
+      }
+    }
+    buffer.putInt((int) (farthestOffset + 4L * source), farthest);
+  }
+
+  private void putHop(long index, int hop) {
+    if (hopBytes == 2) {
+      buffer.putChar((int) (hopsOffset + 2 * index), (char) hop);
+    } else {
+      buffer.putInt((int) (hopsOffset + 4 * index), hop);
+    }
+  }
+
+  private int getHop(long index) {
+    return hopBytes == 2 ? buffer.getChar((int) (hopsOffset + 2 * index))
+        : buffer.getInt((int) (hopsOffset + 4 * index));
+  }
+
+  /**
+   * Checks whether this table describes graph as it is now.
+   *
+   * @param graph the graph to check
+   * @return true if the table was built or opened for graph, and graph was not modified since
+   */
+  public boolean isCurrent(DijkstraGraph<?, ?> graph) {
+    return graph == this.graph && graph.getModificationCount() == snapshot.getGraphVersion();
+  }
+
+  /**
+   * Returns the id of the node with the provided data.
+   *
+   * @throws NoSuchElementException if no node holds that data
+   */
+  private int idOf(NodeType data) {
+    if (!snapshot.containsNode(data))
+      throw new NoSuchElementException("Node not found: " + data);
+    return snapshot.getId(data);
+  }
+
+  /**
+   * Returns the cost of the shortest path between two nodes. The cost is stored as a float, so it
+   * may differ slightly from the cost of the path that a search finds.
+   *
+   * @param start the data item in the starting node for the path
+   * @param end   the data item in the destination node for the path
+   * @return the cost of the shortest path, or positive infinity if there is no path
+   * @throws NoSuchElementException if either node is not in the graph
+   */
+  public double getCost(NodeType start, NodeType end) {
+    int startId = idOf(start);
+    int endId = idOf(end);
+    return buffer.getFloat((int) (HEADER_SIZE + 4 * ((long) startId * idBound + endId)));
+  }
+
+  /**
+   * Returns the shortest path between two nodes by following next hops, with the weight of
+   * every edge along it taken from the graph. The settled count of the result is 0, since no
+   * search is needed.
+   *
+   * @param start the data item in the starting node for the path
+   * @param end   the data item in the destination node for the path
+   * @return the route along the shortest path
+   * @throws NoSuchElementException if either node is not in the graph or there is no path
+   */
+  public RouteResult<NodeType> getRoute(NodeType start, NodeType end) {
+    int currentId = idOf(start);
+    int endId = idOf(end);
+    List<NodeType> nodes = new ArrayList<>();
+    List<Double> legs = new ArrayList<>();
+    nodes.add(start);
+    while (currentId != endId) {
+      int next = getHop((long) currentId * idBound + endId);
+      if (next == noHop)
+        throw new NoSuchElementException("No path from " + start + " to " + end);
+      legs.add(edgeWeight(currentId, next));
+      nodes.add(snapshot.getData(next));
+      currentId = next;
+    }
+    return new RouteResult<>(nodes, legs, 0);
+  }
+
+  /**
+   * @return the lowest weight of the edges from the node with id pred to the node with id succ
+   */
+  private double edgeWeight(int pred, int succ) {
+    int[] targets = snapshot.getForwardTargets();
+    double[] weights = snapshot.getForwardWeights();
+    double weight = Double.POSITIVE_INFINITY;
+    for (int edge = snapshot.forwardStart(pred); edge < snapshot.forwardEnd(pred); edge++) {
+      if (targets[edge] == succ) {
+        weight = Math.min(weight, weights[edge]);
+      }
+    }
+    return weight;
+  }
+
+  /**
+   * Returns the node that has the most costly shortest path from start, among the nodes that
+   * can be reached from it. This is start itself when no other node can be reached.
+   *
+   * @param start the data item in the starting node
+   * @return the data item in the farthest node
+   * @throws NoSuchElementException if start is not in the graph
+   */
+  public NodeType getFarthest(NodeType start) {
+    return snapshot.getData(buffer.getInt((int) (farthestOffset + 4L * idOf(start))));
+  }
+}
@@ -0,0 +1,729 @@
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Reads graphs in the DOT format that the campus data is exported in, such as:
+ *
+ *   digraph campus {
+ *     "Union South" -> "Computer Sciences and Statistics" [seconds=176.0];
+ *     ...
+ *   }
+ *
+ * The file is memory mapped and scanned byte by byte by a hand written tokenizer, and every edge
+ * is inserted into the graph as soon as it has been read, so no lines or regular expressions are
+ * involved. Node names are decoded from UTF-8 only the first time they are seen; later
+ * occurrences are matched against the raw bytes of the names that have been seen before.
+ *
+ * Besides edge statements, node statements, attribute statements (graph/node/edge [...]),
+ * graph attributes (a=b), edge chains (a -> b -> c), undirected edges (--) and C, C++ and shell
+ * style comments are understood. Every edge must have a seconds attribute, which becomes its
+ * weight. Any other input is rejected with a DotSyntaxException that names the line and column
+ * where the problem was found.
+ */
+public class DotGraphReader {
+
+  /**
+   * Reports malformed DOT input, along with the position in the file where it was found.
+   */
+  public static class DotSyntaxException extends IOException {
+    private static final long serialVersionUID = 1L;
+    private final int line;
+    private final int column;
+
+    public DotSyntaxException(String source, int line, int column, String message) {
+      super(source + ":" + line + ":" + column + ": " + message);
+      this.line = line;
+      this.column = column;
+    }
+
+    /**
+     * @return the 1-based line of the malformed input
+     */
+    public int getLine() {
+      return line;
+    }
+
+    /**
+     * @return the 1-based column, counted in bytes, of the malformed input
+     */
+    public int getColumn() {
+      return column;
+    }
+  }
+
+  // Files are mapped in windows of at most this many bytes, so that files larger than a single
+  // MappedByteBuffer can hold are read as well
+  private static final long WINDOW_SIZE = 1L << 30;
+
+  // Kinds of tokens
+  private static final int EOF = 0;
+  private static final int ID = 1; // quoted string, identifier or number
+  private static final int ARROW = 2; // -> or --
+  private static final int PUNCT = 3; // one of { } [ ] ; , =
+
+  private final Path path;
+  private FileChannel channel;
+  private long fileSize;
+  private MappedByteBuffer window;
+  private long windowStart;
+  private long position;
+  private int line;
+  private long lineStart;
+
+  // The current token: its kind, its first byte for PUNCT and ARROW tokens, whether it was quoted,
+  // and for ID tokens its unescaped bytes
+  private int tokenKind;
+  private byte tokenChar;
+  private boolean tokenQuoted;
+  private byte[] tokenBytes = new byte[64];
+  private int tokenLength;
+  private long tokenPosition;
+  private int tokenLine;
+  private int tokenColumn;
+
+  // Node ids of the names seen so far, in an open addressing table keyed by the names' bytes
+  private byte[][] names = new byte[1024][];
+  private int[] nameHashes = new int[1024];
+  private int[] nameIds = new int[1024];
+  private int nameCount = 0;
+
+  // The graph that nodes and edges are inserted into, which is null while parsing a chunk
+  private BaseGraph<String, Double> graph;
+  private int edgesRead;
+
+  // Files smaller than two chunks of this many bytes are not parsed in parallel
+  long minChunkSize = 1 << 20;
+
+  // While parsing a chunk in parallel: where the chunk ends, the names and edges that were found
+  // in it, where its first token and the first token after it start, and how parsing went
+  private long chunkEnd;
+  private boolean lastChunk;
+  private String[] localNames;
+  private int localNameCount = 0;
+  private int[] localTails;
+  private int[] localHeads;
+  private Double[] localWeights;
+  private int localEdgeCount = 0;
+  private long firstTokenPosition;
+  private long stopPosition;
+  private boolean chunkParsed = false;
+  private IOException failure = null;
+
+  /**
+   * Creates a reader for the DOT file at path. Nothing is read until read is called.
+   *
+   * @param path the file to read
+   */
+  public DotGraphReader(Path path) {
+    this.path = path;
+  }
+
+  /**
+   * Reads every node and edge in the file into graph. Nodes that are already in the graph are
+   * reused, and edges that already exist have their weight updated.
+   *
+   * @param graph the graph to add the file's nodes and edges to
+   * @return the number of edges that were read
+   * @throws DotSyntaxException if the file is not well formed
+   * @throws IOException        if the file cannot be read
+   */
+  public int read(BaseGraph<String, Double> graph) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      return readSequential(graph, channel);
+    }
+  }
+
+  /**
+   * Reads every node and edge in the file into graph like read does, but parses the file in
+   * parallel on pool. The statements of the file are split into chunks at line breaks, and each
+   * chunk is parsed into its own table of node names and list of edges. The chunks are then merged
+   * into graph in file order, so that the graph ends up exactly as read would leave it. Small
+   * files, and files whose chunks cannot be parsed independently (because a comment, string or
+   * statement spans a chunk boundary, or because the file is malformed), are read sequentially.
+   *
+   * @param graph the graph to add the file's nodes and edges to
+   * @param pool  the pool that parses the chunks
+   * @return the number of edges that were read
+   * @throws DotSyntaxException if the file is not well formed
+   * @throws IOException        if the file cannot be read
+   */
+  public int readParallel(BaseGraph<String, Double> graph, ForkJoinPool pool)
+      throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      long size = channel.size();
+      int chunkCount = (int) Math.min(pool.getParallelism() * 4L, size / minChunkSize);
+      if (chunkCount < 2 || pool.getParallelism() < 2)
+        return readSequential(graph, channel);
+
+      // the header is parsed first, to find where the statements start
+      DotGraphReader header = new DotGraphReader(path);
+      header.open(channel, 0);
+      boolean directed = header.parseHeader();
+      long[] bounds = new long[chunkCount + 1];
+      bounds[0] = header.tokenPosition;
+      for (int i = 1; i < chunkCount; i++) {
+        long nominal = bounds[0] + (size - bounds[0]) * i / chunkCount;
+        bounds[i] = Math.max(bounds[i - 1], header.nextLineStart(nominal));
+      }
+      bounds[chunkCount] = size;
+
+      DotGraphReader[] chunks = new DotGraphReader[chunkCount];
+      List<ForkJoinTask<?>> tasks = new ArrayList<>();
+      for (int i = 0; i < chunkCount; i++) {
+        DotGraphReader chunk = new DotGraphReader(path);
+        chunk.open(channel, bounds[i]);
+        chunk.chunkEnd = bounds[i + 1];
+        chunk.lastChunk = i == chunkCount - 1;
+        chunks[i] = chunk;
+        tasks.add(pool.submit(() -> chunk.parseChunk(directed)));
+      }
+      for (ForkJoinTask<?> task : tasks) {
+        task.join();
+      }
+
+      // the chunks agree with a sequential parse when each one stopped right where the next one
+      // found its first token
+      for (int i = 0; i < chunkCount; i++) {
+        if (chunks[i].failure != null)
+          throw chunks[i].failure;
+        if (!chunks[i].chunkParsed
+            || i > 0 && chunks[i - 1].stopPosition != chunks[i].firstTokenPosition)
+          return readSequential(graph, channel);
+      }
+
+      int edgesRead = 0;
+      for (DotGraphReader chunk : chunks) {
+        int[] ids = new int[chunk.localNameCount];
+        for (int i = 0; i < ids.length; i++) {
+          ids[i] = graph.getOrInsertNode(chunk.localNames[i]);
+        }
+        for (int i = 0; i < chunk.localEdgeCount; i++) {
+          graph.insertEdgeById(ids[chunk.localTails[i]], ids[chunk.localHeads[i]],
+              chunk.localWeights[i]);
+        }
+        edgesRead += chunk.edgesRead;
+      }
+      return edgesRead;
+    }
+  }
+
+  private int readSequential(BaseGraph<String, Double> graph, FileChannel channel)
+      throws IOException {
+    this.graph = graph;
+    try {
+      open(channel, 0);
+      parseGraph();
+    } finally {
+      this.channel = null;
+      this.window = null;
+      this.graph = null;
+    }
+    return edgesRead;
+  }
+
+  /**
+   * Prepares this reader to parse channel from the provided position.
+   */
+  private void open(FileChannel channel, long start) throws IOException {
+    this.channel = channel;
+    this.fileSize = channel.size();
+    this.window = null;
+    this.windowStart = 0;
+    this.position = start;
+    this.line = 1;
+    this.lineStart = start;
+    this.edgesRead = 0;
+    this.names = new byte[1024][];
+    this.nameHashes = new int[1024];
+    this.nameIds = new int[1024];
+    this.nameCount = 0;
+  }
+
+  /**
+   * @return the position just after the first line break at or after position at
+   */
+  private long nextLineStart(long at) throws IOException {
+    position = at;
+    int b;
+    while ((b = advance()) >= 0 && b != '\n')
+      ;
+    return position;
+  }
+
+  /**
+   * Parses the statements that start in the chunk between the current position and chunkEnd
+   * into the local names and edges. Statements that start inside the chunk are parsed to their
+   * end, even past chunkEnd. Syntax errors only mark the chunk as not parsed; they are reported
+   * by the sequential read that follows.
+   */
+  private void parseChunk(boolean directed) {
+    try {
+      localNames = new String[256];
+      localTails = new int[1024];
+      localHeads = new int[1024];
+      localWeights = new Double[1024];
+      nextToken();
+      firstTokenPosition = tokenPosition;
+      while (tokenKind != EOF && tokenPosition < chunkEnd && !isPunct('}')) {
+        parseStatement(directed);
+      }
+      if (tokenKind != EOF && tokenPosition < chunkEnd) {
+        // the closing brace, which must be the last token of the file
+        if (!lastChunk)
+          return;
+        nextToken();
+        if (tokenKind != EOF)
+          return;
+      } else if (lastChunk) {
+        return; // the closing brace is missing
+      }
+      stopPosition = tokenPosition;
+      chunkParsed = true;
+    } catch (DotSyntaxException e) {
+      chunkParsed = false;
+    } catch (IOException e) {
+      failure = e;
+    } finally {
+      window = null;
+    }
+  }
+
+  private void parseGraph() throws IOException {
+    boolean directed = parseHeader();
+    while (!isPunct('}')) {
+      parseStatement(directed);
+    }
+    nextToken();
+    if (tokenKind != EOF)
+      throw error("unexpected input after the end of the graph");
+  }
+
+  /**
+   * Parses the header of the graph, up to and including its opening brace.
+   *
+   * @return true if the graph is directed
+   */
+  private boolean parseHeader() throws IOException {
+    nextToken();
+    if (isKeyword("strict"))
+      nextToken();
+    boolean directed;
+    if (isKeyword("digraph")) {
+      directed = true;
+    } else if (isKeyword("graph")) {
+      directed = false;
+    } else {
+      throw error("expected digraph or graph");
+    }
+    nextToken();
+    if (tokenKind == ID)
+      nextToken(); // the graph's name
+    expect('{');
+    nextToken();
+    return directed;
+  }
+
+  private void parseStatement(boolean directed) throws IOException {
+    if (isPunct(';')) {
+      nextToken();
+      return;
+    }
+    if (tokenKind != ID)
+      throw error("expected a statement");
+    if (!tokenQuoted && (isKeyword("graph") || isKeyword("node") || isKeyword("edge"))) {
+      nextToken();
+      expect('[');
+      skipAttributes();
+      return;
+    }
+    if (!tokenQuoted && isKeyword("subgraph"))
+      throw error("subgraphs are not supported");
+
+    if (skipSpaceAndComments() == '=') {
+      // a graph attribute such as rankdir=LR
+      nextToken();
+      nextToken();
+      if (tokenKind != ID)
+        throw error("expected an attribute value");
+      nextToken();
+      return;
+    }
+    int tail = nodeId();
+    int idLine = tokenLine;
+    int idColumn = tokenColumn;
+    nextToken();
+    if (tokenKind != ARROW) {
+      // a node statement, which may have attributes
+      if (isPunct('['))
+        skipAttributes();
+      return;
+    }
+
+    // an edge statement, possibly a chain a -> b -> c, whose attributes apply to every edge
+    int[] chain = new int[] {tail, 0};
+    int chainLength = 1;
+    while (tokenKind == ARROW) {
+      if ((tokenChar == '>') != directed)
+        throw error(directed ? "expected -> in a digraph" : "expected -- in a graph");
+      nextToken();
+      if (tokenKind != ID)
+        throw error("expected a node after the edge operator");
+      if (chainLength == chain.length)
+        chain = Arrays.copyOf(chain, chain.length * 2);
+      chain[chainLength++] = nodeId();
+      nextToken();
+    }
+    double seconds = Double.NaN;
+    while (isPunct('[')) {
+      nextToken();
+      while (!isPunct(']')) {
+        if (tokenKind != ID)
+          throw error("expected an attribute name");
+        boolean isSeconds = isKeyword("seconds");
+        nextToken();
+        expect('=');
+        nextToken();
+        if (tokenKind != ID)
+          throw error("expected an attribute value");
+        if (isSeconds) {
+          seconds = parseNumber();
+          if (!(seconds >= 0))
+            throw error("seconds must be a non-negative number");
+        }
+        nextToken();
+        if (isPunct(',') || isPunct(';'))
+          nextToken();
+      }
+      nextToken();
+    }
+    if (Double.isNaN(seconds))
+      throw new DotSyntaxException(path.toString(), idLine, idColumn,
+          "edge has no seconds attribute");
+    Double weight = seconds;
+    for (int i = 1; i < chainLength; i++) {
+      addEdge(chain[i - 1], chain[i], weight);
+      if (!directed)
+        addEdge(chain[i], chain[i - 1], weight);
+      edgesRead++;
+    }
+  }
+
+  /**
+   * Skips an attribute list, starting at its opening [, along with any lists that directly follow
+   * it.
+   */
+  private void skipAttributes() throws IOException {
+    while (isPunct('[')) {
+      nextToken();
+      while (!isPunct(']')) {
+        if (tokenKind == EOF)
+          throw error("unterminated attribute list");
+        nextToken();
+      }
+      nextToken();
+    }
+  }
+
+  private void expect(char punct) throws IOException {
+    if (!isPunct(punct))
+      throw error("expected " + punct);
+  }
+
+  private boolean isPunct(char punct) {
+    return tokenKind == PUNCT && tokenChar == punct;
+  }
+
+  private boolean isKeyword(String keyword) {
+    if (tokenKind != ID || tokenLength != keyword.length())
+      return false;
+    for (int i = 0; i < tokenLength; i++) {
+      if (Character.toLowerCase((char) tokenBytes[i]) != keyword.charAt(i))
+        return false;
+    }
+    return true;
+  }
+
+  /**
+   * Parses the current token as a number. Decimal numbers with few enough digits are converted
+   * directly, which is exact because both the digits and the power of ten are exactly
+   * representable as doubles; anything else is left to Double.parseDouble.
+   */
+  private double parseNumber() throws IOException {
+    long digits = 0;
+    int digitCount = 0;
+    int fractionDigits = -1;
+    boolean simple = tokenLength > 0;
+    for (int i = 0; i < tokenLength && simple; i++) {
+      byte b = tokenBytes[i];
+      if (b >= '0' && b <= '9') {
+        digits = digits * 10 + (b - '0');
+        digitCount++;
+        if (fractionDigits >= 0)
+          fractionDigits++;
+      } else if (b == '.' && fractionDigits < 0) {
+        fractionDigits = 0;
+      } else {
+        simple = false;
+      }
+    }
+    if (simple && digitCount > 0 && digitCount <= 15) {
+      return fractionDigits <= 0 ? digits : digits / POWERS_OF_TEN[fractionDigits];
+    }
+    try {
+      return Double.parseDouble(new String(tokenBytes, 0, tokenLength, StandardCharsets.UTF_8));
+    } catch (NumberFormatException e) {
+      throw error("expected a number");
+    }
+  }
+
+  private static final double[] POWERS_OF_TEN = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9,
+      1e10, 1e11, 1e12, 1e13, 1e14, 1e15};
+
+  /**
+   * Returns the id of the graph node named by the current token, inserting the node on first
+   * sight. Names are looked up by their bytes, so a String is only created for new names.
+   */
+  private int nodeId() {
+    int hash = 1;
+    for (int i = 0; i < tokenLength; i++) {
+      hash = 31 * hash + tokenBytes[i];
+    }
+    hash ^= hash >>> 16;
+    int mask = names.length - 1;
+    int index = hash & mask;
+    while (names[index] != null) {
+      if (nameHashes[index] == hash && sameBytes(names[index]))
+        return nameIds[index];
+      index = (index + 1) & mask;
+    }
+    byte[] name = Arrays.copyOf(tokenBytes, tokenLength);
+    String data = new String(name, StandardCharsets.UTF_8);
+    int id;
+    if (graph != null) {
+      id = graph.getOrInsertNode(data);
+    } else {
+      // while parsing a chunk, names are numbered locally in the order they are first seen
+      if (localNameCount == localNames.length)
+        localNames = Arrays.copyOf(localNames, localNameCount * 2);
+      id = localNameCount;
+      localNames[localNameCount++] = data;
+    }
+    names[index] = name;
+    nameHashes[index] = hash;
+    nameIds[index] = id;
+    if (++nameCount * 2 > names.length)
+      growNames();
+    return id;
+  }
+
+  /**
+   * Inserts an edge into the graph, or while parsing a chunk, appends it to the local edges.
+   */
+  private void addEdge(int tail, int head, Double weight) {
+    if (graph != null) {
+      graph.insertEdgeById(tail, head, weight);
+      return;
+    }
+    if (localEdgeCount == localTails.length) {
+      localTails = Arrays.copyOf(localTails, localEdgeCount * 2);
+      localHeads = Arrays.copyOf(localHeads, localEdgeCount * 2);
+      localWeights = Arrays.copyOf(localWeights, localEdgeCount * 2);
+    }
+    localTails[localEdgeCount] = tail;
+    localHeads[localEdgeCount] = head;
+    localWeights[localEdgeCount] = weight;
+    localEdgeCount++;
+  }
+
+  private boolean sameBytes(byte[] name) {
+    if (name.length != tokenLength)
+      return false;
+    for (int i = 0; i < tokenLength; i++) {
+      if (name[i] != tokenBytes[i])
+        return false;
+    }
+    return true;
+  }
+
+  private void growNames() {
+    byte[][] oldNames = names;
+    int[] oldHashes = nameHashes;
+    int[] oldIds = nameIds;
+    names = new byte[oldNames.length * 2][];
+    nameHashes = new int[names.length];
+    nameIds = new int[names.length];
+    int mask = names.length - 1;
+    for (int i = 0; i < oldNames.length; i++) {
+      if (oldNames[i] == null)
+        continue;
+      int index = oldHashes[i] & mask;
+      while (names[index] != null)
+        index = (index + 1) & mask;
+      names[index] = oldNames[i];
+      nameHashes[index] = oldHashes[i];
+      nameIds[index] = oldIds[i];
+    }
+  }
+
+  /**
+   * Advances to the next token, skipping whitespace and comments.
+   */
+  private void nextToken() throws IOException {
+    int b = skipSpaceAndComments();
+    tokenPosition = position;
+    tokenLine = line;
+    tokenColumn = column();
+    tokenQuoted = false;
+    tokenLength = 0;
+    if (b < 0) {
+      tokenKind = EOF;
+      return;
+    }
+    if (b == '"') {
+      readQuoted();
+      return;
+    }
+    if (b == '-' && peek(1) == '>' || b == '-' && peek(1) == '-') {
+      advance();
+      tokenChar = (byte) advance();
+      tokenKind = ARROW;
+      return;
+    }
+    if (b == '{' || b == '}' || b == '[' || b == ']' || b == ';' || b == ',' || b == '=') {
+      tokenChar = (byte) advance();
+      tokenKind = PUNCT;
+      return;
+    }
+    if (isIdByte(b) || b == '-' || b == '.') {
+      // identifiers and numerals; a leading - is only allowed for negative numbers
+      appendToken(advance());
+      while ((b = peek(0)) >= 0 && (isIdByte(b) || b == '.')) {
+        appendToken(advance());
+      }
+      tokenKind = ID;
+      return;
+    }
+    throw error("unexpected character '" + (char) b + "'");
+  }
+
+  private void readQuoted() throws IOException {
+    int quoteLine = line;
+    int quoteColumn = column();
+    advance(); // the opening quote
+    while (true) {
+      int b = advance();
+      if (b < 0)
+        throw new DotSyntaxException(path.toString(), quoteLine, quoteColumn,
+            "unterminated string");
+      if (b == '"')
+        break;
+      if (b == '\\') {
+        int escaped = advance();
+        if (escaped == '"') {
+          b = '"';
+        } else if (escaped == '\n') {
+          continue; // a line continuation
+        } else {
+          appendToken('\\');
+          b = escaped;
+          if (b < 0)
+            continue;
+        }
+      }
+      appendToken(b);
+    }
+    tokenKind = ID;
+    tokenQuoted = true;
+  }
+
+  private static boolean isIdByte(int b) {
+    return b >= 'a' && b <= 'z' || b >= 'A' && b <= 'Z' || b >= '0' && b <= '9' || b == '_'
+        || b >= 0x80;
+  }
+
+  private void appendToken(int b) {
+    if (tokenLength == tokenBytes.length)
+      tokenBytes = Arrays.copyOf(tokenBytes, tokenBytes.length * 2);
+    tokenBytes[tokenLength++] = (byte) b;
+  }
+
+  /**
+   * Skips whitespace and comments.
+   *
+   * @return the first byte after them, which is not consumed, or -1 at the end of the file
+   */
+  private int skipSpaceAndComments() throws IOException {
+    while (true) {
+      int b = peek(0);
+      if (b == ' ' || b == '\t' || b == '\r' || b == '\n') {
+        advance();
+      } else if (b == '#' || b == '/' && peek(1) == '/') {
+        while ((b = peek(0)) >= 0 && b != '\n')
+          advance();
+      } else if (b == '/' && peek(1) == '*') {
+        int commentLine = line;
+        int commentColumn = column();
+        advance();
+        advance();
+        while (!(peek(0) == '*' && peek(1) == '/')) {
+          if (advance() < 0)
+            throw new DotSyntaxException(path.toString(), commentLine, commentColumn,
+                "unterminated comment");
+        }
+        advance();
+        advance();
+      } else {
+        return b;
+      }
+    }
+  }
+
+  /**
+   * @return the byte offset bytes ahead of the current position, or -1 past the end of the file
+   */
+  private int peek(int offset) throws IOException {
+    long at = position + offset;
+    if (at >= fileSize)
+      return -1;
+    if (window == null || at < windowStart || at >= windowStart + window.limit()) {
+      windowStart = at;
+      window = channel.map(FileChannel.MapMode.READ_ONLY, at, Math.min(WINDOW_SIZE,
+          fileSize - at));
+    }
+    return window.get((int) (at - windowStart)) & 0xff;
+  }
+
+  /**
+   * Consumes one byte, keeping track of lines.
+   *
+   * @return the consumed byte, or -1 at the end of the file
+   */
+  private int advance() throws IOException {
+    int b = peek(0);
+    if (b >= 0) {
+      position++;
+      if (b == '\n') {
+        line++;
+        lineStart = position;
+      }
+    }
+    return b;
+  }
+
+  private int column() {
+    return (int) (position - lineStart) + 1;
+  }
+
+  private DotSyntaxException error(String message) {
+    return new DotSyntaxException(path.toString(), tokenLine, tokenColumn, message);
+  }
+}
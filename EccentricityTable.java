@@ -0,0 +1,237 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * An EccentricityTable stores, for every node of one version of a graph, the node that has the
+ * most costly shortest path from it (its farthest node) and the cost of that path (its
+ * eccentricity). Both are indexed by node id, so looking them up takes constant time.
+ *
+ * Computing the table takes one search from every node, which run in parallel. After an edge
+ * changes, only the entries of nodes that can reach the edge's predecessor can change; withStale
+ * marks just those entries as stale, and refresh searches again from them alone. Stale entries
+ * report no farthest node, so callers can fall back to searching until the table is refreshed.
+ *
+ * Ties between nodes at the same cost are broken in the order of getAllLocations, which is the
+ * same order that a search over all locations uses. A table is immutable: withStale and refresh
+ * return new tables that share nothing with it, so a table can be read by any number of threads.
+ */
+public class EccentricityTable {
+  private final Object graph;
+  private final int[] farthestIds; // -1 for stale entries and ids without a node
+  private final double[] eccentricities;
+  private final int staleCount;
+  private final long graphVersion;
+
+  private EccentricityTable(Object graph, int[] farthestIds, double[] eccentricities,
+      int staleCount, long graphVersion) {
+    this.graph = graph;
+    this.farthestIds = farthestIds;
+    this.eccentricities = eccentricities;
+    this.staleCount = staleCount;
+    this.graphVersion = graphVersion;
+  }
+
+  /**
+   * Computes the farthest node of every node in graph on pool. The graph must not be modified
+   * while the table is built.
+   *
+   * @param graph the graph to compute the table for
+   * @param pool  runs the searches
+   * @return the table for the graph's current version
+   */
+  public static <NodeType> EccentricityTable build(DijkstraGraph<NodeType, ?> graph,
+      ForkJoinPool pool) {
+    return build(graph, graph.freeze(), graph.getAllLocations(), pool);
+  }
+
+  /**
+   * Computes the farthest node of every node in a snapshot of graph on pool. Only the snapshot
+   * is searched, so graph may be modified meanwhile; the table then describes an older version.
+   *
+   * @param graph     the graph to compute the table for
+   * @param snapshot  the version of graph to search
+   * @param locations the graph's locations in the order of getAllLocations when snapshot was
+   *                  taken, which breaks ties between farthest nodes
+   * @param pool      runs the searches
+   * @return the table for the snapshot's version of graph
+   */
+  public static <NodeType> EccentricityTable build(DijkstraGraph<NodeType, ?> graph,
+      FrozenGraph<NodeType> snapshot, List<NodeType> locations, ForkJoinPool pool) {
+    int bound = snapshot.getNodeIdBound();
+    int[] farthestIds = new int[bound];
+    Arrays.fill(farthestIds, -1);
+    boolean[] stale = new boolean[bound];
+    Arrays.fill(stale, true);
+    EccentricityTable empty = new EccentricityTable(graph, farthestIds, new double[bound], bound,
+        snapshot.getGraphVersion());
+    return empty.recompute(graph, snapshot, locations, pool, stale);
+  }
+
+  /**
+   * Returns a copy of this table in which the entries of every node that may reach the node with
+   * id changedId are stale, for after the edges leaving that node changed. Nodes that are newer
+   * than this table are stale as well.
+   *
+   * @param reachability the reachability index of the graph from before the change
+   * @param changedId    the id of the node whose leaving edges changed
+   * @param changedGraph the graph after the change, which is either the same graph or a copy of
+   *                     it with the same node ids
+   * @return the table for the changed graph
+   */
+  public EccentricityTable withStale(ReachabilityIndex reachability, int changedId,
+      DijkstraGraph<?, ?> changedGraph) {
+    int bound = Math.max(changedGraph.getNodeIdBound(), farthestIds.length);
+    int[] newFarthestIds = Arrays.copyOf(farthestIds, bound);
+    double[] newEccentricities = Arrays.copyOf(eccentricities, bound);
+    Arrays.fill(newFarthestIds, farthestIds.length, bound, -1);
+    int newStaleCount = staleCount + bound - farthestIds.length;
+    for (int id = 0; id < farthestIds.length; id++) {
+      if (newFarthestIds[id] != -1 && reachability.mayReach(id, changedId)) {
+        newFarthestIds[id] = -1;
+        newStaleCount++;
+      }
+    }
+    return new EccentricityTable(changedGraph, newFarthestIds, newEccentricities, newStaleCount,
+        changedGraph.getModificationCount());
+  }
+
+  /**
+   * Searches again from every node whose entry is stale, on pool. The graph must not be modified
+   * while the table is refreshed.
+   *
+   * @param graph the graph this table is current for
+   * @param pool  runs the searches
+   * @return the refreshed table, or null if graph was modified since this table was made
+   */
+  public <NodeType> EccentricityTable refresh(DijkstraGraph<NodeType, ?> graph,
+      ForkJoinPool pool) {
+    return refresh(graph, graph.freeze(), graph.getAllLocations(), pool);
+  }
+
+  /**
+   * Searches again from every node whose entry is stale, in a snapshot of graph on pool. Only
+   * the snapshot is searched, so graph may be modified meanwhile.
+   *
+   * @param graph     the graph this table was made for
+   * @param snapshot  the version of graph to search
+   * @param locations the graph's locations in the order of getAllLocations when snapshot was
+   *                  taken, which breaks ties between farthest nodes
+   * @param pool      runs the searches
+   * @return the refreshed table, or null if the snapshot is of a different version than this table
+   */
+  public <NodeType> EccentricityTable refresh(DijkstraGraph<NodeType, ?> graph,
+      FrozenGraph<NodeType> snapshot, List<NodeType> locations, ForkJoinPool pool) {
+    if (snapshot.getGraphVersion() != graphVersion) {
+      return null;
+    }
+    boolean[] stale = new boolean[farthestIds.length];
+    for (int id = 0; id < farthestIds.length; id++) {
+      stale[id] = farthestIds[id] == -1;
+    }
+    return recompute(graph, snapshot, locations, pool, stale);
+  }
+
+  /**
+   * @return a copy of this table in which the entries marked in stale are computed again from
+   *         snapshot, which is never modified, so the result describes the snapshot's version
+   */
+  private <NodeType> EccentricityTable recompute(DijkstraGraph<NodeType, ?> graph,
+      FrozenGraph<NodeType> snapshot, List<NodeType> locations, ForkJoinPool pool,
+      boolean[] stale) {
+    int[] locationIds = new int[locations.size()];
+    for (int i = 0; i < locationIds.length; i++) {
+      locationIds[i] = snapshot.getId(locations.get(i));
+    }
+
+    // nodes that are newer than the table are stale too
+    int bound = snapshot.getNodeIdBound();
+    int[] newFarthestIds = Arrays.copyOf(farthestIds, bound);
+    double[] newEccentricities = Arrays.copyOf(eccentricities, bound);
+    boolean[] recomputed = Arrays.copyOf(stale, bound);
+    Arrays.fill(recomputed, Math.min(stale.length, bound), bound, true);
+    List<ForkJoinTask<?>> searches = new ArrayList<>();
+    for (int id = 0; id < bound; id++) {
+      if (recomputed[id] && snapshot.getData(id) != null) {
+        final int source = id;
+        searches.add(pool.submit(() -> {
+          SearchWorkspace workspace = graph.getWorkspace();
+          graph.runSearch(workspace, snapshot, source, -1, false);
+          int farthest = -1;
+          for (int location : locationIds) {
+            if (workspace.isSettled(location)
+                && (farthest == -1 || workspace.dist[location] > workspace.dist[farthest])) {
+              farthest = location;
+            }
+          }
+          newFarthestIds[source] = farthest;
+          newEccentricities[source] = workspace.dist[farthest];
+        }));
+      }
+    }
+    for (ForkJoinTask<?> search : searches) {
+      search.join();
+    }
+    int newStaleCount = 0;
+    for (int id = 0; id < bound; id++) {
+      if (recomputed[id] && snapshot.getData(id) == null) {
+        newFarthestIds[id] = -1;
+      }
+      if (newFarthestIds[id] == -1 && snapshot.getData(id) != null) {
+        newStaleCount++;
+      }
+    }
+    return new EccentricityTable(graph, newFarthestIds, newEccentricities, newStaleCount,
+        snapshot.getGraphVersion());
+  }
+
+  /**
+   * @param graph the graph to check
+   * @return true if this table was computed for graph and describes its current version
+   */
+  public boolean isCurrent(DijkstraGraph<?, ?> graph) {
+    return graph == this.graph && graphVersion == graph.getModificationCount();
+  }
+
+  /**
+   * @param graph    the graph to check
+   * @param snapshot a snapshot of graph
+   * @return true if this table was computed for graph and describes the snapshot's version
+   */
+  public boolean isCurrent(DijkstraGraph<?, ?> graph, FrozenGraph<?> snapshot) {
+    return graph == this.graph && graphVersion == snapshot.getGraphVersion();
+  }
+
+  /**
+   * @param id the id of a node
+   * @return the id of the node's farthest node, or -1 if the entry is stale or no node has this
+   *         id
+   */
+  public int getFarthestId(int id) {
+    return id < farthestIds.length ? farthestIds[id] : -1;
+  }
+
+  /**
+   * @param id the id of a node whose entry is not stale
+   * @return the cost of the shortest path from the node to its farthest node
+   */
+  public double getEccentricity(int id) {
+    return eccentricities[id];
+  }
+
+  /**
+   * @return the number of nodes whose entries are stale
+   */
+  public int getStaleCount() {
+    return staleCount;
+  }
+
+  /**
+   * @return the modification count of the graph that this table describes
+   */
+  public long getGraphVersion() {
+    return graphVersion;
+  }
+}
@@ -12,6 +12,9 @@ import javafx.scene.layout.VBox;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeoutException;
+import javafx.application.Platform;
 import javafx.scene.control.Alert;
 
 
@@ -24,6 +27,9 @@ public class Frontend extends Application implements FrontendInterface {
     private static Backend back; // backend object
     private boolean hideTimes = true; // boolean to hide travel times
     private VBox pathListDisplay;
+    // the longest time a query may take before it is stopped and reported as too slow
+    private static final long QUERY_TIMEOUT_MILLIS = 10_000;
+    private CompletableFuture<RouteResult<String>> pendingRoute = null; // the latest route query
 
     /**
      * Sets the backend object.
@@ -104,20 +110,32 @@ public class Frontend extends Application implements FrontendInterface {
         find.setOnAction(actionEvent -> {
         String start = srcBox.getText();
         String end = dstBox.getText();
+        // The search runs in the background, so that a long one never freezes the window; a
+        // search that is still running for an earlier click is no longer needed
+        if (pendingRoute != null) {
+          pendingRoute.cancel(true);
+        }
+        CompletableFuture<RouteResult<String>> route =
+            back.findRouteAsync(start, end, QUERY_TIMEOUT_MILLIS);
+        pendingRoute = route;
+        route.whenComplete((result, failure) -> Platform.runLater(() -> {
+        if (route.isCancelled()) {
+          return;
+        }
         // Clear previous path and time labels
         parent.getChildren().removeIf(node -> node instanceof Label && (node.getId().equals("path") || node.getId().equals("times")));
 
-        // Display path
-        Label path = new Label(back.findShortestPath(start, end).toString());
+        // Display path, or why there is none
+        Label path = new Label(result != null ? result.getNodes().toString()
+            : describeFailure(failure));
         path.setId("path");
         path.setLayoutX(32);
         path.setLayoutY(152);
         parent.getChildren().add(path);
 
         // Optionally calculate and display travel times in minutes
-        if (!hideTimes) {
-          List<Double> timesList = back.getTravelTimesOnPath(start, end); // Assuming this returns a List of times in seconds
-          double totalSeconds = timesList.stream().mapToDouble(Double::doubleValue).sum();
+        if (!hideTimes && result != null) {
+          double totalSeconds = result.getTotalCost();
           double totalMinutes = totalSeconds / 60.0; // Convert seconds to minutes
 
           // Format the total minutes to two decimal places
@@ -129,9 +147,23 @@ public class Frontend extends Application implements FrontendInterface {
           times.setLayoutY(200);
           parent.getChildren().add(times);
       }
+        }));
          });
     }
 
+    /**
+     * Describes why a background query failed, for display in a label.
+     *
+     * @param failure the exception the query's future failed with
+     * @return the message to display
+     */
+    private static String describeFailure(Throwable failure) {
+        if (failure instanceof TimeoutException) {
+            return "The search took too long";
+        }
+        return failure.getMessage();
+    }
+
     /**
      * Creates the path list display.
      * 
@@ -192,12 +224,14 @@ public class Frontend extends Application implements FrontendInterface {
        parent.getChildren().add(furthestFromLabel);
 
        findFurthest.setOnAction(actionEvent -> {
-        try {
-            String mostDistantLocation = back.getMostDistantLocation(furthestBox.getText());
+        back.getMostDistantLocationAsync(furthestBox.getText(), QUERY_TIMEOUT_MILLIS)
+            .whenComplete((mostDistantLocation, failure) -> Platform.runLater(() -> {
+          if (failure == null) {
             furthestFromLabel.setText("Most Distant Location: " + mostDistantLocation);
-        } catch (NoSuchElementException e) {
-            furthestFromLabel.setText(e.getMessage());
-        }
+          } else {
+            furthestFromLabel.setText(describeFailure(failure));
+          }
+        }));
       });
      }
     /**
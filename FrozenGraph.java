@@ -0,0 +1,169 @@
+import java.util.NoSuchElementException;
+
+/**
+ * A FrozenGraph is an immutable snapshot of the nodes and edges of a BaseGraph, compiled into
+ * compressed sparse row (CSR) form. The edges leaving each node are stored next to each other in
+ * two parallel arrays, one with the ids of their successors and one with their weights, and an
+ * offsets array records where each node's edges begin. The edges entering each node are stored
+ * the same way. Searches can then walk a node's edges by scanning consecutive array entries,
+ * instead of following references from nodes to linked lists to edges to boxed weights.
+ *
+ * Node ids are the same as in the graph the snapshot was taken from, so arrays indexed by those
+ * ids work with both. Ids that no node had at that time have no data and no edges.
+ */
+public class FrozenGraph<NodeType> {
+  private final int[] forwardOffsets; // edges leaving node id are at forwardOffsets[id] ..
+  private final int[] forwardTargets; // .. forwardOffsets[id + 1] - 1 in these two arrays
+  private final double[] forwardWeights;
+  private final int[] reverseOffsets; // edges entering node id, stored in the same way
+  private final int[] reverseSources;
+  private final double[] reverseWeights;
+  private final Object[] dataById;
+  private final MapADT<NodeType, Integer> idsByData;
+  private final int nodeCount;
+  private final long graphVersion;
+
+  /**
+   * Creates a snapshot from arrays that were already laid out in CSR form. BaseGraph.freeze is the
+   * usual way to create a snapshot.
+   */
+  protected FrozenGraph(int[] forwardOffsets, int[] forwardTargets, double[] forwardWeights,
+      int[] reverseOffsets, int[] reverseSources, double[] reverseWeights, Object[] dataById,
+      MapADT<NodeType, Integer> idsByData, int nodeCount, long graphVersion) {
+    this.forwardOffsets = forwardOffsets;
+    this.forwardTargets = forwardTargets;
+    this.forwardWeights = forwardWeights;
+    this.reverseOffsets = reverseOffsets;
+    this.reverseSources = reverseSources;
+    this.reverseWeights = reverseWeights;
+    this.dataById = dataById;
+    this.idsByData = idsByData;
+    this.nodeCount = nodeCount;
+    this.graphVersion = graphVersion;
+  }
+
+  /**
+   * @return one more than the largest node id in this snapshot
+   */
+  public int getNodeIdBound() {
+    return dataById.length;
+  }
+
+  /**
+   * @return the number of nodes in this snapshot
+   */
+  public int getNodeCount() {
+    return nodeCount;
+  }
+
+  /**
+   * @return the number of edges in this snapshot
+   */
+  public int getEdgeCount() {
+    return forwardTargets.length;
+  }
+
+  /**
+   * @return the modification count of the graph at the time this snapshot was taken
+   */
+  public long getGraphVersion() {
+    return graphVersion;
+  }
+
+  /**
+   * Checks whether a node with the provided data is in this snapshot.
+   *
+   * @param data the node contents to check for
+   * @return true if a node holds that data, false otherwise
+   */
+  public boolean containsNode(NodeType data) {
+    return idsByData.containsKey(data);
+  }
+
+  /**
+   * Returns the id of the node with the provided data.
+   *
+   * @param data the node contents to look up
+   * @return the node's id
+   * @throws NoSuchElementException if no node holds that data
+   */
+  public int getId(NodeType data) {
+    return idsByData.get(data);
+  }
+
+  /**
+   * Returns the data of the node with the provided id.
+   *
+   * @param id the id of a node
+   * @return the node's data, or null if no node had this id
+   */
+  @SuppressWarnings("unchecked")
+  public NodeType getData(int id) {
+    return (NodeType) dataById[id];
+  }
+
+  /**
+   * @param id the id of a node
+   * @return the index in getForwardTargets and getForwardWeights of the first edge leaving it;
+   *         the edges leaving it end just before the value for id + 1
+   */
+  public int forwardStart(int id) {
+    return forwardOffsets[id];
+  }
+
+  /**
+   * @param id the id of a node
+   * @return the index just past the last edge leaving that node
+   */
+  public int forwardEnd(int id) {
+    return forwardOffsets[id + 1];
+  }
+
+  /**
+   * @param id the id of a node
+   * @return the index in getReverseSources and getReverseWeights of the first edge entering it
+   */
+  public int reverseStart(int id) {
+    return reverseOffsets[id];
+  }
+
+  /**
+   * @param id the id of a node
+   * @return the index just past the last edge entering that node
+   */
+  public int reverseEnd(int id) {
+    return reverseOffsets[id + 1];
+  }
+
+  /**
+   * @return the successor ids of all edges, grouped by the node they leave; the array is shared
+   *         and must not be modified
+   */
+  public int[] getForwardTargets() {
+    return forwardTargets;
+  }
+
+  /**
+   * @return the weights of all edges, in the same order as getForwardTargets; the array is shared
+   *         and must not be modified
+   */
+  public double[] getForwardWeights() {
+    return forwardWeights;
+  }
+
+  /**
+   * @return the predecessor ids of all edges, grouped by the node they enter; the array is shared
+   *         and must not be modified
+   */
+  public int[] getReverseSources() {
+    return reverseSources;
+  }
+
+  /**
+   * @return the weights of all edges, in the same order as getReverseSources; the array is shared
+   *         and must not be modified
+   */
+  public double[] getReverseWeights() {
+    return reverseWeights;
+  }
+}
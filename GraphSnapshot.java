@@ -0,0 +1,291 @@
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Reads and writes graphs in a binary snapshot format, so that a graph that was loaded from a
+ * .dot file once can later be restored without parsing any text. A snapshot file consists of a
+ * fixed size header followed by a payload of four sections, each aligned to 8 bytes:
+ *
+ *   header   magic "GSNP", format version, flags, node count, edge count, landmark count,
+ *            size and last modified time of the .dot file the graph was loaded from, payload
+ *            length and CRC32 checksum of the payload
+ *   names    node count + 1 byte offsets into the UTF-8 bytes of all node names, in the order
+ *            getAllLocations returns them; a node's snapshot index is its position in this order
+ *   edges    node count + 1 offsets, then the successor index of every edge grouped by the node
+ *            it leaves (in CSR form), then the weights of the edges in the same order
+ *   landmarks (optional) the snapshot index of each landmark, then for each landmark the cost of
+ *            the paths from it to every node and from every node to it
+ *
+ * The file is memory mapped when read, and the checksum and structure are verified before
+ * anything is inserted into the graph. Snapshots are written to a temporary file that then
+ * replaces the target, so readers never see a partly written snapshot.
+ */
+public class GraphSnapshot {
+  private static final int MAGIC = 0x47534e50; // "GSNP"
+  private static final int FORMAT_VERSION = 1;
+  private static final int FLAG_LANDMARKS = 1;
+  private static final int HEADER_SIZE = 56;
+
+  /**
+   * Writes the nodes, edges and any up to date landmarks of graph to a snapshot file.
+   *
+   * @param graph      the graph to write
+   * @param path       the snapshot file to write
+   * @param sourceSize the size of the .dot file the graph was loaded from
+   * @param sourceTime the last modified time of that file, in milliseconds
+   * @throws IOException if the file could not be written
+   */
+  public static void write(DijkstraGraph<String, Double> graph, Path path, long sourceSize,
+      long sourceTime) throws IOException {
+    FrozenGraph<String> frozen = graph.freeze();
+    List<String> names = graph.getAllLocations();
+    int nodeCount = names.size();
+    int[] ids = new int[nodeCount];
+    int[] indexById = new int[frozen.getNodeIdBound()];
+    byte[][] nameBytes = new byte[nodeCount][];
+    long nameLength = 0;
+    for (int i = 0; i < nodeCount; i++) {
+      ids[i] = frozen.getId(names.get(i));
+      indexById[ids[i]] = i;
+      nameBytes[i] = names.get(i).getBytes(StandardCharsets.UTF_8);
+      nameLength += nameBytes[i].length;
+    }
+    int edgeCount = frozen.getEdgeCount();
+    LandmarkIndex landmarks = graph.getLandmarks();
+    int landmarkCount = landmarks == null ? 0 : landmarks.getLandmarkCount();
+
+    long payloadLength = align(4L * (nodeCount + 1) + nameLength)
+        + align(4L * (nodeCount + 1) + 4L * edgeCount) + 8L * edgeCount
+        + align(4L * landmarkCount) + 16L * landmarkCount * nodeCount;
+    if (HEADER_SIZE + payloadLength > Integer.MAX_VALUE)
+      throw new IOException("Graph is too large for a snapshot");
+    ByteBuffer buffer = ByteBuffer.allocate((int) (HEADER_SIZE + payloadLength));
+
+    buffer.position(HEADER_SIZE);
+    int nameOffset = 0;
+    for (int i = 0; i < nodeCount; i++) {
+      buffer.putInt(nameOffset);
+      nameOffset += nameBytes[i].length;
+    }
+    buffer.putInt(nameOffset);
+    for (byte[] name : nameBytes) {
+      buffer.put(name);
+    }
+    pad(buffer);
+
+    int edgeOffset = 0;
+    for (int i = 0; i < nodeCount; i++) {
+      buffer.putInt(edgeOffset);
+      edgeOffset += frozen.forwardEnd(ids[i]) - frozen.forwardStart(ids[i]);
+    }
+    buffer.putInt(edgeOffset);
+    int[] targets = frozen.getForwardTargets();
+    double[] weights = frozen.getForwardWeights();
+    for (int i = 0; i < nodeCount; i++) {
+      for (int edge = frozen.forwardStart(ids[i]); edge < frozen.forwardEnd(ids[i]); edge++) {
+        buffer.putInt(indexById[targets[edge]]);
+      }
+    }
+    pad(buffer);
+    for (int i = 0; i < nodeCount; i++) {
+      for (int edge = frozen.forwardStart(ids[i]); edge < frozen.forwardEnd(ids[i]); edge++) {
+        buffer.putDouble(weights[edge]);
+      }
+    }
+
+    for (int l = 0; l < landmarkCount; l++) {
+      buffer.putInt(indexById[landmarks.getLandmarkId(l)]);
+    }
+    pad(buffer);
+    for (int l = 0; l < landmarkCount; l++) {
+      for (int i = 0; i < nodeCount; i++) {
+        buffer.putDouble(landmarks.getCostFrom(l, ids[i]));
+      }
+      for (int i = 0; i < nodeCount; i++) {
+        buffer.putDouble(landmarks.getCostTo(l, ids[i]));
+      }
+    }
+
+    CRC32 crc = new CRC32();
+    crc.update(buffer.array(), HEADER_SIZE, (int) payloadLength);
+    buffer.position(0);
+    buffer.putInt(MAGIC);
+    buffer.putInt(FORMAT_VERSION);
+    buffer.putInt(landmarkCount > 0 ? FLAG_LANDMARKS : 0);
+    buffer.putInt(nodeCount);
+    buffer.putInt(edgeCount);
+    buffer.putInt(landmarkCount);
+    buffer.putLong(sourceSize);
+    buffer.putLong(sourceTime);
+    buffer.putLong(payloadLength);
+    buffer.putLong(crc.getValue());
+    buffer.position(0);
+
+    Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+    try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+    }
+    Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING,
+        StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /**
+   * Checks whether the snapshot file at path was written for a .dot file with the provided size
+   * and last modified time, without reading more than its header.
+   *
+   * @param path       the snapshot file
+   * @param sourceSize the current size of the .dot file
+   * @param sourceTime the current last modified time of the .dot file, in milliseconds
+   * @return true if the snapshot exists, has the current format and matches the .dot file
+   */
+  public static boolean isCurrent(Path path, long sourceSize, long sourceTime) {
+    if (!Files.isRegularFile(path))
+      return false;
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+      while (header.hasRemaining() && channel.read(header) >= 0)
+        ;
+      header.flip();
+      return header.remaining() == HEADER_SIZE && header.getInt(0) == MAGIC
+          && header.getInt(4) == FORMAT_VERSION && header.getLong(24) == sourceSize
+          && header.getLong(32) == sourceTime;
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Reads a snapshot into graph. Nodes that are already in the graph are reused, and edges that
+   * already exist have their weight updated. Landmarks stored in the snapshot are only used when
+   * graph was empty, since they describe the snapshot's graph alone.
+   *
+   * @param path  the snapshot file to read
+   * @param graph the graph to add the snapshot's nodes and edges to
+   * @throws IOException if the file could not be read, or is not an intact snapshot
+   */
+  public static void read(Path path, DijkstraGraph<String, Double> graph) throws IOException {
+    boolean wasEmpty = graph.getNodeCount() == 0;
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      long size = channel.size();
+      if (size < HEADER_SIZE || size > Integer.MAX_VALUE)
+        throw new IOException("Not a graph snapshot: " + path);
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+      if (buffer.getInt(0) != MAGIC)
+        throw new IOException("Not a graph snapshot: " + path);
+      if (buffer.getInt(4) != FORMAT_VERSION)
+        throw new IOException("Unsupported snapshot version " + buffer.getInt(4) + ": " + path);
+      int nodeCount = buffer.getInt(12);
+      int edgeCount = buffer.getInt(16);
+      int landmarkCount = buffer.getInt(20);
+      long payloadLength = buffer.getLong(40);
+      if (nodeCount < 0 || edgeCount < 0 || landmarkCount < 0
+          || HEADER_SIZE + payloadLength != size)
+        throw new IOException("Truncated graph snapshot: " + path);
+      CRC32 crc = new CRC32();
+      crc.update(buffer.slice(HEADER_SIZE, (int) payloadLength));
+      if (crc.getValue() != buffer.getLong(48))
+        throw new IOException("Corrupt graph snapshot (checksum mismatch): " + path);
+
+      // everything is decoded and checked before the graph is touched, so that a malformed
+      // snapshot leaves the graph unchanged
+      buffer.position(HEADER_SIZE);
+      int[] nameOffsets = new int[nodeCount + 1];
+      buffer.asIntBuffer().get(nameOffsets);
+      int namesStart = HEADER_SIZE + 4 * (nodeCount + 1);
+      String[] names = new String[nodeCount];
+      byte[] name = new byte[64];
+      for (int i = 0; i < nodeCount; i++) {
+        int length = nameOffsets[i + 1] - nameOffsets[i];
+        if (length > name.length)
+          name = new byte[Math.max(length, name.length * 2)];
+        buffer.get(namesStart + nameOffsets[i], name, 0, length);
+        names[i] = new String(name, 0, length, StandardCharsets.UTF_8);
+      }
+
+      int edgesStart = (int) align(namesStart + (long) nameOffsets[nodeCount]);
+      int[] edgeOffsets = new int[nodeCount + 1];
+      int[] targets = new int[edgeCount];
+      buffer.position(edgesStart);
+      buffer.asIntBuffer().get(edgeOffsets).get(targets);
+      int weightsStart = (int) align(edgesStart + 4L * (nodeCount + 1) + 4L * edgeCount);
+      double[] weights = new double[edgeCount];
+      buffer.position(weightsStart);
+      buffer.asDoubleBuffer().get(weights);
+      if (edgeOffsets[0] != 0 || edgeOffsets[nodeCount] != edgeCount)
+        throw new IOException("Malformed graph snapshot: " + path);
+      for (int i = 0; i < nodeCount; i++) {
+        if (edgeOffsets[i] > edgeOffsets[i + 1])
+          throw new IOException("Malformed graph snapshot: " + path);
+      }
+      for (int target : targets) {
+        if (target < 0 || target >= nodeCount)
+          throw new IOException("Malformed graph snapshot: " + path);
+      }
+
+      int landmarksStart = weightsStart + 8 * edgeCount;
+      int[] landmarkIndices = new int[landmarkCount];
+      buffer.position(landmarksStart);
+      buffer.asIntBuffer().get(landmarkIndices);
+      for (int index : landmarkIndices) {
+        if (index < 0 || index >= nodeCount)
+          throw new IOException("Malformed graph snapshot: " + path);
+      }
+      double[][] landmarkCosts = new double[2 * landmarkCount][nodeCount]; // from, to, from, ..
+      buffer.position((int) align(landmarksStart + 4L * landmarkCount));
+      for (double[] costs : landmarkCosts) {
+        buffer.asDoubleBuffer().get(costs);
+        buffer.position(buffer.position() + 8 * nodeCount);
+      }
+
+      int[] ids = new int[nodeCount];
+      for (int i = 0; i < nodeCount; i++) {
+        ids[i] = graph.getOrInsertNode(names[i]);
+      }
+      for (int i = 0; i < nodeCount; i++) {
+        for (int edge = edgeOffsets[i]; edge < edgeOffsets[i + 1]; edge++) {
+          graph.insertEdgeById(ids[i], ids[targets[edge]], weights[edge]);
+        }
+      }
+      if (landmarkCount > 0 && wasEmpty) {
+        int bound = graph.getNodeIdBound();
+        int[] landmarkIds = new int[landmarkCount];
+        double[][] fromLandmark = new double[landmarkCount][bound];
+        double[][] toLandmark = new double[landmarkCount][bound];
+        for (int l = 0; l < landmarkCount; l++) {
+          landmarkIds[l] = ids[landmarkIndices[l]];
+          for (int i = 0; i < nodeCount; i++) {
+            fromLandmark[l][ids[i]] = landmarkCosts[2 * l][i];
+            toLandmark[l][ids[i]] = landmarkCosts[2 * l + 1][i];
+          }
+        }
+        graph.useLandmarks(LandmarkIndex.fromTables(landmarkIds, fromLandmark, toLandmark,
+            graph.getModificationCount()));
+      }
+    } catch (IndexOutOfBoundsException | IllegalArgumentException | BufferUnderflowException e) {
+      throw new IOException("Malformed graph snapshot: " + path, e);
+    }
+  }
+
+  private static long align(long length) {
+    return (length + 7) & ~7L;
+  }
+
+  private static void pad(ByteBuffer buffer) {
+    while ((buffer.position() & 7) != 0) {
+      buffer.put((byte) 0);
+    }
+  }
+}
@@ -11,12 +11,33 @@ import org.junit.jupiter.api.Assertions;
 /**
  * HashtableMap class implements the MapADT interface using an array of linked lists for handling
  * collisions through chaining.
+ *
+ * When the load factor is exceeded the table doubles in size. By default all entries are moved
+ * into the larger table at once. With incremental resizing enabled, the old table is instead kept
+ * next to the new one and its buckets are migrated a few at a time by later operations, so that
+ * no single put pays for moving the whole table.
+ *
+ * Incremental resizing is opt-in, and none of the maps inside the graph classes enable it: while
+ * a migration is in progress, get and containsKey move buckets too, so such a map cannot be read
+ * by several threads at once, as FrozenGraph's id map and BaseGraph's successor indexes are. Those
+ * maps do not need it either: the id map is sized for all of its entries up front, and a successor
+ * index only holds the edges leaving one node. Use it for maps that only one thread uses and that
+ * grow large one put at a time.
  */
 public class HashtableMap<KeyType, ValueType> implements MapADT<KeyType, ValueType> {
   protected LinkedList<Pair>[] table;
   private int size;
   private static final int DEFAULT_CAPACITY = 64;
   private static final double LOAD_FACTOR_THRESHOLD = 0.8;
+  // old buckets migrated per operation while an incremental resize is in progress; this must be
+  // more than one, so that migration finishes before the larger table needs to grow again
+  private static final int MIGRATION_STEPS = 4;
+
+  private boolean incrementalResize = false;
+  // the table being migrated away from, or null when no incremental resize is in progress
+  private LinkedList<Pair>[] oldTable = null;
+  // buckets of oldTable below this index have already been migrated
+  private int migrateIndex = 0;
 
   protected class Pair {
     KeyType key;
@@ -41,11 +62,23 @@ public class HashtableMap<KeyType, ValueType> implements MapADT<KeyType, ValueTy
     this(DEFAULT_CAPACITY);
   }
 
+  /**
+   * Selects whether later resizes migrate buckets incrementally across operations, instead of
+   * all at once. A resize that is already in progress is completed by later operations either
+   * way. While one is in progress every operation modifies the map, including get and
+   * containsKey, so only enable this for a map that a single thread uses.
+   *
+   * @param incrementalResize true to spread resizing across later operations
+   */
+  public void setIncrementalResize(boolean incrementalResize) {
+    this.incrementalResize = incrementalResize;
+  }
+
   @Override
   public void put(KeyType key, ValueType value) {
     if (key == null)
       throw new NullPointerException("Key cannot be null.");
-    int index = getIndex(key);
+    int index = prepareBucket(key);
     for (Pair pair : table[index]) {
       if (pair.key.equals(key))
         throw new IllegalArgumentException("Duplicate key.");
@@ -59,7 +92,7 @@ public class HashtableMap<KeyType, ValueType> implements MapADT<KeyType, ValueTy
 
   @Override
   public boolean containsKey(KeyType key) {
-    int index = getIndex(key);
+    int index = prepareBucket(key);
     for (Pair pair : table[index]) {
       if (pair.key.equals(key))
         return true;
@@ -69,7 +102,7 @@ public class HashtableMap<KeyType, ValueType> implements MapADT<KeyType, ValueTy
 
   @Override
   public ValueType get(KeyType key) {
-    int index = getIndex(key);
+    int index = prepareBucket(key);
     for (Pair pair : table[index]) {
       if (pair.key.equals(key))
         return pair.value;
@@ -79,7 +112,7 @@ public class HashtableMap<KeyType, ValueType> implements MapADT<KeyType, ValueTy
 
   @Override
   public ValueType remove(KeyType key) {
-    int index = getIndex(key);
+    int index = prepareBucket(key);
     LinkedList<Pair> bucket = table[index];
     for (Pair pair : bucket) {
       if (pair.key.equals(key)) {
@@ -93,9 +126,14 @@ public class HashtableMap<KeyType, ValueType> implements MapADT<KeyType, ValueTy
 
   @Override
   public void clear() {
-    for (LinkedList<Pair> bucket : table) {
-      bucket.clear();
+    for (int i = 0; i < table.length; i++) {
+      if (table[i] == null) {
+        table[i] = new LinkedList<>();
+      } else {
+        table[i].clear();
+      }
     }
+    oldTable = null;
     size = 0;
   }
 
@@ -109,21 +147,69 @@ public class HashtableMap<KeyType, ValueType> implements MapADT<KeyType, ValueTy
     return table.length;
   }
 
-  private int getIndex(KeyType key) {
-    return Math.abs(key.hashCode()) % table.length;
+  private static int getIndex(Object key, int length) {
+    return (key.hashCode() & 0x7fffffff) % length;
+  }
+
+  /**
+   * Advances an incremental resize that is in progress, and makes sure that the bucket of the new
+   * table that key belongs in has been migrated.
+   *
+   * @return the index of the bucket in table that key belongs in
+   */
+  private int prepareBucket(KeyType key) {
+    if (oldTable != null) {
+      migrateBucket(getIndex(key, oldTable.length));
+      for (int i = 0; i < MIGRATION_STEPS && oldTable != null; i++) {
+        migrateBucket(migrateIndex);
+      }
+    }
+    return getIndex(key, table.length);
+  }
+
+  /**
+   * Moves the entries of one bucket of oldTable into the new table. Since the new table is twice
+   * as long, the entries of old bucket i can only land in new buckets i and i + oldTable.length,
+   * and those two buckets are created here.
+   */
+  private void migrateBucket(int index) {
+    LinkedList<Pair> bucket = oldTable[index];
+    if (bucket == null)
+      return; // already migrated out of order
+    oldTable[index] = null;
+    table[index] = new LinkedList<>();
+    table[index + oldTable.length] = new LinkedList<>();
+    for (Pair pair : bucket) {
+      table[getIndex(pair.key, table.length)].addFirst(pair);
+    }
+    while (migrateIndex < oldTable.length && oldTable[migrateIndex] == null) {
+      migrateIndex++;
+    }
+    if (migrateIndex == oldTable.length) {
+      oldTable = null;
+    }
   }
 
   @SuppressWarnings("unchecked")
   private void resize() {
-    LinkedList<Pair>[] oldTable = table;
-    table = (LinkedList<Pair>[]) new LinkedList[oldTable.length * 2];
+    while (oldTable != null) {
+      migrateBucket(migrateIndex);
+    }
+    LinkedList<Pair>[] previous = table;
+    table = (LinkedList<Pair>[]) new LinkedList[previous.length * 2];
+    if (incrementalResize) {
+      // buckets of the new table stay null until their old bucket is migrated
+      oldTable = previous;
+      migrateIndex = 0;
+      return;
+    }
     for (int i = 0; i < table.length; i++) {
       table[i] = new LinkedList<>();
     }
-    size = 0; // Reset size to correctly add elements without duplication
-    for (LinkedList<Pair> bucket : oldTable) {
+    // every key is known to be unique, so pairs move straight to their new buckets
+    for (LinkedList<Pair> bucket : previous) {
       for (Pair pair : bucket) {
-        put(pair.key, pair.value); // rehash
+        table[getIndex(pair.key, table.length)].addFirst(pair);
       }
     }
   }
@@ -188,4 +274,48 @@ public class HashtableMap<KeyType, ValueType> implements MapADT<KeyType, ValueTy
     Assertions.assertFalse(map.containsKey("key2"),
         "Map should not contain key 'key2' after clear.");
   }
+
+  /**
+   * Tests that every entry stays reachable, and that the size stays correct, while incremental
+   * resizes are in progress.
+   */
+  @Test
+  public void testIncrementalResize() {
+    HashtableMap<Integer, Integer> map = new HashtableMap<>(5);
+    map.setIncrementalResize(true);
+    for (int i = 0; i < 2000; i++) {
+      map.put(i, i * 2);
+      if ((i / 2) % 3 != 0) {
+        Assertions.assertTrue(map.containsKey(i / 2), "Earlier key should still be found.");
+      }
+      if (i % 3 == 0) {
+        Assertions.assertEquals(i * 2, map.remove(i));
+      }
+    }
+    Assertions.assertThrows(IllegalArgumentException.class, () -> map.put(1, 0));
+    int expectedSize = 0;
+    for (int i = 0; i < 2000; i++) {
+      if (i % 3 == 0) {
+        Assertions.assertFalse(map.containsKey(i), "Removed key should not be found.");
+      } else {
+        Assertions.assertEquals(i * 2, map.get(i));
+        expectedSize++;
+      }
+    }
+    Assertions.assertEquals(expectedSize, map.getSize());
+    map.clear();
+    Assertions.assertEquals(0, map.getSize());
+    map.put(7, 7);
+    Assertions.assertEquals(7, map.get(7));
+  }
+
+  /**
+   * Tests that keys whose hash code is Integer.MIN_VALUE are stored in a valid bucket.
+   */
+  @Test
+  public void testMinValueHashCode() {
+    HashtableMap<Integer, Integer> map = new HashtableMap<>(3);
+    map.put(Integer.MIN_VALUE, 1);
+    Assertions.assertEquals(1, map.get(Integer.MIN_VALUE));
+  }
 }
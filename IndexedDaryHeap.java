@@ -0,0 +1,171 @@
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * This IndexedDaryHeap class is a d-ary min-heap of node ids keyed by cost, that also keeps the
+ * position of every queued node in the heap. That index lets insertOrDecrease lower the cost of a
+ * node that is already queued and sift it up in place (a true decrease-key), so each node is
+ * stored at most once and the heap never holds more entries than there are nodes. A larger arity
+ * makes the heap shallower, which trades a few more comparisons per level when polling for fewer
+ * levels and fewer cache misses on every operation.
+ */
+public class IndexedDaryHeap implements SearchQueueADT {
+  private static final int DEFAULT_ARITY = 4;
+
+  private final int arity;
+  private int[] heapIds; // node ids in heap order
+  private double[] heapCosts; // cost of the node at the same position in heapIds
+  private int[] positions; // position of each node id in heapIds, or -1 when not queued
+  private int size;
+  private long operationCount;
+  private long moveCount;
+  private int peakSize;
+
+  public IndexedDaryHeap(int arity) {
+    if (arity < 2)
+      throw new IllegalArgumentException("Heap arity must be at least 2.");
+    this.arity = arity;
+    heapIds = new int[16];
+    heapCosts = new double[16];
+    positions = new int[0];
+    size = 0;
+  }
+
+  public IndexedDaryHeap() {
+    this(DEFAULT_ARITY);
+  }
+
+  @Override
+  public void insertOrDecrease(int id, double cost) {
+    operationCount++;
+    int index = positions[id];
+    if (index == -1) {
+      if (size == heapIds.length) {
+        heapIds = Arrays.copyOf(heapIds, size * 2);
+        heapCosts = Arrays.copyOf(heapCosts, size * 2);
+      }
+      index = size++;
+      peakSize = Math.max(peakSize, size);
+    } else if (heapCosts[index] <= cost) {
+      return; // the queued cost is already as low
+    }
+    siftUp(index, id, cost);
+  }
+
+  @Override
+  public double peekCost() {
+    if (size == 0)
+      throw new NoSuchElementException("Heap is empty.");
+    return heapCosts[0];
+  }
+
+  @Override
+  public int poll() {
+    if (size == 0)
+      throw new NoSuchElementException("Heap is empty.");
+    operationCount++;
+    int minId = heapIds[0];
+    positions[minId] = -1;
+    size--;
+    if (size > 0) {
+      siftDown(0, heapIds[size], heapCosts[size]);
+    }
+    return minId;
+  }
+
+  /**
+   * Moves the provided entry up from index until its parent's cost is no higher.
+   */
+  private void siftUp(int index, int id, double cost) {
+    while (index > 0) {
+      int parent = (index - 1) / arity;
+      if (heapCosts[parent] <= cost)
+        break;
+      place(index, heapIds[parent], heapCosts[parent]);
+      index = parent;
+    }
+    place(index, id, cost);
+  }
+
+  /**
+   * Moves the provided entry down from index until none of its children has a lower cost.
+   */
+  private void siftDown(int index, int id, double cost) {
+    int firstChild;
+    while ((firstChild = index * arity + 1) < size) {
+      int lastChild = Math.min(firstChild + arity, size);
+      int minChild = firstChild;
+      for (int child = firstChild + 1; child < lastChild; child++) {
+        if (heapCosts[child] < heapCosts[minChild])
+          minChild = child;
+      }
+      if (cost <= heapCosts[minChild])
+        break;
+      place(index, heapIds[minChild], heapCosts[minChild]);
+      index = minChild;
+    }
+    place(index, id, cost);
+  }
+
+  private void place(int index, int id, double cost) {
+    heapIds[index] = id;
+    heapCosts[index] = cost;
+    positions[id] = index;
+    moveCount++;
+  }
+
+  /**
+   * Checks whether a node is currently queued.
+   * @param id the id of the node
+   * @return true if the node is in this heap, false otherwise
+   */
+  public boolean contains(int id) {
+    return id < positions.length && positions[id] != -1;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  @Override
+  public int getSize() {
+    return size;
+  }
+
+  @Override
+  public void clear(int capacity) {
+    // only the nodes still queued have a position to reset
+    for (int i = 0; i < size; i++) {
+      positions[heapIds[i]] = -1;
+    }
+    size = 0;
+    if (positions.length < capacity) {
+      int oldLength = positions.length;
+      positions = Arrays.copyOf(positions, Math.max(capacity, oldLength * 2));
+      Arrays.fill(positions, oldLength, positions.length, -1);
+    }
+  }
+
+  @Override
+  public long getOperationCount() {
+    return operationCount;
+  }
+
+  @Override
+  public long getMoveCount() {
+    return moveCount;
+  }
+
+  @Override
+  public int getPeakSize() {
+    return peakSize;
+  }
+
+  @Override
+  public void resetStatistics() {
+    operationCount = 0;
+    moveCount = 0;
+    peakSize = 0;
+  }
+}
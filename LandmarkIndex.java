@@ -0,0 +1,266 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A LandmarkIndex stores, for a few landmark nodes of one graph, the cost of the shortest path
+ * from each landmark to every node and from every node to each landmark. By the triangle
+ * inequality, these costs give a lower bound on the cost of the shortest path between any two
+ * nodes, without needing coordinates for the nodes. The ALT search strategy of DijkstraGraph uses
+ * those bounds to direct an A* search towards its destination.
+ *
+ * The tables are indexed by node id, and only describe the graph as it was when they were
+ * computed: getGraphVersion returns the graph's modification count at that time.
+ */
+public class LandmarkIndex {
+  private static final int FILE_MAGIC = 0x4c4d4b32; // "LMK2"
+
+  private int[] landmarkIds;
+  private double[][] fromLandmark; // [landmark][node id] cost of path from landmark to node
+  private double[][] toLandmark; // [landmark][node id] cost of path from node to landmark
+  private long graphVersion;
+
+  private LandmarkIndex(int[] landmarkIds, double[][] fromLandmark, double[][] toLandmark,
+      long graphVersion) {
+    this.landmarkIds = landmarkIds;
+    this.fromLandmark = fromLandmark;
+    this.toLandmark = toLandmark;
+    this.graphVersion = graphVersion;
+  }
+
+  /**
+   * Selects up to count landmarks with farthest-first selection and computes their distance
+   * tables. The first landmark is the node farthest from the lowest numbered node, and every
+   * further landmark is the node whose distance from the closest landmark chosen so far is the
+   * largest. Nodes that no chosen landmark can reach count as infinitely far, so that every part
+   * of a graph that is not strongly connected gets a landmark of its own when possible.
+   *
+   * @param graph the graph to compute landmarks for
+   * @param count the number of landmarks to select
+   * @return the landmark index for the graph's current nodes and edges
+   */
+  public static LandmarkIndex build(DijkstraGraph<?, ?> graph, int count) {
+    int bound = graph.getNodeIdBound();
+    count = Math.min(count, graph.getNodeCount());
+    int[] landmarkIds = new int[count];
+    double[][] fromLandmark = new double[count][];
+    double[][] toLandmark = new double[count][];
+    SearchWorkspace workspace = new SearchWorkspace();
+
+    // the closest landmark's distance to each node, starting from a search from the first node
+    double[] closest = new double[bound];
+    int firstId = 0;
+    while (firstId < bound && graph.getNodeById(firstId) == null) {
+      firstId++;
+    }
+    if (count > 0) {
+      closest = distances(graph, workspace, firstId, false);
+    }
+    for (int i = 0; i < count; i++) {
+      int landmark = -1;
+      for (int id = 0; id < bound; id++) {
+        if (graph.getNodeById(id) != null && (landmark == -1 || closest[id] > closest[landmark])) {
+          landmark = id;
+        }
+      }
+      landmarkIds[i] = landmark;
+      fromLandmark[i] = distances(graph, workspace, landmark, false);
+      toLandmark[i] = distances(graph, workspace, landmark, true);
+      for (int id = 0; id < bound; id++) {
+        closest[id] = i == 0 ? fromLandmark[i][id] : Math.min(closest[id], fromLandmark[i][id]);
+      }
+    }
+    return new LandmarkIndex(landmarkIds, fromLandmark, toLandmark,
+        graph.getModificationCount());
+  }
+
+  /**
+   * Computes the cost of the shortest paths between one node and every other node.
+   *
+   * @return costs indexed by node id, infinite for nodes that are not connected
+   */
+  private static double[] distances(DijkstraGraph<?, ?> graph, SearchWorkspace workspace,
+      int sourceId, boolean reverse) {
+    graph.runSearch(workspace, sourceId, -1, reverse);
+    double[] dist = new double[graph.getNodeIdBound()];
+    Arrays.fill(dist, Double.POSITIVE_INFINITY);
+    for (int i = 0; i < workspace.getSettledCount(); i++) {
+      int id = workspace.getSettledId(i);
+      dist[id] = workspace.dist[id];
+    }
+    return dist;
+  }
+
+  /**
+   * Returns a lower bound on the cost of the shortest path from one node to another. For every
+   * landmark L, the path from L to the end is no longer than the path from L to the node plus the
+   * path from the node to the end, and the path from the node to L is no longer than the path from
+   * the node to the end plus the path from the end to L. When the landmark costs show that the end
+   * cannot be reached from the node at all, the bound is infinite.
+   *
+   * @param id    the id of the node the path starts at
+   * @param endId the id of the node the path ends at
+   * @return a value no larger than the cost of the shortest path from id to endId
+   */
+  public double lowerBound(int id, int endId) {
+    double bound = 0;
+    for (int i = 0; i < landmarkIds.length; i++) {
+      double landmarkToEnd = fromLandmark[i][endId];
+      double landmarkToNode = fromLandmark[i][id];
+      if (landmarkToNode != Double.POSITIVE_INFINITY) {
+        if (landmarkToEnd == Double.POSITIVE_INFINITY) {
+          return Double.POSITIVE_INFINITY; // the landmark reaches the node but not the end
+        }
+        bound = Math.max(bound, landmarkToEnd - landmarkToNode);
+      }
+      double nodeToLandmark = toLandmark[i][id];
+      double endToLandmark = toLandmark[i][endId];
+      if (endToLandmark != Double.POSITIVE_INFINITY) {
+        if (nodeToLandmark == Double.POSITIVE_INFINITY) {
+          return Double.POSITIVE_INFINITY; // the end reaches the landmark but the node does not
+        }
+        bound = Math.max(bound, nodeToLandmark - endToLandmark);
+      }
+    }
+    return bound;
+  }
+
+  /**
+   * @return the modification count of the graph at the time these tables were computed
+   */
+  public long getGraphVersion() {
+    return graphVersion;
+  }
+
+  /**
+   * @return the number of landmarks in this index
+   */
+  public int getLandmarkCount() {
+    return landmarkIds.length;
+  }
+
+  /**
+   * @param landmark the position of a landmark in this index
+   * @return the node id of that landmark
+   */
+  int getLandmarkId(int landmark) {
+    return landmarkIds[landmark];
+  }
+
+  /**
+   * @return the cost of the shortest path from the landmark to the node with id
+   */
+  double getCostFrom(int landmark, int id) {
+    return fromLandmark[landmark][id];
+  }
+
+  /**
+   * @return the cost of the shortest path from the node with id to the landmark
+   */
+  double getCostTo(int landmark, int id) {
+    return toLandmark[landmark][id];
+  }
+
+  /**
+   * Creates an index from distance tables that were computed earlier, such as the ones stored in
+   * a GraphSnapshot.
+   */
+  static LandmarkIndex fromTables(int[] landmarkIds, double[][] fromLandmark,
+      double[][] toLandmark, long graphVersion) {
+    return new LandmarkIndex(landmarkIds, fromLandmark, toLandmark, graphVersion);
+  }
+
+  /**
+   * Writes this index to a file. Nodes are identified by the string form of their data rather
+   * than by id, and the file records the fingerprint of the graph's nodes and edges, so the file
+   * can only be loaded into a graph with the same nodes and edges, inserted in the same order.
+   *
+   * @param graph    the graph this index was computed for
+   * @param filename the path of the file to write
+   * @throws IOException if the file could not be written
+   */
+  public void save(DijkstraGraph<?, ?> graph, String filename) throws IOException {
+    int bound = graph.getNodeIdBound();
+    try (DataOutputStream out = new DataOutputStream(
+        new BufferedOutputStream(new FileOutputStream(filename)))) {
+      out.writeInt(FILE_MAGIC);
+      out.writeInt(landmarkIds.length);
+      out.writeInt(graph.getNodeCount());
+      out.writeLong(DistanceTable.fingerprint(graph.freeze()));
+      for (int id = 0; id < bound; id++) {
+        if (graph.getNodeById(id) == null)
+          continue;
+        out.writeUTF(graph.getNodeById(id).data.toString());
+        for (int i = 0; i < landmarkIds.length; i++) {
+          out.writeBoolean(landmarkIds[i] == id);
+          out.writeDouble(fromLandmark[i][id]);
+          out.writeDouble(toLandmark[i][id]);
+        }
+      }
+    }
+  }
+
+  /**
+   * Reads an index that was written by save, and matches its nodes to the nodes of the provided
+   * graph by the string form of their data. Tables for a graph with different edges or weights
+   * would give bounds that are too high, and so wrong routes, so they are rejected.
+   *
+   * @param graph    the graph to load the index for
+   * @param filename the path of the file to read
+   * @return the loaded index, which is treated as up to date for the graph's current version
+   * @throws IOException if the file could not be read or was not written for the graph's current
+   *                     nodes and edges
+   */
+  public static LandmarkIndex load(DijkstraGraph<?, ?> graph, String filename)
+      throws IOException {
+    FrozenGraph<?> snapshot = graph.freeze();
+    int bound = snapshot.getNodeIdBound();
+    HashtableMap<String, Integer> idsByName = new HashtableMap<>();
+    for (int id = 0; id < bound; id++) {
+      if (snapshot.getData(id) != null) {
+        idsByName.put(snapshot.getData(id).toString(), id);
+      }
+    }
+
+    try (DataInputStream in = new DataInputStream(
+        new BufferedInputStream(new FileInputStream(filename)))) {
+      if (in.readInt() != FILE_MAGIC) {
+        throw new IOException("Not a landmark file: " + filename);
+      }
+      int count = in.readInt();
+      int nodeCount = in.readInt();
+      if (nodeCount != snapshot.getNodeCount()) {
+        throw new IOException("Landmark file " + filename + " has " + nodeCount
+            + " nodes, but the graph has " + snapshot.getNodeCount());
+      }
+      if (in.readLong() != DistanceTable.fingerprint(snapshot)) {
+        throw new IOException("Landmark file " + filename
+            + " was written for a graph with different edges");
+      }
+      int[] landmarkIds = new int[count];
+      double[][] fromLandmark = new double[count][bound];
+      double[][] toLandmark = new double[count][bound];
+      for (int n = 0; n < nodeCount; n++) {
+        String name = in.readUTF();
+        if (!idsByName.containsKey(name)) {
+          throw new IOException("Landmark file " + filename + " has unknown node " + name);
+        }
+        int id = idsByName.get(name);
+        for (int i = 0; i < count; i++) {
+          if (in.readBoolean()) {
+            landmarkIds[i] = id;
+          }
+          fromLandmark[i][id] = in.readDouble();
+          toLandmark[i][id] = in.readDouble();
+        }
+      }
+      return new LandmarkIndex(landmarkIds, fromLandmark, toLandmark,
+          snapshot.getGraphVersion());
+    }
+  }
+}
@@ -0,0 +1,123 @@
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * This LazyBinaryHeap class is a binary min-heap of (node id, cost) entries that are stored in
+ * two parallel primitive arrays, so adding and removing entries never allocates objects. Like a
+ * java.util.PriorityQueue that is used with lazy deletion, it does not support lowering the cost
+ * of a queued node: insertOrDecrease adds another entry for the same node, and callers are
+ * expected to skip entries for nodes that they have already settled. The arrays grow as needed and
+ * are kept when the heap is cleared, so one heap can be reused across many searches.
+ */
+public class LazyBinaryHeap implements SearchQueueADT {
+  private int[] ids;
+  private double[] costs;
+  private int size;
+  private long operationCount;
+  private long moveCount;
+  private int peakSize;
+
+  public LazyBinaryHeap() {
+    ids = new int[16];
+    costs = new double[16];
+    size = 0;
+  }
+
+  @Override
+  public void insertOrDecrease(int id, double cost) {
+    operationCount++;
+    if (size == ids.length) {
+      ids = Arrays.copyOf(ids, size * 2);
+      costs = Arrays.copyOf(costs, size * 2);
+    }
+    // sift the new entry up from the end of the array
+    int index = size++;
+    while (index > 0) {
+      int parent = (index - 1) >>> 1;
+      if (costs[parent] <= cost)
+        break;
+      ids[index] = ids[parent];
+      costs[index] = costs[parent];
+      moveCount++;
+      index = parent;
+    }
+    ids[index] = id;
+    costs[index] = cost;
+    moveCount++;
+    peakSize = Math.max(peakSize, size);
+  }
+
+  @Override
+  public double peekCost() {
+    if (size == 0)
+      throw new NoSuchElementException("Heap is empty.");
+    return costs[0];
+  }
+
+  @Override
+  public int poll() {
+    if (size == 0)
+      throw new NoSuchElementException("Heap is empty.");
+    operationCount++;
+    int minId = ids[0];
+    size--;
+    if (size > 0) {
+      // sift the last entry down from the root
+      int id = ids[size];
+      double cost = costs[size];
+      int index = 0;
+      int child;
+      while ((child = 2 * index + 1) < size) {
+        if (child + 1 < size && costs[child + 1] < costs[child])
+          child++;
+        if (cost <= costs[child])
+          break;
+        ids[index] = ids[child];
+        costs[index] = costs[child];
+        moveCount++;
+        index = child;
+      }
+      ids[index] = id;
+      costs[index] = cost;
+      moveCount++;
+    }
+    return minId;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  @Override
+  public int getSize() {
+    return size;
+  }
+
+  @Override
+  public void clear(int capacity) {
+    size = 0;
+  }
+
+  @Override
+  public long getOperationCount() {
+    return operationCount;
+  }
+
+  @Override
+  public long getMoveCount() {
+    return moveCount;
+  }
+
+  @Override
+  public int getPeakSize() {
+    return peakSize;
+  }
+
+  @Override
+  public void resetStatistics() {
+    operationCount = 0;
+    moveCount = 0;
+    peakSize = 0;
+  }
+}
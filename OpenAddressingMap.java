@@ -0,0 +1,161 @@
+import java.util.NoSuchElementException;
+
+/**
+ * OpenAddressingMap class implements the MapADT interface with open addressing: keys, values and
+ * the hash codes of the keys are stored in three parallel arrays, and a key that collides with
+ * another is stored in the next free slot after its home slot (linear probing). Unlike
+ * HashtableMap, no bucket lists or per-entry objects are allocated, and cached hash codes let
+ * most mismatching slots be skipped without calling equals. Removals shift later entries of the
+ * same probe sequence back (backward shift deletion), so no tombstones are left behind.
+ */
+public class OpenAddressingMap<KeyType, ValueType> implements MapADT<KeyType, ValueType> {
+  private static final int DEFAULT_CAPACITY = 64;
+  private static final double LOAD_FACTOR_THRESHOLD = 0.7;
+
+  protected Object[] keys; // null marks an empty slot
+  protected Object[] values;
+  protected int[] hashes;
+  private int size;
+
+  public OpenAddressingMap(int capacity) {
+    // a power of two capacity lets the home slot be computed with a mask
+    int tableLength = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+    keys = new Object[tableLength];
+    values = new Object[tableLength];
+    hashes = new int[tableLength];
+    size = 0;
+  }
+
+  public OpenAddressingMap() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  @Override
+  public void put(KeyType key, ValueType value) {
+    if (key == null)
+      throw new NullPointerException("Key cannot be null.");
+    int hash = hash(key);
+    int index = findSlot(key, hash);
+    if (keys[index] != null)
+      throw new IllegalArgumentException("Duplicate key.");
+    keys[index] = key;
+    values[index] = value;
+    hashes[index] = hash;
+    size++;
+    if (size >= LOAD_FACTOR_THRESHOLD * keys.length) {
+      resize();
+    }
+  }
+
+  @Override
+  public boolean containsKey(KeyType key) {
+    if (key == null)
+      return false;
+    return keys[findSlot(key, hash(key))] != null;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public ValueType get(KeyType key) {
+    if (key != null) {
+      int index = findSlot(key, hash(key));
+      if (keys[index] != null)
+        return (ValueType) values[index];
+    }
+    throw new NoSuchElementException("Key not found.");
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public ValueType remove(KeyType key) {
+    if (key == null)
+      throw new NoSuchElementException("Key not found for removal.");
+    int index = findSlot(key, hash(key));
+    if (keys[index] == null)
+      throw new NoSuchElementException("Key not found for removal.");
+    ValueType value = (ValueType) values[index];
+    size--;
+
+    // shift later entries of this probe sequence back into the gap, unless they already sit at
+    // or after their home slot relative to the gap
+    int mask = keys.length - 1;
+    int gap = index;
+    int next = (gap + 1) & mask;
+    while (keys[next] != null) {
+      int home = hashes[next] & mask;
+      if (((next - home) & mask) >= ((next - gap) & mask)) {
+        keys[gap] = keys[next];
+        values[gap] = values[next];
+        hashes[gap] = hashes[next];
+        gap = next;
+      }
+      next = (next + 1) & mask;
+    }
+    keys[gap] = null;
+    values[gap] = null;
+    return value;
+  }
+
+  @Override
+  public void clear() {
+    for (int i = 0; i < keys.length; i++) {
+      keys[i] = null;
+      values[i] = null;
+    }
+    size = 0;
+  }
+
+  @Override
+  public int getSize() {
+    return size;
+  }
+
+  @Override
+  public int getCapacity() {
+    return keys.length;
+  }
+
+  /**
+   * Spreads the bits of the key's hash code, so that keys whose hash codes only differ in their
+   * high bits do not all probe from the same slot.
+   */
+  private static int hash(Object key) {
+    int h = key.hashCode();
+    return h ^ (h >>> 16);
+  }
+
+  /**
+   * @return the slot that holds key, or the empty slot where the probe sequence for key ends
+   */
+  private int findSlot(Object key, int hash) {
+    int mask = keys.length - 1;
+    int index = hash & mask;
+    while (keys[index] != null) {
+      if (hashes[index] == hash && keys[index].equals(key))
+        return index;
+      index = (index + 1) & mask;
+    }
+    return index;
+  }
+
+  private void resize() {
+    Object[] oldKeys = keys;
+    Object[] oldValues = values;
+    int[] oldHashes = hashes;
+    keys = new Object[oldKeys.length * 2];
+    values = new Object[oldKeys.length * 2];
+    hashes = new int[oldKeys.length * 2];
+    // every key is known to be unique, so entries move straight to their new slots
+    int mask = keys.length - 1;
+    for (int i = 0; i < oldKeys.length; i++) {
+      if (oldKeys[i] == null)
+        continue;
+      int index = oldHashes[i] & mask;
+      while (keys[index] != null)
+        index = (index + 1) & mask;
+      keys[index] = oldKeys[i];
+      values[index] = oldValues[i];
+      hashes[index] = oldHashes[i];
+    }
+  }
+}
@@ -0,0 +1,68 @@
+import java.util.NoSuchElementException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Assertions;
+
+/**
+ * Tests of OpenAddressingMap. They are kept apart from it because JUnit only runs test classes
+ * that declare a single constructor.
+ */
+public class OpenAddressingMapTests {
+
+  /**
+   * Tests that put() successfully adds a new key-value pair and that the key can be retrieved.
+   */
+  @Test
+  public void testPutAndGet() {
+    OpenAddressingMap<String, Integer> map = new OpenAddressingMap<>();
+    map.put("key1", 100);
+    Assertions.assertEquals(100, map.get("key1"), "Value associated with 'key1' should be 100.");
+    Assertions.assertThrows(NoSuchElementException.class, () -> map.get("key2"));
+  }
+
+  /**
+   * Tests that put() throws IllegalArgumentException when adding a duplicate key.
+   */
+  @Test
+  public void testPutThrowsExceptionOnDuplicateKey() {
+    OpenAddressingMap<String, Integer> map = new OpenAddressingMap<>();
+    map.put("key1", 100);
+    Assertions.assertThrows(IllegalArgumentException.class, () -> {
+      map.put("key1", 200);
+    }, "Should throw IllegalArgumentException on duplicate key.");
+  }
+
+  /**
+   * Tests that many colliding keys survive resizing and removal of keys in the middle of their
+   * probe sequences.
+   */
+  @Test
+  public void testResizeAndRemoveWithCollisions() {
+    OpenAddressingMap<Integer, Integer> map = new OpenAddressingMap<>(4);
+    for (int i = 0; i < 1000; i++) {
+      map.put(i * 1024, i); // keys that share their low bits
+    }
+    Assertions.assertEquals(1000, map.getSize());
+    for (int i = 0; i < 1000; i += 2) {
+      Assertions.assertEquals(i, map.remove(i * 1024));
+    }
+    for (int i = 0; i < 1000; i++) {
+      Assertions.assertEquals(i % 2 == 1, map.containsKey(i * 1024));
+    }
+    Assertions.assertThrows(NoSuchElementException.class, () -> map.remove(0));
+    Assertions.assertEquals(500, map.getSize());
+  }
+
+  /**
+   * Tests that clear() removes all entries.
+   */
+  @Test
+  public void testClear() {
+    OpenAddressingMap<String, Integer> map = new OpenAddressingMap<>();
+    map.put("key1", 100);
+    map.put("key2", 200);
+    map.clear();
+    Assertions.assertEquals(0, map.getSize(), "Map size should be 0 after clear.");
+    Assertions.assertFalse(map.containsKey("key1"),
+        "Map should not contain key 'key1' after clear.");
+  }
+}
@@ -0,0 +1,221 @@
+import java.util.Arrays;
+
+/**
+ * A ReachabilityIndex answers whether one node of a graph may have a path to another in
+ * constant time, so that searches for paths that cannot exist are rejected before they start.
+ *
+ * The index finds the strongly connected components of the graph (sets of nodes that all have
+ * paths to each other) with an iterative version of Tarjan's algorithm, so that long paths cannot
+ * overflow the call stack. Tarjan's algorithm numbers the components in reverse topological order
+ * of the condensation DAG (the graph with one node per component), so a node can only reach
+ * nodes whose component number is no larger than its own. When there are at most
+ * MAX_CLOSURE_COMPONENTS components, the index also stores the transitive closure of the
+ * condensation DAG as one bitset per component, which makes its answers exact.
+ *
+ * Answers are never wrong when they say that there is no path: mayReach returns true for every
+ * pair of nodes that has a path, and possibly for some pairs that do not. The reach relation of
+ * the index is transitive, so it stays correct when edges or nodes are removed, and when an edge
+ * is inserted between two nodes that the index already relates (see covers). DijkstraGraph uses
+ * this to keep an index across such modifications, and builds a new one after any others.
+ */
+public class ReachabilityIndex {
+  // The closure takes components * components bits, 8 MB at this size
+  public static final int MAX_CLOSURE_COMPONENTS = 8192;
+
+  private final int[] componentById; // -1 for ids that had no node when the index was built
+  private final int componentCount;
+  private final long[] closure; // componentCount rows of words, or null when there are too many
+  private final int wordsPerRow;
+  private final long graphVersion;
+
+  private ReachabilityIndex(int[] componentById, int componentCount, long[] closure,
+      long graphVersion) {
+    this.componentById = componentById;
+    this.componentCount = componentCount;
+    this.closure = closure;
+    this.wordsPerRow = (componentCount + 63) / 64;
+    this.graphVersion = graphVersion;
+  }
+
+  /**
+   * Computes the strongly connected components of snapshot and, when there are not too many of
+   * them, the transitive closure of its condensation DAG.
+   *
+   * @param snapshot the graph to index
+   * @return the index for the snapshot's nodes and edges
+   */
+  public static ReachabilityIndex build(FrozenGraph<?> snapshot) {
+    int bound = snapshot.getNodeIdBound();
+    int[] targets = snapshot.getForwardTargets();
+    int[] component = new int[bound];
+    int[] order = new int[bound]; // the order in which Tarjan's algorithm visits each id, from 1
+    int[] low = new int[bound];
+    int[] stack = new int[bound]; // visited nodes whose component is not known yet
+    int[] path = new int[bound]; // the current path of the depth first search
+    int[] nextEdge = new int[bound]; // the next edge to follow from each node on the path
+    int stackSize = 0;
+    int visited = 0;
+    int componentCount = 0;
+    Arrays.fill(component, -1);
+
+    for (int root = 0; root < bound; root++) {
+      if (order[root] != 0 || snapshot.getData(root) == null) {
+        continue;
+      }
+      int pathLength = 0;
+      order[root] = low[root] = ++visited;
+      stack[stackSize++] = root;
+      path[pathLength++] = root;
+      nextEdge[root] = snapshot.forwardStart(root);
+      while (pathLength > 0) {
+        int id = path[pathLength - 1];
+        if (nextEdge[id] < snapshot.forwardEnd(id)) {
+          int successor = targets[nextEdge[id]++];
+          if (order[successor] == 0) {
+            order[successor] = low[successor] = ++visited;
+            stack[stackSize++] = successor;
+            path[pathLength++] = successor;
+            nextEdge[successor] = snapshot.forwardStart(successor);
+          } else if (component[successor] == -1) {
+            low[id] = Math.min(low[id], order[successor]); // still on the stack
+          }
+          continue;
+        }
+        // every edge of id has been followed, so return to its predecessor on the path
+        pathLength--;
+        if (pathLength > 0) {
+          int predecessor = path[pathLength - 1];
+          low[predecessor] = Math.min(low[predecessor], low[id]);
+        }
+        if (low[id] == order[id]) {
+          // id is the first node visited in its component, which is on the stack above it
+          int member;
+          do {
+            member = stack[--stackSize];
+            component[member] = componentCount;
+          } while (member != id);
+          componentCount++;
+        }
+      }
+    }
+
+    long[] closure = null;
+    if (componentCount <= MAX_CLOSURE_COMPONENTS) {
+      closure = buildClosure(snapshot, component, componentCount);
+    }
+    return new ReachabilityIndex(component, componentCount, closure, snapshot.getGraphVersion());
+  }
+
+  /**
+   * Computes the set of components that each component can reach. Every edge between two
+   * components leads to a lower numbered component, so handling components in increasing order
+   * means that the sets of all successors are complete before they are merged.
+   */
+  private static long[] buildClosure(FrozenGraph<?> snapshot, int[] component,
+      int componentCount) {
+    int words = (componentCount + 63) / 64;
+    int[] targets = snapshot.getForwardTargets();
+
+    // group the node ids by component, with a counting sort
+    int[] memberStart = new int[componentCount + 1];
+    for (int c : component) {
+      if (c >= 0) {
+        memberStart[c + 1]++;
+      }
+    }
+    for (int c = 0; c < componentCount; c++) {
+      memberStart[c + 1] += memberStart[c];
+    }
+    int[] members = new int[memberStart[componentCount]];
+    int[] fill = Arrays.copyOf(memberStart, componentCount);
+    for (int id = 0; id < component.length; id++) {
+      if (component[id] >= 0) {
+        members[fill[component[id]]++] = id;
+      }
+    }
+
+    long[] closure = new long[componentCount * words];
+    for (int c = 0; c < componentCount; c++) {
+      int row = c * words;
+      closure[row + c / 64] |= 1L << c;
+      for (int m = memberStart[c]; m < memberStart[c + 1]; m++) {
+        int id = members[m];
+        for (int edge = snapshot.forwardStart(id); edge < snapshot.forwardEnd(id); edge++) {
+          int successor = component[targets[edge]];
+          if (successor != c && (closure[row + successor / 64] & (1L << successor)) == 0) {
+            int successorRow = successor * words;
+            for (int w = 0; w < words; w++) {
+              closure[row + w] |= closure[successorRow + w];
+            }
+          }
+        }
+      }
+    }
+    return closure;
+  }
+
+  /**
+   * Checks whether there may be a path from the node with id startId to the node with id endId.
+   *
+   * @param startId the id of the starting node
+   * @param endId   the id of the destination node
+   * @return false if there is certainly no path, true if there may be one
+   */
+  public boolean mayReach(int startId, int endId) {
+    int start = startId < componentById.length ? componentById[startId] : -1;
+    int end = endId < componentById.length ? componentById[endId] : -1;
+    if (start < 0 || end < 0) {
+      return true; // a node that is newer than the index
+    }
+    if (end > start) {
+      return false; // no edge leads to a higher numbered component
+    }
+    return closure == null || (closure[start * wordsPerRow + end / 64] & (1L << end)) != 0;
+  }
+
+  /**
+   * Checks whether the index already relates two nodes, so that inserting an edge between them
+   * cannot make its answers wrong.
+   *
+   * @param predId the id of the new edge's predecessor node
+   * @param succId the id of the new edge's successor node
+   * @return true if both nodes are in the index and it says that predId may reach succId
+   */
+  public boolean covers(int predId, int succId) {
+    return predId < componentById.length && succId < componentById.length
+        && componentById[predId] >= 0 && componentById[succId] >= 0 && mayReach(predId, succId);
+  }
+
+  /**
+   * Returns an index with the same answers that is marked as up to date with a newer version of
+   * the graph, after a modification that it remains correct for.
+   *
+   * @param graphVersion the graph's modification count after the modification
+   * @return the index for that version
+   */
+  public ReachabilityIndex atVersion(long graphVersion) {
+    return new ReachabilityIndex(componentById, componentCount, closure, graphVersion);
+  }
+
+  /**
+   * @return the number of strongly connected components the graph had when the index was built
+   */
+  public int getComponentCount() {
+    return componentCount;
+  }
+
+  /**
+   * @return true if the index stores the transitive closure, so that its answers are exact for
+   *         the graph it was built from
+   */
+  public boolean isExact() {
+    return closure != null;
+  }
+
+  /**
+   * @return the modification count of the graph that this index is up to date with
+   */
+  public long getGraphVersion() {
+    return graphVersion;
+  }
+}
@@ -0,0 +1,166 @@
+import java.lang.ref.WeakReference;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * A bounded cache of route results keyed by start and end location and by the graph and version
+ * that they were computed on. Every lookup names the graph and its current modification count,
+ * so a route computed before the graph was modified, or on another graph, is never returned.
+ *
+ * Routes of different graphs and versions are kept side by side, so queries that still run on an
+ * older version of a graph, such as while a new version is being published, do not drop the
+ * routes of the newer one, nor the other way around. Routes of versions that are no longer
+ * queried are simply evicted over time: when the cache is full, the least recently used route is
+ * evicted. The cache only refers to graphs weakly, so it never keeps a replaced graph alive.
+ * Routes can also be given a time to live, after which they count as missing. All methods are
+ * synchronized, so the cache can be shared by concurrent queries; routes are computed outside the
+ * cache by the caller.
+ */
+public class RouteCache<ValueType> {
+  public static final int DEFAULT_MAX_ENTRIES = 1024;
+
+  private final int maxEntries;
+  private final long ttlNanos; // 0 when routes never expire
+  private final LinkedHashMap<Key, Entry<ValueType>> entries;
+  private long hits = 0;
+  private long misses = 0;
+  private long evictions = 0;
+
+  private static class Key {
+    final WeakReference<Object> graph;
+    final int graphHash;
+    final long graphVersion;
+    final Object start;
+    final Object end;
+
+    Key(Object graph, long graphVersion, Object start, Object end) {
+      this.graph = new WeakReference<>(graph);
+      this.graphHash = System.identityHashCode(graph);
+      this.graphVersion = graphVersion;
+      this.start = start;
+      this.end = end;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (!(other instanceof Key))
+        return false;
+      Key key = (Key) other;
+      // lookups always name a live graph, so they never match a key whose graph is gone
+      return key.graph.get() == graph.get() && key.graphVersion == graphVersion
+          && key.start.equals(start) && key.end.equals(end);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(graphHash, graphVersion, start, end);
+    }
+  }
+
+  private static class Entry<ValueType> {
+    final ValueType value;
+    final long createdNanos;
+
+    Entry(ValueType value, long createdNanos) {
+      this.value = value;
+      this.createdNanos = createdNanos;
+    }
+  }
+
+  /**
+   * Creates a cache that holds up to maxEntries routes.
+   *
+   * @param maxEntries the largest number of routes to keep
+   * @param ttlMillis  how long a route stays valid in milliseconds, or 0 to keep routes until they
+   *                   are evicted or the graph changes
+   */
+  public RouteCache(int maxEntries, long ttlMillis) {
+    if (maxEntries < 1 || ttlMillis < 0)
+      throw new IllegalArgumentException("Invalid cache size or time to live");
+    this.maxEntries = maxEntries;
+    this.ttlNanos = ttlMillis * 1_000_000;
+    // access order makes iteration start at the least recently used entry
+    this.entries = new LinkedHashMap<>(16, 0.75f, true);
+  }
+
+  public RouteCache() {
+    this(DEFAULT_MAX_ENTRIES, 0);
+  }
+
+  /**
+   * Looks up the route from start to end.
+   *
+   * @param graph        the graph the route is wanted for
+   * @param graphVersion the graph's current modification count
+   * @return the cached route, or null if there is none for this version of the graph
+   */
+  public synchronized ValueType get(Object graph, long graphVersion, Object start, Object end) {
+    Key key = new Key(graph, graphVersion, start, end);
+    Entry<ValueType> entry = entries.get(key);
+    if (entry != null && ttlNanos > 0 && System.nanoTime() - entry.createdNanos > ttlNanos) {
+      entries.remove(key);
+      evictions++;
+      entry = null;
+    }
+    if (entry == null) {
+      misses++;
+      return null;
+    }
+    hits++;
+    return entry.value;
+  }
+
+  /**
+   * Stores the route from start to end for one version of a graph, evicting the least recently
+   * used route if the cache is full.
+   *
+   * @param graph        the graph the route was computed on
+   * @param graphVersion the modification count of the graph when the route was computed
+   */
+  public synchronized void put(Object graph, long graphVersion, Object start, Object end,
+      ValueType value) {
+    entries.put(new Key(graph, graphVersion, start, end),
+        new Entry<>(value, System.nanoTime()));
+    while (entries.size() > maxEntries) {
+      Map.Entry<Key, Entry<ValueType>> eldest = entries.entrySet().iterator().next();
+      entries.remove(eldest.getKey());
+      evictions++;
+    }
+  }
+
+  /**
+   * Drops all cached routes.
+   */
+  public synchronized void clear() {
+    entries.clear();
+  }
+
+  /**
+   * @return the number of routes currently cached
+   */
+  public synchronized int getSize() {
+    return entries.size();
+  }
+
+  /**
+   * @return the number of lookups that found a route
+   */
+  public synchronized long getHits() {
+    return hits;
+  }
+
+  /**
+   * @return the number of lookups that found no route
+   */
+  public synchronized long getMisses() {
+    return misses;
+  }
+
+  /**
+   * @return the number of routes that were dropped because the cache was full or they expired
+   */
+  public synchronized long getEvictions() {
+    return evictions;
+  }
+}
@@ -0,0 +1,67 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Assertions;
+
+/**
+ * Tests of RouteCache. They are kept apart from it because JUnit only runs test classes that
+ * declare a single constructor.
+ */
+public class RouteCacheTests {
+
+  /**
+   * Tests that the least recently used route is evicted when the cache is full, and that the
+   * counters record hits, misses and evictions.
+   */
+  @Test
+  public void testLeastRecentlyUsedEviction() {
+    RouteCache<String> cache = new RouteCache<>(2, 0);
+    Object graph = new Object();
+    cache.put(graph, 1, "A", "B", "AB");
+    cache.put(graph, 1, "A", "C", "AC");
+    Assertions.assertEquals("AB", cache.get(graph, 1, "A", "B")); // AC is now least recent
+    cache.put(graph, 1, "B", "C", "BC");
+    Assertions.assertNull(cache.get(graph, 1, "A", "C"));
+    Assertions.assertEquals("AB", cache.get(graph, 1, "A", "B"));
+    Assertions.assertEquals("BC", cache.get(graph, 1, "B", "C"));
+    Assertions.assertEquals(3, cache.getHits());
+    Assertions.assertEquals(1, cache.getMisses());
+    Assertions.assertEquals(1, cache.getEvictions());
+  }
+
+  /**
+   * Tests that routes are only returned for the graph and version they were computed on, that
+   * routes of several versions are kept side by side, and that routes of versions that are no
+   * longer queried are evicted like any other.
+   */
+  @Test
+  public void testGraphVersions() {
+    RouteCache<String> cache = new RouteCache<>(3, 0);
+    Object graph = new Object();
+    Object copy = new Object();
+    cache.put(graph, 1, "A", "B", "old");
+    Assertions.assertNull(cache.get(graph, 2, "A", "B"));
+    Assertions.assertNull(cache.get(copy, 1, "A", "B"));
+    cache.put(copy, 2, "A", "B", "new");
+    // a query still running on the old version neither drops nor sees the new version's route
+    Assertions.assertEquals("old", cache.get(graph, 1, "A", "B"));
+    Assertions.assertEquals("new", cache.get(copy, 2, "A", "B"));
+    cache.put(copy, 2, "A", "C", "AC");
+    cache.put(copy, 2, "B", "C", "BC");
+    Assertions.assertNull(cache.get(graph, 1, "A", "B")); // least recently used, so evicted
+    Assertions.assertEquals(3, cache.getSize());
+    Assertions.assertEquals(1, cache.getEvictions());
+  }
+
+  /**
+   * Tests that routes expire after their time to live.
+   */
+  @Test
+  public void testTimeToLive() throws InterruptedException {
+    RouteCache<String> cache = new RouteCache<>(10, 20);
+    Object graph = new Object();
+    cache.put(graph, 1, "A", "B", "AB");
+    Assertions.assertEquals("AB", cache.get(graph, 1, "A", "B"));
+    Thread.sleep(40);
+    Assertions.assertNull(cache.get(graph, 1, "A", "B"));
+    Assertions.assertEquals(1, cache.getEvictions());
+  }
+}
@@ -0,0 +1,87 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The result of one shortest path query: the nodes along the path, the weight of each edge
+ * between them, the running total of those weights at every node, the total cost, and how many
+ * nodes the search settled to find the path. A RouteResult is immutable, so it can be cached and
+ * shared between threads.
+ */
+public final class RouteResult<NodeType> {
+  private final List<NodeType> nodes;
+  private final List<Double> legTimes;
+  private final List<Double> cumulativeTimes;
+  private final double totalCost;
+  private final int settledCount;
+
+  /**
+   * Creates a route result. The cumulative times and the total cost are summed from legTimes in
+   * path order.
+   *
+   * @param nodes        the nodes along the path, starting with the start node
+   * @param legTimes     the weight of the edge into each node after the first, so one shorter
+   *                     than nodes
+   * @param settledCount the number of nodes the search settled
+   * @throws IllegalArgumentException if nodes is empty or legTimes has the wrong length
+   */
+  public RouteResult(List<NodeType> nodes, List<Double> legTimes, int settledCount) {
+    if (nodes.isEmpty() || legTimes.size() != nodes.size() - 1)
+      throw new IllegalArgumentException("A route needs one leg between each two nodes");
+    List<Double> cumulative = new ArrayList<>(nodes.size());
+    double total = 0;
+    cumulative.add(total);
+    for (double leg : legTimes) {
+      total += leg;
+      cumulative.add(total);
+    }
+    this.nodes = Collections.unmodifiableList(new ArrayList<>(nodes));
+    this.legTimes = Collections.unmodifiableList(new ArrayList<>(legTimes));
+    this.cumulativeTimes = Collections.unmodifiableList(cumulative);
+    this.totalCost = total;
+    this.settledCount = settledCount;
+  }
+
+  /**
+   * @return the nodes along the path, from the start node to the end node
+   */
+  public List<NodeType> getNodes() {
+    return nodes;
+  }
+
+  /**
+   * @return the weight of each edge along the path, in path order; empty when the path starts and
+   *         ends at the same node
+   */
+  public List<Double> getLegTimes() {
+    return legTimes;
+  }
+
+  /**
+   * @return for each node along the path, the total weight of the edges before it, starting with
+   *         0 for the start node
+   */
+  public List<Double> getCumulativeTimes() {
+    return cumulativeTimes;
+  }
+
+  /**
+   * @return the total weight of all edges along the path
+   */
+  public double getTotalCost() {
+    return totalCost;
+  }
+
+  /**
+   * @return the number of nodes the search settled to find this path, or 0 if the result did not
+   *         come from a search
+   */
+  public int getSettledCount() {
+    return settledCount;
+  }
+
+  @Override
+  public String toString() {
+    return nodes + " (" + totalCost + ")";
+  }
+}
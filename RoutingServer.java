@@ -0,0 +1,388 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A RoutingServer answers route queries over HTTP with the JDK's built-in server, so that
+ * clients can use a backend without the JavaFX frontend. Every response is a JSON object:
+ *
+ *   GET /locations                  {"locations": [...]}
+ *   GET /path?start=A&end=B         {"start": "A", "end": "B", "path": [...]}
+ *   GET /times?start=A&end=B        {"start": "A", "end": "B", "times": [...]}
+ *   GET /farthest?location=A        {"location": "A", "farthest": "..."}
+ *
+ * Errors are reported as {"error": "..."} with status 400 for a missing parameter, 404 for an
+ * unknown location or a path that does not exist, 405 for methods other than GET, 503 for a query
+ * that was stopped or took longer than the query timeout (see setQueryTimeout), and 500 for any
+ * other failure.
+ *
+ * Each connection is handled on its own virtual thread when the JDK supports them, and on a cached
+ * thread pool otherwise, while the queries themselves run on a fixed pool of maxConcurrentRequests
+ * threads, which reuse their search workspaces from one query to the next. At most
+ * maxConcurrentRequests requests are answered at once; any request beyond that is rejected
+ * immediately with status 503 and a Retry-After header, so that an overloaded server sheds load
+ * instead of queueing requests it cannot answer in time.
+ */
+public class RoutingServer {
+  // connections the operating system may queue before the server accepts them
+  private static final int CONNECTION_BACKLOG = 4096;
+  // the longest time a query may take unless setQueryTimeout is called
+  private static final long DEFAULT_QUERY_TIMEOUT_MILLIS = 10000;
+
+  private final BackendInterface backend;
+  private final HttpServer server;
+  private final ExecutorService executor;
+  private final ExecutorService queryPool;
+  private final Semaphore admission;
+  private final AtomicLong rejectedCount = new AtomicLong();
+  private volatile long queryTimeoutMillis = DEFAULT_QUERY_TIMEOUT_MILLIS;
+
+  /**
+   * The status code and JSON body of a response.
+   */
+  private static class Response {
+    final int status;
+    final String body;
+
+    Response(int status, String body) {
+      this.status = status;
+      this.body = body;
+    }
+  }
+
+  /**
+   * Creates a server for backend that is bound to address, but not started yet.
+   *
+   * @param backend               answers the queries
+   * @param address               the address to listen on; port 0 picks a free port
+   * @param maxConcurrentRequests the largest number of requests that are answered at once
+   * @throws IOException if the server cannot be bound to address
+   */
+  public RoutingServer(BackendInterface backend, InetSocketAddress address,
+      int maxConcurrentRequests) throws IOException {
+    if (maxConcurrentRequests < 1)
+      throw new IllegalArgumentException("At least one request must be allowed at once");
+    this.backend = backend;
+    this.admission = new Semaphore(maxConcurrentRequests);
+    this.executor = newRequestExecutor();
+    // Searches keep their workspace in a thread local, so queries run on a fixed set of
+    // long-lived threads that reuse their workspaces, rather than on a new thread per request.
+    // Each query holds its admission until its thread is done with it, so none of them wait.
+    this.queryPool = Executors.newFixedThreadPool(maxConcurrentRequests, task -> {
+      Thread thread = new Thread(task, "routing-query");
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.server = HttpServer.create(address, CONNECTION_BACKLOG);
+    server.setExecutor(executor);
+    server.createContext("/", this::handle);
+  }
+
+  /**
+   * @return an executor for the connections, which runs every task on a new virtual thread when
+   *         the JDK has them, or on a cached thread pool otherwise
+   */
+  private static ExecutorService newRequestExecutor() {
+    try {
+      // looked up by reflection, so that this class still compiles and runs on older JDKs
+      return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor")
+          .invoke(null);
+    } catch (ReflectiveOperationException e) {
+      return Executors.newCachedThreadPool(task -> {
+        Thread thread = new Thread(task, "routing-request");
+        thread.setDaemon(true);
+        return thread;
+      });
+    }
+  }
+
+  /**
+   * Starts accepting requests in the background.
+   */
+  public void start() {
+    server.start();
+  }
+
+  /**
+   * Stops accepting requests, waits up to delaySeconds for the requests in progress to finish,
+   * and then stops the request threads.
+   *
+   * @param delaySeconds the longest time to wait for requests in progress
+   */
+  public void stop(int delaySeconds) {
+    server.stop(delaySeconds);
+    executor.shutdownNow();
+    queryPool.shutdownNow();
+  }
+
+  /**
+   * Limits how long each query may take. A query that takes longer is stopped, and answered with
+   * status 503, so that slow searches do not hold on to the server's threads.
+   *
+   * @param timeoutMillis the longest time in milliseconds to spend on a query, or 0 for no limit
+   */
+  public void setQueryTimeout(long timeoutMillis) {
+    if (timeoutMillis < 0)
+      throw new IllegalArgumentException("The timeout must not be negative");
+    this.queryTimeoutMillis = timeoutMillis;
+  }
+
+  /**
+   * @return the port the server listens on
+   */
+  public int getPort() {
+    return server.getAddress().getPort();
+  }
+
+  /**
+   * @return the number of requests that were rejected with status 503 because too many requests
+   *         were being answered already
+   */
+  public long getRejectedCount() {
+    return rejectedCount.get();
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    try {
+      if (!admission.tryAcquire()) {
+        rejectedCount.incrementAndGet();
+        exchange.getResponseHeaders().set("Retry-After", "1");
+        respond(exchange, 503, error("Server is overloaded"));
+        return;
+      }
+      Response response = query(exchange.getRequestMethod(), exchange.getRequestURI());
+      respond(exchange, response.status, response.body);
+    } finally {
+      exchange.close();
+    }
+  }
+
+  /**
+   * Answers an admitted request on the query pool, and gives its admission back once the query's
+   * thread is done with it, or once the query is given up before it started.
+   */
+  private Response query(String method, URI uri) {
+    AtomicBoolean started = new AtomicBoolean();
+    Future<Response> query;
+    try {
+      query = queryPool.submit(() -> {
+        if (!started.compareAndSet(false, true)) {
+          return null; // given up on already
+        }
+        try {
+          return answer(method, uri);
+        } finally {
+          admission.release();
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      admission.release();
+      return new Response(503, error("Server is stopping"));
+    }
+    long timeoutMillis = queryTimeoutMillis;
+    try {
+      return timeoutMillis > 0 ? query.get(timeoutMillis, TimeUnit.MILLISECONDS) : query.get();
+    } catch (TimeoutException e) {
+      giveUp(query, started);
+      return new Response(503, error("The query took too long"));
+    } catch (InterruptedException e) {
+      giveUp(query, started);
+      Thread.currentThread().interrupt();
+      return new Response(503, error("Server is stopping"));
+    } catch (ExecutionException e) {
+      return new Response(500, error("Internal error"));
+    }
+  }
+
+  /**
+   * Stops a query that is no longer waited for: one that is running is interrupted, which stops
+   * its search, and one that has not started yet gives its admission back and never starts.
+   */
+  private void giveUp(Future<Response> query, AtomicBoolean started) {
+    if (started.compareAndSet(false, true)) {
+      admission.release();
+    } else {
+      query.cancel(true);
+    }
+  }
+
+  /**
+   * Answers one admitted request.
+   */
+  private Response answer(String method, URI uri) {
+    if (!method.equals("GET")) {
+      return new Response(405, error("Only GET is supported"));
+    }
+    Map<String, String> query = parseQuery(uri.getRawQuery());
+    String endpoint = uri.getPath();
+    try {
+      switch (endpoint) {
+        case "/locations":
+          return new Response(200,
+              "{\"locations\":" + json(backend.getListOfAllLocations()) + "}");
+        case "/path": {
+          String start = parameter(query, "start");
+          String end = parameter(query, "end");
+          return new Response(200, "{\"start\":" + json(start) + ",\"end\":" + json(end)
+              + ",\"path\":" + json(backend.findShortestPath(start, end)) + "}");
+        }
+        case "/times": {
+          String start = parameter(query, "start");
+          String end = parameter(query, "end");
+          List<Double> times = backend.getTravelTimesOnPath(start, end);
+          if (times.isEmpty() && !start.equals(end)) {
+            throw new NoSuchElementException("No path from " + start + " to " + end);
+          }
+          return new Response(200, "{\"start\":" + json(start) + ",\"end\":" + json(end)
+              + ",\"times\":" + json(times) + "}");
+        }
+        case "/farthest": {
+          String location = parameter(query, "location");
+          return new Response(200, "{\"location\":" + json(location) + ",\"farthest\":"
+              + json(backend.getMostDistantLocation(location)) + "}");
+        }
+        default:
+          return new Response(404, error("Unknown endpoint: " + endpoint));
+      }
+    } catch (IllegalArgumentException e) {
+      return new Response(400, error(e.getMessage()));
+    } catch (NoSuchElementException e) {
+      return new Response(404, error(e.getMessage()));
+    } catch (CancellationException e) {
+      return new Response(503, error("The query was stopped"));
+    } catch (RuntimeException e) {
+      return new Response(500, error("Internal error"));
+    }
+  }
+
+  /**
+   * @return the value of the query parameter name
+   * @throws IllegalArgumentException if the parameter is missing
+   */
+  private static String parameter(Map<String, String> query, String name) {
+    String value = query.get(name);
+    if (value == null)
+      throw new IllegalArgumentException("Missing parameter: " + name);
+    return value;
+  }
+
+  /**
+   * @return the decoded parameters of a raw query string, which may be null
+   */
+  private static Map<String, String> parseQuery(String rawQuery) {
+    Map<String, String> parameters = new HashMap<>();
+    if (rawQuery == null) {
+      return parameters;
+    }
+    for (String pair : rawQuery.split("&")) {
+      int equals = pair.indexOf('=');
+      if (equals > 0) {
+        parameters.put(decode(pair.substring(0, equals)), decode(pair.substring(equals + 1)));
+      }
+    }
+    return parameters;
+  }
+
+  private static String decode(String text) {
+    try {
+      return URLDecoder.decode(text, "UTF-8");
+    } catch (UnsupportedEncodingException e) {
+      throw new IllegalStateException(e); // every JDK supports UTF-8
+    }
+  }
+
+  private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+    byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+    exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+    exchange.sendResponseHeaders(status, bytes.length);
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(bytes);
+    }
+  }
+
+  private static String error(String message) {
+    return "{\"error\":" + json(message) + "}";
+  }
+
+  /**
+   * @return values as a JSON array of strings, or of numbers with null for infinite numbers
+   */
+  private static String json(List<?> values) {
+    StringBuilder array = new StringBuilder("[");
+    for (Object value : values) {
+      if (array.length() > 1) {
+        array.append(',');
+      }
+      if (value instanceof Double) {
+        double number = (Double) value;
+        array.append(Double.isFinite(number) ? Double.toString(number) : "null");
+      } else {
+        array.append(json(String.valueOf(value)));
+      }
+    }
+    return array.append(']').toString();
+  }
+
+  /**
+   * @return text as a quoted JSON string
+   */
+  private static String json(String text) {
+    StringBuilder string = new StringBuilder("\"");
+    for (int i = 0; i < text.length(); i++) {
+      char c = text.charAt(i);
+      if (c == '"' || c == '\\') {
+        string.append('\\').append(c);
+      } else if (c < 0x20) {
+        string.append(String.format("\\u%04x", (int) c));
+      } else {
+        string.append(c);
+      }
+    }
+    return string.append('"').toString();
+  }
+
+  /**
+   * Loads a .dot file and answers queries about it over HTTP until the process is stopped.
+   *
+   * @param args the .dot file to load (campus.dot by default), the port to listen on (8080 by
+   *             default), the largest number of requests to answer at once (256 by default)
+   *             and the longest time in milliseconds to spend on a query (10000 by default)
+   */
+  public static void main(String[] args) throws IOException {
+    String filename = args.length > 0 ? args[0] : "campus.dot";
+    int port = args.length > 1 ? Integer.parseInt(args[1]) : 8080;
+    int maxConcurrentRequests = args.length > 2 ? Integer.parseInt(args[2]) : 256;
+    long queryTimeoutMillis =
+        args.length > 3 ? Long.parseLong(args[3]) : DEFAULT_QUERY_TIMEOUT_MILLIS;
+    Backend backend = new Backend(new DijkstraGraph<String, Double>());
+    backend.setSnapshotFile(filename + ".snapshot");
+    backend.setConcurrentMode(true);
+    backend.loadGraphData(filename);
+    RoutingServer server = new RoutingServer(backend, new InetSocketAddress(port),
+        maxConcurrentRequests);
+    server.setQueryTimeout(queryTimeoutMillis);
+    server.start();
+    System.out.println("Routing server listening on port " + server.getPort());
+  }
+}
@@ -0,0 +1,77 @@
+import java.util.NoSuchElementException;
+
+/**
+ * This abstract data type represents the priority queue of node ids that a shortest path search
+ * removes nodes from in order of increasing cost. Implementations also count the work they do, so
+ * that different queues can be compared on the same searches.
+ */
+public interface SearchQueueADT {
+
+  /**
+   * Adds a node to this queue, or lowers its cost if it is already queued with a higher cost.
+   * Implementations that do not support lowering the cost of a queued node may instead queue the
+   * node a second time, and leave it to the caller to skip the stale entry.
+   * @param id the id of the node
+   * @param cost the cost of the node, lower costs are removed first
+   */
+  public void insertOrDecrease(int id, double cost);
+
+  /**
+   * Retrieves the cost of the node that would be removed next.
+   * @return the lowest cost in this queue
+   * @throws NoSuchElementException if this queue is empty
+   */
+  public double peekCost() throws NoSuchElementException;
+
+  /**
+   * Removes the node with the lowest cost from this queue.
+   * @return the id of the removed node
+   * @throws NoSuchElementException if this queue is empty
+   */
+  public int poll() throws NoSuchElementException;
+
+  /**
+   * Checks whether this queue is empty.
+   * @return true if no nodes are queued, false otherwise
+   */
+  public boolean isEmpty();
+
+  /**
+   * Retrieves the number of entries in this queue.
+   * @return the number of entries currently stored
+   */
+  public int getSize();
+
+  /**
+   * Removes all entries from this queue and prepares it to hold node ids less than capacity.
+   * @param capacity one more than the largest node id that will be queued
+   */
+  public void clear(int capacity);
+
+  /**
+   * Retrieves the number of insert, decrease-key and poll operations since the last call to
+   * resetStatistics.
+   * @return the number of queue operations
+   */
+  public long getOperationCount();
+
+  /**
+   * Retrieves the number of array entries that were written while sifting entries up and down the
+   * heap since the last call to resetStatistics.
+   * @return the number of entry moves
+   */
+  public long getMoveCount();
+
+  /**
+   * Retrieves the largest number of entries this queue held since the last call to
+   * resetStatistics.
+   * @return the peak size of this queue
+   */
+  public int getPeakSize();
+
+  /**
+   * Sets all counters reported by this queue back to zero.
+   */
+  public void resetStatistics();
+
+}
@@ -0,0 +1,176 @@
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+
+/**
+ * A SearchWorkspace holds the per-node state of one shortest path search in primitive arrays
+ * that are indexed by node id: the best known cost to each node, the id of its predecessor on
+ * that path, and the weight of the edge from that predecessor. The arrays are reused from one
+ * search to the next. Rather than clearing them before every search, each entry is stamped with
+ * the generation of the search that last wrote it, so starting a new search only increments the
+ * current generation.
+ *
+ * The queue that a search takes nodes from is part of the workspace too, and can be exchanged
+ * between searches with setQueue.
+ *
+ * A workspace is not thread safe: DijkstraGraph keeps one workspace for each thread. A search
+ * stops with a CancellationException soon after its thread is interrupted (see settle).
+ */
+public class SearchWorkspace {
+  // nodes settled between two checks for interruption; must be a power of two
+  public static final int INTERRUPT_CHECK_INTERVAL = 1024;
+
+  protected double[] dist = new double[0];
+  protected int[] pred = new int[0];
+  protected double[] predWeight = new double[0];
+  protected int[] reachedStamp = new int[0];
+  protected int[] settledStamp = new int[0];
+  protected int[] settledIds = new int[0];
+  protected int generation = 0;
+  protected int settledCount = 0;
+  protected SearchQueueADT queue = new IndexedDaryHeap();
+  protected SearchWorkspace reverse = null; // second workspace for bidirectional searches
+  protected int querySettledCount = 0; // nodes settled by the last query, across both workspaces
+
+  /**
+   * Replaces the queue that the next search will use.
+   *
+   * @param queue the queue for node ids
+   */
+  public void setQueue(SearchQueueADT queue) {
+    this.queue = queue;
+  }
+
+  /**
+   * @return the queue that searches in this workspace use
+   */
+  public SearchQueueADT getQueue() {
+    return queue;
+  }
+
+  /**
+   * Returns a second workspace, owned by this one, for the backward half of searches that run
+   * from both ends of a path at once.
+   *
+   * @return the workspace for backward searches
+   */
+  public SearchWorkspace getReverse() {
+    if (reverse == null) {
+      reverse = new SearchWorkspace();
+    }
+    return reverse;
+  }
+
+  /**
+   * Prepares this workspace for a new search over node ids less than size. After this call no
+   * node is reached or settled, and the queue is empty.
+   *
+   * @param size one more than the largest node id the search may visit
+   */
+  public void startSearch(int size) {
+    if (dist.length < size) {
+      int capacity = Math.max(size, dist.length * 2);
+      dist = Arrays.copyOf(dist, capacity);
+      pred = Arrays.copyOf(pred, capacity);
+      predWeight = Arrays.copyOf(predWeight, capacity);
+      reachedStamp = Arrays.copyOf(reachedStamp, capacity);
+      settledStamp = Arrays.copyOf(settledStamp, capacity);
+      settledIds = Arrays.copyOf(settledIds, capacity);
+    }
+    generation++;
+    if (generation == Integer.MAX_VALUE) {
+      // stamps are about to wrap around, so clear them once and start counting again
+      Arrays.fill(reachedStamp, 0);
+      Arrays.fill(settledStamp, 0);
+      generation = 1;
+    }
+    settledCount = 0;
+    queue.clear(size);
+  }
+
+  /**
+   * @param id the id of a node
+   * @return true if a path to this node has been found during the current search
+   */
+  public boolean isReached(int id) {
+    return reachedStamp[id] == generation;
+  }
+
+  /**
+   * @param id the id of a node
+   * @return true if the shortest path to this node is known during the current search
+   */
+  public boolean isSettled(int id) {
+    return settledStamp[id] == generation;
+  }
+
+  /**
+   * Records a (possibly improved) path to a node and adds that node to the queue.
+   *
+   * @param id       the id of the node that was reached
+   * @param cost     the cost of the path to that node
+   * @param predId   the id of the previous node on the path, or -1 for the start node
+   * @param weight   the weight of the edge from the previous node
+   */
+  public void reach(int id, double cost, int predId, double weight) {
+    reach(id, cost, predId, weight, cost);
+  }
+
+  /**
+   * Records a (possibly improved) path to a node and adds that node to the queue with a priority
+   * that differs from the cost of its path, as goal-directed searches do.
+   *
+   * @param id       the id of the node that was reached
+   * @param cost     the cost of the path to that node
+   * @param predId   the id of the previous node on the path, or -1 for the start node
+   * @param weight   the weight of the edge from the previous node
+   * @param priority the priority of the node in the queue
+   */
+  public void reach(int id, double cost, int predId, double weight, double priority) {
+    reachedStamp[id] = generation;
+    dist[id] = cost;
+    pred[id] = predId;
+    predWeight[id] = weight;
+    queue.insertOrDecrease(id, priority);
+  }
+
+  /**
+   * Marks the shortest path to a node as known. Every search settles nodes through this method,
+   * so it is also where searches notice that their thread was interrupted: every
+   * INTERRUPT_CHECK_INTERVAL nodes, it stops the search if so.
+   *
+   * @param id the id of the node to settle
+   * @throws CancellationException if the current thread has been interrupted
+   */
+  public void settle(int id) {
+    if ((settledCount & (INTERRUPT_CHECK_INTERVAL - 1)) == INTERRUPT_CHECK_INTERVAL - 1
+        && Thread.currentThread().isInterrupted()) {
+      throw new CancellationException("Search interrupted after settling " + settledCount
+          + " nodes");
+    }
+    settledStamp[id] = generation;
+    settledIds[settledCount++] = id;
+  }
+
+  /**
+   * @param id the id of a reached node
+   * @return the cost of the best path found to that node
+   */
+  public double getCost(int id) {
+    return isReached(id) ? dist[id] : Double.POSITIVE_INFINITY;
+  }
+
+  /**
+   * @param index a position less than getSettledCount()
+   * @return the id of the node that was settled at that position during the current search
+   */
+  public int getSettledId(int index) {
+    return settledIds[index];
+  }
+
+  /**
+   * @return the number of nodes settled during the current search
+   */
+  public int getSettledCount() {
+    return settledCount;
+  }
+}